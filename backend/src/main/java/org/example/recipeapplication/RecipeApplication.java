@@ -3,9 +3,11 @@ package org.example.recipeapplication;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.web.config.EnableSpringDataWebSupport;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableSpringDataWebSupport
+@EnableScheduling
 public class RecipeApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,317 @@
+package org.example.recipeapplication.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.service.RecipeIngredientService;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Uzupełnia schemat o elementy specyficzne dla PostgreSQL, których Hibernate (ddl-auto: update)
+ * nie potrafi wygenerować: kolumny tsvector, indeksy GIN, funkcje, triggery i tabele pomocnicze.
+ * Wszystkie instrukcje są idempotentne, więc mogą być wykonywane przy każdym starcie aplikacji.
+ * Zmiany, bez których zapisy się nie powiodą (sekwencje identyfikatorów, przeniesienie składników i unikalność
+ * słownika, tabele i kolumny zapisywane przez żądania i zadania w tle), wykonywane są przy tworzeniu beana -
+ * po aktualizacji schematu przez Hibernate, a przed uruchomieniem serwera WWW; ich błąd przerywa start aplikacji.
+ * Po starcie dokładane są już tylko elementy przyspieszające odczyt (wyszukiwanie pełnotekstowe, indeksy).
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class DatabaseSchemaInitializer implements InitializingBean, ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RecipeIngredientService recipeIngredientService;
+
+    // Wyszukiwanie pełnotekstowe: kolumna search_vector utrzymywana przez triggery
+    // na tabelach recipe i recipe_tags (tytuł - waga A, tagi - waga B, opis - waga C)
+    private static final List<String> FULL_TEXT_SEARCH = List.of(
+            "ALTER TABLE recipe ADD COLUMN IF NOT EXISTS search_vector tsvector",
+            "CREATE INDEX IF NOT EXISTS idx_recipe_search_vector ON recipe USING GIN (search_vector)",
+            """
+            CREATE OR REPLACE FUNCTION recipe_search_vector(p_id bigint, p_title text, p_description text)
+            RETURNS tsvector AS $$
+                SELECT setweight(to_tsvector('simple', coalesce(p_title, '')), 'A')
+                    || setweight(to_tsvector('simple', coalesce(
+                           (SELECT string_agg(t.tag, ' ') FROM recipe_tags t WHERE t.recipe_id = p_id), '')), 'B')
+                    || setweight(to_tsvector('simple', coalesce(p_description, '')), 'C')
+            $$ LANGUAGE sql STABLE
+            """,
+            """
+            CREATE OR REPLACE FUNCTION recipe_search_vector_update() RETURNS trigger AS $$
+            BEGIN
+                NEW.search_vector := recipe_search_vector(NEW.id, NEW.title, NEW.description);
+                RETURN NEW;
+            END
+            $$ LANGUAGE plpgsql
+            """,
+            """
+            CREATE OR REPLACE FUNCTION recipe_tags_search_vector_update() RETURNS trigger AS $$
+            DECLARE
+                v_recipe_id bigint;
+            BEGIN
+                IF TG_OP = 'DELETE' THEN
+                    v_recipe_id := OLD.recipe_id;
+                ELSE
+                    v_recipe_id := NEW.recipe_id;
+                END IF;
+                UPDATE recipe
+                   SET search_vector = recipe_search_vector(id, title, description)
+                 WHERE id = v_recipe_id;
+                RETURN NULL;
+            END
+            $$ LANGUAGE plpgsql
+            """,
+            "DROP TRIGGER IF EXISTS trg_recipe_search_vector_insert ON recipe",
+            """
+            CREATE TRIGGER trg_recipe_search_vector_insert
+                BEFORE INSERT ON recipe
+                FOR EACH ROW EXECUTE FUNCTION recipe_search_vector_update()
+            """,
+            "DROP TRIGGER IF EXISTS trg_recipe_search_vector_update ON recipe",
+            """
+            CREATE TRIGGER trg_recipe_search_vector_update
+                BEFORE UPDATE ON recipe
+                FOR EACH ROW
+                WHEN (OLD.title IS DISTINCT FROM NEW.title OR OLD.description IS DISTINCT FROM NEW.description)
+                EXECUTE FUNCTION recipe_search_vector_update()
+            """,
+            "DROP TRIGGER IF EXISTS trg_recipe_tags_search_vector ON recipe_tags",
+            """
+            CREATE TRIGGER trg_recipe_tags_search_vector
+                AFTER INSERT OR UPDATE OR DELETE ON recipe_tags
+                FOR EACH ROW EXECUTE FUNCTION recipe_tags_search_vector_update()
+            """,
+            // Uzupełnienie wektorów dla przepisów zapisanych przed dodaniem triggerów
+            "UPDATE recipe SET search_vector = recipe_search_vector(id, title, description) WHERE search_vector IS NULL"
+    );
+
+    // Indeksy pod stronicowanie kursorem: (filtr, klucz sortowania, id) - przepisy bez oceny traktowane jako 0,
+    // a bez daty utworzenia jako 1970-01-01 (wcześniejsze indeksy po samej kolumnie daty są zastępowane)
+    private static final List<String> KEYSET_PAGINATION = List.of(
+            "DROP INDEX IF EXISTS idx_recipe_status_created",
+            "CREATE INDEX IF NOT EXISTS idx_recipe_status_created_at ON recipe (status, " +
+                    "(COALESCE(date_of_creation, TIMESTAMP 'epoch')), id)",
+            "CREATE INDEX IF NOT EXISTS idx_recipe_status_rating ON recipe (status, (COALESCE(rating, 0)), id)",
+            "DROP INDEX IF EXISTS idx_recipe_category_created",
+            "CREATE INDEX IF NOT EXISTS idx_recipe_category_created_at ON recipe (category_id, " +
+                    "(COALESCE(date_of_creation, TIMESTAMP 'epoch')), id)",
+            "CREATE INDEX IF NOT EXISTS idx_recipe_category_rating ON recipe (category_id, (COALESCE(rating, 0)), id)",
+            "DROP INDEX IF EXISTS idx_recipe_author_created",
+            "CREATE INDEX IF NOT EXISTS idx_recipe_author_created_at ON recipe (author_id, " +
+                    "(COALESCE(date_of_creation, TIMESTAMP 'epoch')), id)",
+            "CREATE INDEX IF NOT EXISTS idx_recipe_author_rating ON recipe (author_id, (COALESCE(rating, 0)), id)"
+    );
+
+    // Zapis rankingu popularnych przepisów (TrendingService) - wynik aktualny na chwilę scored_at
+    private static final List<String> TRENDING = List.of(
+            """
+            CREATE TABLE IF NOT EXISTS recipe_trending_score (
+                recipe_id bigint PRIMARY KEY REFERENCES recipe (id) ON DELETE CASCADE,
+                score double precision NOT NULL,
+                scored_at timestamp NOT NULL
+            )
+            """
+    );
+
+    // Słownik składników: jedna pozycja na znormalizowaną nazwę (po przeniesieniu danych ze starego schematu)
+    private static final List<String> INGREDIENT_CATALOG = List.of(
+            "CREATE UNIQUE INDEX IF NOT EXISTS uk_ingredient_normalized_name ON ingredient (normalized_name)",
+            "ALTER TABLE ingredient ALTER COLUMN normalized_name SET NOT NULL"
+    );
+
+    // Znacznik nieużywanej pozycji słownika (IngredientGarbageCollector) - indeks obejmuje tylko oznaczone wiersze
+    private static final List<String> INGREDIENT_GC = List.of(
+            "ALTER TABLE ingredient ADD COLUMN IF NOT EXISTS orphaned_at timestamp",
+            "CREATE INDEX IF NOT EXISTS idx_ingredient_orphaned_at ON ingredient (orphaned_at) WHERE orphaned_at IS NOT NULL"
+    );
+
+    // Kolejka moderacji (RecipeModerationService): przejęcie przepisu zapisane w jego wierszu, indeks częściowy
+    // obejmuje tylko oczekujące przepisy w kolejności pobierania z kolejki
+    private static final List<String> MODERATION_QUEUE = List.of(
+            "ALTER TABLE recipe ADD COLUMN IF NOT EXISTS moderation_claimed_by bigint",
+            "ALTER TABLE recipe ADD COLUMN IF NOT EXISTS moderation_claimed_until timestamp",
+            "CREATE INDEX IF NOT EXISTS idx_recipe_pending_queue ON recipe (date_of_creation, id) WHERE status = 'PENDING'"
+    );
+
+    // Liczniki ocen przepisu (RatingService): jednorazowe uzupełnienie sumy dla istniejących przepisów,
+    // indeks ocen przepisu dla RecipeStatsReconciler
+    private static final List<String> RATING_AGGREGATES = List.of(
+            """
+            UPDATE recipe r SET rating_sum = s.total, rating_count = s.cnt
+            FROM (SELECT recipe_id, SUM(value) AS total, COUNT(*) AS cnt FROM rating GROUP BY recipe_id) s
+            WHERE r.id = s.recipe_id AND r.rating_sum IS NULL
+            """,
+            "UPDATE recipe SET rating_sum = 0, rating_count = 0 WHERE rating_sum IS NULL",
+            "UPDATE recipe SET rating_count = 0 WHERE rating_count IS NULL",
+            """
+            ALTER TABLE recipe ALTER COLUMN rating_sum SET DEFAULT 0, ALTER COLUMN rating_sum SET NOT NULL,
+                ALTER COLUMN rating_count SET DEFAULT 0, ALTER COLUMN rating_count SET NOT NULL
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_rating_recipe_value ON rating (recipe_id, value)"
+    );
+
+    // Zmiany ocen czekające na naniesienie na liczniki przepisów (RatingAggregationService)
+    private static final List<String> RATING_OUTBOX = List.of(
+            """
+            CREATE TABLE IF NOT EXISTS rating_aggregate_outbox (
+                id bigserial PRIMARY KEY,
+                recipe_id bigint NOT NULL,
+                previous_value smallint,
+                new_value smallint,
+                created_at timestamp NOT NULL
+            )
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_rating_aggregate_outbox_recipe ON rating_aggregate_outbox (recipe_id)"
+    );
+
+    // Histogram ocen (liczba ocen 1-5, utrzymywana przez RatingAggregationService) i średnia bayesowska
+    // rating_score jako kolumna generowana z indeksami do sortowania "najlepiej oceniane"
+    private static final List<String> RATING_HISTOGRAM = List.of(
+            """
+            DO $$
+            BEGIN
+                IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                               WHERE table_name = 'recipe' AND column_name = 'rating5_count') THEN
+                    ALTER TABLE recipe
+                        ADD COLUMN rating1_count integer NOT NULL DEFAULT 0,
+                        ADD COLUMN rating2_count integer NOT NULL DEFAULT 0,
+                        ADD COLUMN rating3_count integer NOT NULL DEFAULT 0,
+                        ADD COLUMN rating4_count integer NOT NULL DEFAULT 0,
+                        ADD COLUMN rating5_count integer NOT NULL DEFAULT 0;
+                    UPDATE recipe r SET rating1_count = s.c1, rating2_count = s.c2, rating3_count = s.c3,
+                                        rating4_count = s.c4, rating5_count = s.c5
+                    FROM (SELECT recipe_id,
+                                 COUNT(*) FILTER (WHERE value = 1) AS c1, COUNT(*) FILTER (WHERE value = 2) AS c2,
+                                 COUNT(*) FILTER (WHERE value = 3) AS c3, COUNT(*) FILTER (WHERE value = 4) AS c4,
+                                 COUNT(*) FILTER (WHERE value = 5) AS c5
+                          FROM rating GROUP BY recipe_id) s
+                    WHERE r.id = s.recipe_id;
+                END IF;
+            END $$
+            """,
+            // Hibernate mógł dodać rating_score jako zwykłą kolumnę (np. przed uzupełnieniem rating_sum)
+            """
+            DO $$
+            BEGIN
+                IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                               WHERE table_name = 'recipe' AND column_name = 'rating_score' AND is_generated = 'ALWAYS') THEN
+                    ALTER TABLE recipe DROP COLUMN IF EXISTS rating_score;
+                    ALTER TABLE recipe ADD COLUMN rating_score double precision
+                        GENERATED ALWAYS AS %s STORED;
+                END IF;
+            END $$
+            """.formatted(Recipe.RATING_SCORE_EXPRESSION),
+            "CREATE INDEX IF NOT EXISTS idx_recipe_status_score ON recipe (status, rating_score, id)",
+            "CREATE INDEX IF NOT EXISTS idx_recipe_category_score ON recipe (category_id, rating_score, id)",
+            "CREATE INDEX IF NOT EXISTS idx_recipe_author_score ON recipe (author_id, rating_score, id)"
+    );
+
+    // Liczenie polubień przepisu z followed_recipe (RecipeStatsReconciler); unikalny indeks (user_id, recipe_id)
+    // nie obsługuje wyszukiwania po samym przepisie
+    private static final List<String> FAVORITES_COUNT = List.of(
+            "UPDATE recipe SET favorites_count = 0 WHERE favorites_count IS NULL",
+            "ALTER TABLE recipe ALTER COLUMN favorites_count SET DEFAULT 0, ALTER COLUMN favorites_count SET NOT NULL",
+            "CREATE INDEX IF NOT EXISTS idx_followed_recipe_recipe ON followed_recipe (recipe_id)",
+            """
+            CREATE TABLE IF NOT EXISTS favorites_outbox (
+                id bigserial PRIMARY KEY,
+                recipe_id bigint NOT NULL,
+                delta smallint NOT NULL,
+                created_at timestamp NOT NULL
+            )
+            """,
+            "CREATE INDEX IF NOT EXISTS idx_favorites_outbox_recipe ON favorites_outbox (recipe_id)"
+    );
+
+    // Sekwencje recipe_seq i ingredient_seq zastąpiły kolumny IDENTITY - przy pierwszym starcie przesuwamy je
+    // za najwyższe istniejące id (nigdy wstecz, bo inne instancje mogą mieć już przydzielone pule)
+    private static final List<String> ID_SEQUENCES = List.of(
+            """
+            SELECT setval('recipe_seq', m) FROM (SELECT MAX(id) AS m FROM recipe) s
+            WHERE m >= (SELECT last_value FROM recipe_seq)
+            """,
+            """
+            SELECT setval('ingredient_seq', m) FROM (SELECT MAX(id) AS m FROM ingredient) s
+            WHERE m >= (SELECT last_value FROM ingredient_seq)
+            """
+    );
+
+    // Wersje list wspólne dla wszystkich instancji i wersja komentarzy przepisu - z nich CatalogVersionService
+    // buduje ETagi odpowiedzi
+    private static final List<String> CATALOG_VERSIONS = List.of(
+            "ALTER TABLE recipe ADD COLUMN IF NOT EXISTS detail_version bigint NOT NULL DEFAULT 0",
+            "CREATE SEQUENCE IF NOT EXISTS catalog_version_seq",
+            """
+            CREATE TABLE IF NOT EXISTS catalog_version (
+                scope varchar(64) PRIMARY KEY,
+                version bigint NOT NULL
+            )
+            """
+    );
+
+    /**
+     * Błąd przerywa start aplikacji - przepisy zapisywane z identyfikatorami z nieprzesuniętej sekwencji
+     * naruszałyby klucz główny, bez tabeli wersji nie da się wyznaczyć ETagów odpowiedzi, a dodawanie składników
+     * (INSERT ... ON CONFLICT) wymaga unikalnego indeksu na znormalizowanej nazwie
+     */
+    @Override
+    public void afterPropertiesSet() {
+        require("id sequences", ID_SEQUENCES);
+        require("catalog versions", CATALOG_VERSIONS);
+        try {
+            recipeIngredientService.migrateLegacyIngredients();
+        } catch (Exception e) {
+            // Transakcja migracji jest wycofywana w całości - kolejna próba nastąpi przy następnym starcie
+            throw new IllegalStateException("Nie udało się przenieść składników do słownika: " + e.getMessage(), e);
+        }
+        // Po przeniesieniu danych - migracja scala pozycje o tej samej znormalizowanej nazwie
+        require("ingredient catalog", INGREDIENT_CATALOG);
+        // Tabele i kolumny, do których piszą obsługa żądań i zadania w tle - wymagane, zanim serwer zacznie
+        // przyjmować żądania
+        require("rating aggregates", RATING_AGGREGATES);
+        require("rating outbox", RATING_OUTBOX);
+        require("rating histogram", RATING_HISTOGRAM);
+        require("favorites count", FAVORITES_COUNT);
+        require("ingredient gc", INGREDIENT_GC);
+        require("moderation queue", MODERATION_QUEUE);
+        require("trending", TRENDING);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        apply("full-text search", FULL_TEXT_SEARCH);
+        apply("keyset pagination", KEYSET_PAGINATION);
+    }
+
+    private void require(String feature, List<String> statements) {
+        try {
+            statements.forEach(jdbcTemplate::execute);
+            log.info("Schemat bazy danych zaktualizowany: {}", feature);
+        } catch (Exception e) {
+            throw new IllegalStateException(
+                    "Nie udało się zaktualizować schematu bazy danych (" + feature + "): " + e.getMessage(), e);
+        }
+    }
+
+    private void apply(String feature, List<String> statements) {
+        try {
+            statements.forEach(jdbcTemplate::execute);
+            log.info("Schemat bazy danych zaktualizowany: {}", feature);
+        } catch (Exception e) {
+            // Brak rozszerzeń schematu nie blokuje startu - funkcje zależne od nich zgłoszą błąd przy użyciu
+            log.error("Nie udało się zaktualizować schematu bazy danych ({}): {}", feature, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.recipeapplication.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JpaConfig {
+
+    // Liczba instrukcji łączonych w jedną paczkę JDBC - równa pulom identyfikatorów z sekwencji
+    private static final int JDBC_BATCH_SIZE = 50;
+
+    /**
+     * Włącza paczkowanie insertów i update'ów. Sortowanie instrukcji wg encji sprawia, że przy zapisie wielu
+     * przepisów naraz inserty do tej samej tabeli trafiają do jednej paczki zamiast przeplatać się między tabelami.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer() {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, JDBC_BATCH_SIZE);
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, true);
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, true);
+        };
+    }
+}
@@ -0,0 +1,186 @@
+package org.example.recipeapplication.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.example.recipeapplication.dto.RecipeImportErrorDTO;
+import org.example.recipeapplication.dto.RecipeImportProgressDTO;
+import org.example.recipeapplication.dto.RecipeStatusBatchRequestDTO;
+import org.example.recipeapplication.dto.RecipeStatusBatchResultDTO;
+import org.example.recipeapplication.dto.RecipeSummaryDTO;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.example.recipeapplication.service.RecipeExportService;
+import org.example.recipeapplication.service.RecipeImportService;
+import org.example.recipeapplication.service.RecipeModerationService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/admin/recipes")
+@RequiredArgsConstructor
+@PreAuthorize("hasAnyAuthority('ADMIN')")  // Tylko administratorzy mają dostęp do tego kontrolera
+@Tag(name = "Administrator - Przepisy", description = "Operacje na całym katalogu przepisów, dostępne tylko dla administratorów")
+public class AdminRecipeController {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
+    private final RecipeExportService recipeExportService;
+    private final RecipeImportService recipeImportService;
+    private final RecipeModerationService recipeModerationService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Endpoint eksportu wszystkich przepisów - odpowiedź zapisywana jest bezpośrednio do strumienia w trakcie
+     * odczytu z bazy, bez budowania jej w pamięci
+     */
+    @GetMapping("/export")
+    @Operation(summary = "Eksportuj katalog przepisów",
+               description = "Zwraca wszystkie przepisy (niezależnie od statusu) wraz ze składnikami i tagami w formacie NDJSON - " +
+                             "jeden obiekt JSON w każdym wierszu, uporządkowane wg ID. Wymaga uprawnień administratora.")
+    public void exportRecipes(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"recipes.ndjson\"");
+        recipeExportService.exportRecipes(response.getOutputStream());
+    }
+
+    /**
+     * Endpoint importu przepisów w formacie JSON - tablica lub NDJSON obiektów RecipeRequestDTO
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    @Operation(summary = "Importuj przepisy (JSON)",
+               description = "Zapisuje przepisy z tablicy JSON lub NDJSON w formacie jak przy dodawaniu przepisu, paczkami. " +
+                             "Odpowiedź (NDJSON) na bieżąco raportuje błędy pojedynczych wierszy ({row, title, error}) " +
+                             "i postęp po każdej paczce ({processed, imported, failed, finished}). Autorem przepisów " +
+                             "jest importujący administrator. Wymaga uprawnień administratora.")
+    public void importRecipesJson(
+            @RequestParam(defaultValue = "PENDING") RecipeStatus status,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        OutputStream out = startImportResponse(response);
+        recipeImportService.importJson(request.getInputStream(), userDetails.getUsername(), status, listener(out));
+    }
+
+    /**
+     * Endpoint importu przepisów w formacie CSV
+     */
+    @PostMapping(value = "/import", consumes = CSV)
+    @Operation(summary = "Importuj przepisy (CSV)",
+               description = "Zapisuje przepisy z pliku CSV z nagłówkiem: title, description, estimatedTimeToPrepare, " +
+                             "mainImageUrl, categoryId, tags (rozdzielone |), ingredients (rozdzielone |, każdy jako " +
+                             "nazwa;ilość;jednostka). Odpowiedź jak przy imporcie JSON. Wymaga uprawnień administratora.")
+    public void importRecipesCsv(
+            @RequestParam(defaultValue = "PENDING") RecipeStatus status,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        if (request.getCharacterEncoding() == null) {
+            request.setCharacterEncoding("UTF-8");
+        }
+        try {
+            OutputStream out = startImportResponse(response);
+            recipeImportService.importCsv(request.getReader(), userDetails.getUsername(), status, listener(out));
+        } catch (IllegalArgumentException e) {
+            // Nieprawidłowy nagłówek - nic jeszcze nie zostało zapisane do odpowiedzi
+            response.reset();
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping("/moderation/claim")
+    @Operation(summary = "Pobierz przepisy do moderacji",
+               description = "Przejmuje najstarsze oczekujące przepisy, których nie przejął inny administrator, " +
+                             "i zwraca je w kolejności dodania. Przejęcie wygasa po czasie app.moderation.claim-minutes; " +
+                             "przepisy już przejęte przez wywołującego są zwracane ponownie. Wymaga uprawnień administratora.")
+    public ResponseEntity<List<RecipeSummaryDTO>> claimPendingRecipes(
+            @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        if (size < 1 || size > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(recipeModerationService.claimPendingRecipes(userDetails.getUsername(), size));
+    }
+
+    @PostMapping("/moderation/release")
+    @Operation(summary = "Zwolnij przepisy z moderacji",
+               description = "Zwalnia podane przepisy przejęte przez wywołującego, by mógł je pobrać inny administrator. " +
+                             "Wymaga uprawnień administratora.")
+    public ResponseEntity<Void> releaseClaims(
+            @RequestBody List<Long> ids,
+            @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        recipeModerationService.releaseClaims(userDetails.getUsername(), ids);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PatchMapping("/status")
+    @Operation(summary = "Zmień status wielu przepisów",
+               description = "Ustawia status (np. ACCEPTED, REJECTED) do 1000 przepisów jednym zapytaniem. Przepisy przejęte " +
+                             "do moderacji przez innego administratora są pomijane. Zwraca identyfikatory zmienionych, " +
+                             "pominiętych i nieistniejących przepisów. Wymaga uprawnień administratora.")
+    public ResponseEntity<RecipeStatusBatchResultDTO> changeStatus(
+            @Valid @RequestBody RecipeStatusBatchRequestDTO request,
+            @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        return ResponseEntity.ok(recipeModerationService.changeStatus(
+                userDetails.getUsername(), request.ids(), request.status()));
+    }
+
+    private OutputStream startImportResponse(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        return response.getOutputStream();
+    }
+
+    /**
+     * Każde zdarzenie importu wysyłane jest od razu, żeby klient widział postęp długiego importu
+     */
+    private RecipeImportService.ImportListener listener(OutputStream out) {
+        return new RecipeImportService.ImportListener() {
+            @Override
+            public void onError(RecipeImportErrorDTO error) {
+                write(error);
+            }
+
+            @Override
+            public void onProgress(RecipeImportProgressDTO progress) {
+                write(progress);
+            }
+
+            private void write(Object event) {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(event));
+                    out.write('\n');
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+}
@@ -6,10 +6,14 @@ import lombok.RequiredArgsConstructor;
 import org.example.recipeapplication.dto.CategoryRequestDTO;
 import org.example.recipeapplication.dto.CategoryResponseDTO;
 import org.example.recipeapplication.model.Category;
+import org.example.recipeapplication.service.CatalogVersionService;
 import org.example.recipeapplication.service.CategoryService;
+import org.example.recipeapplication.util.ConditionalRequests;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -19,12 +23,14 @@ import java.util.List;
 @Tag(name = "Kategorie", description = "Operacje związane z kategoriami przepisów")
 public class CategoryController {
     private final CategoryService categoryService;
+    private final CatalogVersionService catalogVersionService;
 
     @GetMapping
     @Operation(summary = "Pobierz wszystkie kategorie",
               description = "Zwraca listę wszystkich dostępnych kategorii przepisów")
-    public List<CategoryResponseDTO> getAllCategories() {
-        return categoryService.getAllCategories();
+    public ResponseEntity<List<CategoryResponseDTO>> getAllCategories(WebRequest request) {
+        return ConditionalRequests.withETag(request, catalogVersionService.categoriesETag(),
+                () -> ResponseEntity.ok(categoryService.getAllCategories()));
     }
 
     @PreAuthorize("hasAuthority('ADMIN')")
@@ -21,15 +21,17 @@ public class IngredientController {
 
     @GetMapping("/search")
     @Operation(summary = "Wyszukaj składniki",
-              description = "Wyszukuje składniki po nazwie lub jej fragmencie")
-    public List<IngredientResponseDTO> searchIngredients(@RequestParam String name) {
-        return ingredientService.searchIngredients(name);
+              description = "Podpowiada składniki, których nazwa lub jedno ze słów nazwy zaczyna się od podanego " +
+                      "tekstu (bez rozróżniania polskich znaków), od najczęściej używanych w przepisach")
+    public List<IngredientResponseDTO> searchIngredients(@RequestParam String name,
+                                                         @RequestParam(defaultValue = "10") int limit) {
+        return ingredientService.searchIngredients(name, limit);
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @Operation(summary = "Dodaj składnik",
-              description = "Dodaje nowy składnik do bazy danych")
+              description = "Dodaje składnik do słownika składników; jeśli składnik o tej nazwie już istnieje, zwraca go")
     public IngredientResponseDTO addIngredient(@RequestBody IngredientRequestDTO ingredientRequestDTO) {
         return ingredientService.addIngredient(ingredientRequestDTO);
     }
@@ -4,6 +4,7 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.example.recipeapplication.dto.RatingHistogramDTO;
 import org.example.recipeapplication.dto.RatingRequestDTO;
 import org.example.recipeapplication.dto.RatingResponseDTO;
 import org.example.recipeapplication.service.RatingService;
@@ -14,12 +15,18 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/v1/recipes")
 @RequiredArgsConstructor
 @Tag(name = "Oceny", description = "Operacje związane z ocenami przepisów")
 public class RatingController {
 
+    private static final int MAX_RATINGS_LOOKUP = 100;
+
     private final RatingService ratingService;
 
     /**
@@ -96,6 +103,36 @@ public class RatingController {
         return ResponseEntity.ok(ratingResponse);
     }
 
+    /**
+     * Pobiera oceny zalogowanego użytkownika dla wielu przepisów jednym zapytaniem.
+     */
+    @GetMapping("/my-ratings")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Pobierz moje oceny wielu przepisów",
+              description = "Zwraca oceny zalogowanego użytkownika dla podanych przepisów (maksymalnie " + MAX_RATINGS_LOOKUP
+                      + "), według ID przepisu. Przepisy bez oceny są pomijane. Wymaga uwierzytelnienia.")
+    public ResponseEntity<Map<Long, Integer>> getMyRatings(
+            @RequestParam List<Long> recipeIds,
+            @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        if (recipeIds.size() > MAX_RATINGS_LOOKUP) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(ratingService.getUserRatingsForRecipes(new LinkedHashSet<>(recipeIds), userDetails.getUsername()));
+    }
+
+    /**
+     * Zwraca rozkład ocen przepisu (liczba ocen 1-5), średnią i średnią bayesowską.
+     */
+    @GetMapping("/{recipeId}/ratings/histogram")
+    @Operation(summary = "Pobierz rozkład ocen przepisu",
+              description = "Zwraca liczbę ocen 1-5 gwiazdek, średnią ocenę i średnią bayesowską używaną do sortowania.")
+    public ResponseEntity<RatingHistogramDTO> getRatingHistogram(@PathVariable Long recipeId) {
+        return ratingService.getRatingHistogram(recipeId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Usuwa ocenę przepisu wystawioną przez zalogowanego użytkownika.
      */
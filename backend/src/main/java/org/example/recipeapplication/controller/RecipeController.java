@@ -7,10 +7,17 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.example.recipeapplication.dto.CommentRequestDTO;
 import org.example.recipeapplication.dto.CommentResponseDTO;
+import org.example.recipeapplication.dto.CookableRecipeDTO;
+import org.example.recipeapplication.dto.CursorPageDTO;
 import org.example.recipeapplication.dto.RecipeRequestDTO;
 import org.example.recipeapplication.dto.RecipeResponseDTO;
+import org.example.recipeapplication.dto.RecipeSummaryDTO;
+import org.example.recipeapplication.dto.SimilarRecipeDTO;
+import org.example.recipeapplication.model.SearchMode;
+import org.example.recipeapplication.service.CatalogVersionService;
 import org.example.recipeapplication.service.CommentService;
 import org.example.recipeapplication.service.RecipeService;
+import org.example.recipeapplication.util.ConditionalRequests;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -22,8 +29,10 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -33,65 +42,183 @@ import java.util.Map;
 public class RecipeController {
     private final RecipeService recipeService;
     private final CommentService commentService;
+    private final CatalogVersionService catalogVersionService;
 
     @GetMapping
     @Operation(summary = "Pobierz wszystkie przepisy",
               description = "Zwraca stronę przepisów z możliwością sortowania, paginacji i filtrowania po kategoriach")
-    public ResponseEntity<Page<RecipeResponseDTO>> getAllRecipes(
+    public ResponseEntity<Page<RecipeSummaryDTO>> getAllRecipes(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "5") int size,
             @RequestParam(defaultValue = "dateOfCreation") String sortBy,
             @RequestParam(defaultValue = "desc") String direction,
-            @RequestParam(required = false) Long categoryId
+            @RequestParam(required = false) Long categoryId,
+            WebRequest request
     ) {
         Sort.Direction sortDirection = Sort.Direction.fromString(direction);
         Pageable pageable = PageRequest.of(page, size, Sort.by(sortDirection, sortBy));
-        return ResponseEntity.ok(categoryId == null
-                ? recipeService.getAllRecipes(pageable)
-                : recipeService.getRecipesByCategory(categoryId, pageable));
+        return ConditionalRequests.withETag(request, catalogVersionService.listETag(categoryId),
+                () -> ResponseEntity.ok(categoryId == null
+                        ? recipeService.getAllRecipes(pageable)
+                        : recipeService.getRecipesByCategory(categoryId, pageable)));
+    }
+
+    @GetMapping("/feed")
+    @Operation(summary = "Pobierz przepisy (stronicowanie kursorem)",
+              description = "Zwraca kolejną porcję zaakceptowanych przepisów od miejsca wskazanego kursorem, " +
+                            "posortowanych malejąco wg daty dodania lub oceny. Przeznaczone do przewijania bez końca - " +
+                            "koszt pobrania strony nie rośnie wraz z jej numerem.")
+    public ResponseEntity<CursorPageDTO<RecipeSummaryDTO>> getRecipesFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "dateOfCreation") String sortBy,
+            @RequestParam(required = false) Long categoryId,
+            WebRequest request
+    ) {
+        return ConditionalRequests.withETag(request, catalogVersionService.listETag(categoryId), () -> {
+            try {
+                return ResponseEntity.ok(categoryId == null
+                        ? recipeService.getAllRecipesAfterCursor(sortBy, cursor, size)
+                        : recipeService.getRecipesByCategoryAfterCursor(categoryId, sortBy, cursor, size));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
+    }
+
+    @GetMapping("/trending")
+    @Operation(summary = "Pobierz popularne przepisy",
+              description = "Zwraca zaakceptowane przepisy uporządkowane wg popularności - polubienia, oceny i komentarze " +
+                            "liczą się tym mniej, im są starsze")
+    public ResponseEntity<Page<RecipeSummaryDTO>> getTrendingRecipes(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "5") int size
+    ) {
+        return ResponseEntity.ok(recipeService.getTrendingRecipes(PageRequest.of(page, size)));
+    }
+
+    @GetMapping("/by-ingredients")
+    @Operation(summary = "Co mogę ugotować",
+              description = "Zwraca zaakceptowane przepisy, które można przygotować z podanych składników: najpierw te, " +
+                            "do których są wszystkie składniki, potem te, w których brakuje najwyżej maxMissing składników")
+    public ResponseEntity<Page<CookableRecipeDTO>> getRecipesByIngredients(
+            @RequestParam List<String> ingredients,
+            @RequestParam(defaultValue = "2") int maxMissing,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "5") int size,
+            WebRequest request
+    ) {
+        return ConditionalRequests.withETag(request, catalogVersionService.listETag(null), () -> {
+            try {
+                return ResponseEntity.ok(recipeService.getRecipesByIngredients(ingredients, maxMissing, PageRequest.of(page, size)));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            } catch (IllegalStateException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+        });
     }
 
     @GetMapping("/search")
     @Operation(summary = "Wyszukaj przepisy",
-              description = "Wyszukuje przepisy zawierające podaną frazę w nazwie lub opisie, z możliwością sortowania i filtrowania po kategoriach")
-    public ResponseEntity<Page<RecipeResponseDTO>> searchRecipes(
+              description = "Wyszukuje przepisy zawierające podaną frazę w nazwie lub opisie, z możliwością sortowania i filtrowania po kategoriach. " +
+                            "Domyślny tryb INDEX przeszukuje zaakceptowane przepisy w indeksie w pamięci, " +
+                            "tryb RELEVANCE dodatkowo szereguje je wg trafności (BM25); " +
+                            "tryb FULL_TEXT korzysta z wyszukiwania pełnotekstowego i zwraca wyniki posortowane wg trafności. " +
+                            "Z parametrem facets=true zwraca stronę wyników (results) wraz z liczbami wyników w kategoriach, " +
+                            "popularnych tagach i przedziałach czasu przygotowania (facets; w trybach INDEX i RELEVANCE)")
+    public ResponseEntity<?> searchRecipes(
             @RequestParam(required = false, defaultValue = "") String search,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "5") int size,
             @RequestParam(defaultValue = "dateOfCreation") String sortBy,
             @RequestParam(defaultValue = "desc") String direction,
-            @RequestParam(required = false) Long categoryId
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(defaultValue = "INDEX") String mode,
+            @RequestParam(defaultValue = "false") boolean facets,
+            WebRequest request
     ) {
         Sort.Direction sortDirection = Sort.Direction.fromString(direction);
         Pageable pageable = PageRequest.of(page, size, Sort.by(sortDirection, sortBy));
-        return ResponseEntity.ok(recipeService.searchRecipes(search, pageable, categoryId));
+        SearchMode searchMode;
+        try {
+            searchMode = SearchMode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        String etag = catalogVersionService.searchETag(categoryId, searchMode);
+        return ConditionalRequests.withETag(request, etag, () -> facets
+                ? ResponseEntity.ok(recipeService.searchRecipes(search, pageable, categoryId, searchMode, etag, true))
+                : ResponseEntity.ok(recipeService.searchRecipes(search, pageable, categoryId, searchMode, etag)));
     }
 
     @GetMapping("/category/{categoryId}")
     @Operation(summary = "Pobierz przepisy z kategorii",
               description = "Zwraca przepisy należące do określonej kategorii z możliwością sortowania i paginacji")
-    public ResponseEntity<Page<RecipeResponseDTO>> getRecipesByCategory(
+    public ResponseEntity<Page<RecipeSummaryDTO>> getRecipesByCategory(
             @PathVariable Long categoryId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "dateOfCreation") String sortBy,
-            @RequestParam(defaultValue = "desc") String direction
+            @RequestParam(defaultValue = "desc") String direction,
+            WebRequest request
     ) {
         Sort.Direction sortDirection = Sort.Direction.fromString(direction);
         Pageable pageable = PageRequest.of(page, size, Sort.by(sortDirection, sortBy));
-        return ResponseEntity.ok(recipeService.getRecipesByCategory(categoryId, pageable));
+        return ConditionalRequests.withETag(request, catalogVersionService.listETag(categoryId),
+                () -> ResponseEntity.ok(recipeService.getRecipesByCategory(categoryId, pageable)));
+    }
+
+    @GetMapping("/category/{categoryId}/feed")
+    @Operation(summary = "Pobierz przepisy z kategorii (stronicowanie kursorem)",
+              description = "Zwraca kolejną porcję przepisów z kategorii od miejsca wskazanego kursorem")
+    public ResponseEntity<CursorPageDTO<RecipeSummaryDTO>> getRecipesByCategoryFeed(
+            @PathVariable Long categoryId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "dateOfCreation") String sortBy,
+            WebRequest request
+    ) {
+        return ConditionalRequests.withETag(request, catalogVersionService.listETag(categoryId), () -> {
+            try {
+                return ResponseEntity.ok(recipeService.getRecipesByCategoryAfterCursor(categoryId, sortBy, cursor, size));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
     @GetMapping("/user/{userId}")
     @Operation(summary = "Pobierz przepisy użytkownika",
               description = "Zwraca przepisy utworzone przez określonego użytkownika")
-    public ResponseEntity<Page<RecipeResponseDTO>> getUserRecipes(
+    public ResponseEntity<Page<RecipeSummaryDTO>> getUserRecipes(
             @PathVariable Long userId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "5") int size
+            @RequestParam(defaultValue = "5") int size,
+            WebRequest request
     ) {
         Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(recipeService.getUserRecipes(userId, pageable));
+        return ConditionalRequests.withETag(request, catalogVersionService.authorListETag(userId),
+                () -> ResponseEntity.ok(recipeService.getUserRecipes(userId, pageable)));
+    }
+
+    @GetMapping("/user/{userId}/feed")
+    @Operation(summary = "Pobierz przepisy użytkownika (stronicowanie kursorem)",
+              description = "Zwraca kolejną porcję przepisów utworzonych przez użytkownika od miejsca wskazanego kursorem")
+    public ResponseEntity<CursorPageDTO<RecipeSummaryDTO>> getUserRecipesFeed(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size,
+            @RequestParam(defaultValue = "dateOfCreation") String sortBy,
+            WebRequest request
+    ) {
+        return ConditionalRequests.withETag(request, catalogVersionService.authorListETag(userId), () -> {
+            try {
+                return ResponseEntity.ok(recipeService.getUserRecipesAfterCursor(userId, sortBy, cursor, size));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
     @PostMapping(value = "", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -125,10 +252,34 @@ public class RecipeController {
     @GetMapping("/{id}")
     @Operation(summary = "Pobierz przepis według ID",
               description = "Zwraca szczegóły przepisu o podanym identyfikatorze")
-    public ResponseEntity<RecipeResponseDTO> getRecipeById(@PathVariable Long id) {
-        return recipeService.getRecipeById(id)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<RecipeResponseDTO> getRecipeById(@PathVariable Long id, WebRequest request) {
+        String etag = catalogVersionService.recipeETag(id);
+        return ConditionalRequests.withETag(request, etag,
+                () -> recipeService.getRecipeById(id, etag)
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.notFound().build()));
+    }
+
+    @GetMapping("/{id}/similar")
+    @Operation(summary = "Pobierz podobne przepisy",
+              description = "Zwraca zaakceptowane przepisy o najbardziej podobnym zestawie tagów i składników, " +
+                            "od najbardziej podobnych, wraz z podobieństwem (0-1]")
+    public ResponseEntity<List<SimilarRecipeDTO>> getSimilarRecipes(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "6") int limit,
+            WebRequest request
+    ) {
+        return ConditionalRequests.withETag(request, catalogVersionService.listETag(null), () -> {
+            try {
+                return recipeService.getSimilarRecipes(id, limit)
+                        .map(ResponseEntity::ok)
+                        .orElse(ResponseEntity.notFound().build());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            } catch (IllegalStateException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+        });
     }
 
     @DeleteMapping("/{id}")
@@ -160,7 +311,7 @@ public class RecipeController {
     @PreAuthorize("hasAnyAuthority('ADMIN', 'ROLE_ADMIN')")
     @Operation(summary = "Pobierz oczekujące przepisy",
               description = "Zwraca listę przepisów oczekujących na zatwierdzenie. Wymaga uprawnień administratora.")
-    public ResponseEntity<Page<RecipeResponseDTO>> getPendingRecipes(
+    public ResponseEntity<Page<RecipeSummaryDTO>> getPendingRecipes(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
@@ -184,7 +335,7 @@ public class RecipeController {
     @PreAuthorize("isAuthenticated()")
     @Operation(summary = "Pobierz moje przepisy",
               description = "Zwraca przepisy utworzone przez zalogowanego użytkownika. Wymaga uwierzytelnienia.")
-    public ResponseEntity<Page<RecipeResponseDTO>> getMyRecipes(
+    public ResponseEntity<Page<RecipeSummaryDTO>> getMyRecipes(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "6") int size
@@ -197,6 +348,27 @@ public class RecipeController {
         return ResponseEntity.ok(recipeService.getMyRecipes(userDetails.getUsername(), pageable));
     }
 
+    @GetMapping("/my-recipes/feed")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Pobierz moje przepisy (stronicowanie kursorem)",
+              description = "Zwraca kolejną porcję przepisów zalogowanego użytkownika od miejsca wskazanego kursorem. Wymaga uwierzytelnienia.")
+    public ResponseEntity<CursorPageDTO<RecipeSummaryDTO>> getMyRecipesFeed(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "6") int size,
+            @RequestParam(defaultValue = "dateOfCreation") String sortBy
+    ) {
+        if (userDetails == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        try {
+            return ResponseEntity.ok(recipeService.getMyRecipesAfterCursor(userDetails.getUsername(), sortBy, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("isAuthenticated()")
     @Operation(summary = "Aktualizuj przepis",
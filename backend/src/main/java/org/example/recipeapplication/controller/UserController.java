@@ -5,10 +5,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.example.recipeapplication.dto.FollowedRecipeResponseDTO;
-import org.example.recipeapplication.dto.RecipeResponseDTO;
+import org.example.recipeapplication.dto.RecipeSummaryDTO;
 import org.example.recipeapplication.dto.UserRequestDTO;
 import org.example.recipeapplication.dto.UserResponseDTO;
 import org.example.recipeapplication.service.FollowedRecipeService;
+import org.example.recipeapplication.service.RecipeRecommendationService;
 import org.example.recipeapplication.service.UserService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -31,6 +32,7 @@ import java.util.Map;
 public class UserController {
     private final UserService userService;
     private final FollowedRecipeService followedRecipeService;
+    private final RecipeRecommendationService recipeRecommendationService;
 
     /**
      * Endpoint do pobierania wszystkich użytkowników
@@ -53,7 +55,7 @@ public class UserController {
     @GetMapping("/{userId}/followed-recipes")
     @Operation(summary = "Pobierz obserwowane przepisy użytkownika",
               description = "Zwraca listę przepisów obserwowanych przez określonego użytkownika")
-    public ResponseEntity<Page<RecipeResponseDTO>> getUserFollowedRecipes(
+    public ResponseEntity<Page<RecipeSummaryDTO>> getUserFollowedRecipes(
             @PathVariable Long userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "6") int size,
@@ -86,6 +88,24 @@ public class UserController {
         return ResponseEntity.ok(followedRecipeService.getFollowedRecipesAsFullRecipes(userDetails.getUsername(), pageable));
     }
 
+    @GetMapping("/me/feed")
+    @Operation(summary = "Pobierz polecane przepisy",
+              description = "Zwraca przepisy polecane na podstawie przepisów obserwowanych i wysoko ocenionych przez zalogowanego użytkownika. Wymaga uwierzytelnienia.")
+    public ResponseEntity<?> getMyFeed(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "12") int size,
+            @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        if (userDetails == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("message", "Musisz być zalogowany, aby zobaczyć polecane przepisy"));
+        }
+        if (page < 0 || size < 1 || size > 50) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Nieprawidłowe parametry stronicowania"));
+        }
+        return ResponseEntity.ok(recipeRecommendationService.getFeed(userDetails.getUsername(), PageRequest.of(page, size)));
+    }
+
     @PostMapping("/me/followed-recipes/{recipeId}")
     @Operation(summary = "Obserwuj przepis",
               description = "Dodaje przepis do listy obserwowanych przez użytkownika. Wymaga uwierzytelnienia.")
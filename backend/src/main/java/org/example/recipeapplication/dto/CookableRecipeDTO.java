@@ -0,0 +1,13 @@
+package org.example.recipeapplication.dto;
+
+import java.util.List;
+
+/**
+ * Przepis dopasowany do składników posiadanych przez użytkownika
+ */
+public record CookableRecipeDTO(
+        RecipeSummaryDTO recipe,
+        int matchedCount,
+        int ingredientCount,
+        List<String> missingIngredients
+) {}
@@ -0,0 +1,13 @@
+package org.example.recipeapplication.dto;
+
+import java.util.List;
+
+/**
+ * Strona wyników stronicowanych kursorem. Kolejną stronę pobiera się przekazując nextCursor;
+ * null oznacza koniec listy.
+ */
+public record CursorPageDTO<T>(
+        List<T> content,
+        String nextCursor,
+        boolean hasNext
+) {}
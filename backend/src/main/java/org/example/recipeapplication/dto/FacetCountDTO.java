@@ -0,0 +1,9 @@
+package org.example.recipeapplication.dto;
+
+/**
+ * Liczba wyników wyszukiwania dla jednej wartości filtra (kategorii, tagu, przedziału czasu przygotowania)
+ */
+public record FacetCountDTO(
+        String value,
+        long count
+) {}
@@ -0,0 +1,17 @@
+package org.example.recipeapplication.dto;
+
+import java.util.Map;
+
+/**
+ * Rozkład ocen przepisu odczytany z liczników przepisu (bez przeglądania ocen)
+ *
+ * @param stars liczba ocen według liczby gwiazdek (1-5)
+ * @param score średnia bayesowska używana do sortowania "najlepiej oceniane"
+ */
+public record RatingHistogramDTO(
+        Long recipeId,
+        Float average,
+        int count,
+        Double score,
+        Map<Integer, Integer> stars
+) {}
@@ -0,0 +1,8 @@
+package org.example.recipeapplication.dto;
+
+public record RecipeAuthorDTO(
+        Long id,
+        String firstName,
+        String lastName,
+        String profilePicture
+) {}
@@ -0,0 +1,28 @@
+package org.example.recipeapplication.dto;
+
+import org.example.recipeapplication.model.RecipeStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Przepis w eksporcie katalogu (jeden wiersz NDJSON) - dane przepisu wraz ze składnikami i tagami
+ */
+public record RecipeExportDTO(
+        Long id,
+        String title,
+        String description,
+        String estimatedTimeToPrepare,
+        String mainImageUrl,
+        RecipeStatus status,
+        Float rate,
+        Integer ratingCount,
+        Integer favoritesCount,
+        Long categoryId,
+        String categoryName,
+        Long authorId,
+        LocalDateTime dateOfCreation,
+        LocalDateTime dateOfModification,
+        List<String> tags,
+        List<IngredientResponseDTO> ingredients
+) {}
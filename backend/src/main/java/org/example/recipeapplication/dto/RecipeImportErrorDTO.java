@@ -0,0 +1,10 @@
+package org.example.recipeapplication.dto;
+
+/**
+ * Wiersz importu, którego nie udało się zapisać - numer wiersza (od 1, bez nagłówka CSV) i przyczyna
+ */
+public record RecipeImportErrorDTO(
+        long row,
+        String title,
+        String error
+) {}
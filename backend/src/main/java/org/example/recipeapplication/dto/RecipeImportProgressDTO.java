@@ -0,0 +1,11 @@
+package org.example.recipeapplication.dto;
+
+/**
+ * Postęp importu przepisów wysyłany po każdej zapisanej paczce; ostatni ma finished = true
+ */
+public record RecipeImportProgressDTO(
+        long processed,
+        long imported,
+        long failed,
+        boolean finished
+) {}
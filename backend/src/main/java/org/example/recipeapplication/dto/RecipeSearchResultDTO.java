@@ -0,0 +1,11 @@
+package org.example.recipeapplication.dto;
+
+import org.springframework.data.domain.Page;
+
+/**
+ * Strona wyników wyszukiwania wraz z liczbami wyników dla filtrów (null, gdy nie są dostępne w danym trybie)
+ */
+public record RecipeSearchResultDTO(
+        Page<RecipeSummaryDTO> results,
+        SearchFacetsDTO facets
+) {}
@@ -0,0 +1,17 @@
+package org.example.recipeapplication.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import org.example.recipeapplication.model.RecipeStatus;
+
+import java.util.List;
+
+/**
+ * Zmiana statusu wielu przepisów naraz (moderacja)
+ */
+public record RecipeStatusBatchRequestDTO(
+        @NotEmpty @Size(max = 1000) List<Long> ids,
+        @NotNull RecipeStatus status
+) {
+}
@@ -0,0 +1,17 @@
+package org.example.recipeapplication.dto;
+
+import org.example.recipeapplication.model.RecipeStatus;
+
+import java.util.List;
+
+/**
+ * Wynik zmiany statusu wielu przepisów: zmienione, pominięte (przejęte do moderacji przez kogoś innego)
+ * i nieistniejące
+ */
+public record RecipeStatusBatchResultDTO(
+        RecipeStatus status,
+        List<Long> updated,
+        List<Long> claimedByOthers,
+        List<Long> notFound
+) {
+}
@@ -0,0 +1,27 @@
+package org.example.recipeapplication.dto;
+
+import org.example.recipeapplication.model.RecipeStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Skrócona postać przepisu (karta) zwracana przez listy i wyszukiwanie. Pełne dane - składniki i komentarze -
+ * zwraca wyłącznie pobranie pojedynczego przepisu (RecipeResponseDTO).
+ */
+public record RecipeSummaryDTO(
+        Long id,
+        String title,
+        Float rate,
+        Integer ratingCount,
+        Double ratingScore,
+        Integer favoritesCount,
+        Long commentsCount,
+        String mainImageUrl,
+        String estimatedTimeToPrepare,
+        RecipeAuthorDTO author,
+        LocalDateTime dateOfCreation,
+        RecipeStatus status,
+        Long categoryId,
+        List<String> tags
+) {}
@@ -0,0 +1,13 @@
+package org.example.recipeapplication.dto;
+
+import java.util.List;
+
+/**
+ * Liczby wyników wyszukiwania w podziale na kategorie, najpopularniejsze tagi i przedziały czasu przygotowania.
+ * Liczby kategorii nie uwzględniają wybranej kategorii, tak aby można było pokazać wyniki w pozostałych.
+ */
+public record SearchFacetsDTO(
+        List<FacetCountDTO> categories,
+        List<FacetCountDTO> tags,
+        List<FacetCountDTO> prepTime
+) {}
@@ -0,0 +1,9 @@
+package org.example.recipeapplication.dto;
+
+/**
+ * Przepis podobny do oglądanego wraz z podobieństwem Jaccarda zbiorów tagów i składników (0-1]
+ */
+public record SimilarRecipeDTO(
+        RecipeSummaryDTO recipe,
+        double similarity
+) {}
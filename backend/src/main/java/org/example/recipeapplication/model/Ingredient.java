@@ -6,8 +6,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.With;
 
-import java.util.List;
-
+/**
+ * Składnik w słowniku składników - jeden wiersz na każdy odrębny składnik. Ilość i jednostka należą do
+ * konkretnego przepisu (RecipeIngredient).
+ */
 @Data
 @With
 @Entity
@@ -15,12 +17,13 @@ import java.util.List;
 @AllArgsConstructor
 public class Ingredient {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ingredient_seq")
+    @SequenceGenerator(name = "ingredient_seq", sequenceName = "ingredient_seq", allocationSize = 50)
     private Long id;
 
+    // Nazwa wyświetlana - w postaci, w jakiej składnik został dodany po raz pierwszy
     private String name;
 
-    private String amount;
-
-    private String unit;
+    // Nazwa znormalizowana (małe litery, bez polskich znaków, pojedyncze spacje) - unikalna w słowniku
+    private String normalizedName;
 }
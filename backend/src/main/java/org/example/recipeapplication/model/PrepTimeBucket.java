@@ -0,0 +1,65 @@
+package org.example.recipeapplication.model;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Przedziały czasu przygotowania przepisu używane w filtrach wyszukiwania
+ */
+public enum PrepTimeBucket {
+    // do 15 minut
+    UP_TO_15_MIN(15),
+    // 16-30 minut
+    UP_TO_30_MIN(30),
+    // 31-60 minut
+    UP_TO_60_MIN(60),
+    // ponad godzinę
+    OVER_60_MIN(Integer.MAX_VALUE),
+    // czasu nie da się odczytać z opisu
+    UNKNOWN(-1);
+
+    // Liczba z opcjonalną jednostką, np. "45", "30 min", "1,5 h", "2 godziny"
+    private static final Pattern DURATION = Pattern.compile("(\\d+(?:[.,]\\d+)?)\\s*(h|godz|hour|min)?");
+
+    private final int maxMinutes;
+
+    PrepTimeBucket(int maxMinutes) {
+        this.maxMinutes = maxMinutes;
+    }
+
+    /**
+     * Przedział dla czasu zapisanego w przepisie jako tekst (pole estimatedTimeToPrepare)
+     */
+    public static PrepTimeBucket of(String estimatedTimeToPrepare) {
+        Integer minutes = parseMinutes(estimatedTimeToPrepare);
+        if (minutes == null) {
+            return UNKNOWN;
+        }
+        for (PrepTimeBucket bucket : values()) {
+            if (bucket != UNKNOWN && minutes <= bucket.maxMinutes) {
+                return bucket;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Czas w minutach; liczba bez jednostki oznacza minuty, a kolejne wartości są sumowane ("1 h 30 min" -> 90)
+     */
+    static Integer parseMinutes(String text) {
+        if (text == null) {
+            return null;
+        }
+        Matcher matcher = DURATION.matcher(text.toLowerCase(Locale.ROOT));
+        double minutes = 0;
+        boolean found = false;
+        while (matcher.find()) {
+            double value = Double.parseDouble(matcher.group(1).replace(',', '.'));
+            String unit = matcher.group(2);
+            minutes += unit != null && !unit.equals("min") ? value * 60 : value;
+            found = true;
+        }
+        return found ? (int) Math.round(minutes) : null;
+    }
+}
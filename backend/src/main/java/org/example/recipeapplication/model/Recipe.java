@@ -5,8 +5,12 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import lombok.With;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.sql.Timestamp;
 import java.util.List;
@@ -14,12 +18,45 @@ import java.util.List;
 @Data
 @With
 @Entity
+// Kolekcje przepisu ładowane są leniwie; grafy określają, co pobrać złączeniem w danym przypadku użycia,
+// a pozostałe kolekcje dociągane są paczkami (@BatchSize) dla wielu przepisów naraz
+@NamedEntityGraph(name = Recipe.GRAPH_LISTING, attributeNodes = {
+        @NamedAttributeNode("author"),
+        @NamedAttributeNode("category")
+})
+@NamedEntityGraph(name = Recipe.GRAPH_DETAIL, attributeNodes = {
+        @NamedAttributeNode("author"),
+        @NamedAttributeNode("category"),
+        @NamedAttributeNode(value = "comments", subgraph = "comment-author")
+}, subgraphs = @NamedSubgraph(name = "comment-author", attributeNodes = @NamedAttributeNode("author")))
+@NamedEntityGraph(name = Recipe.GRAPH_EDIT, attributeNodes = {
+        @NamedAttributeNode("author"),
+        @NamedAttributeNode("category"),
+        @NamedAttributeNode("ingredients")
+})
+// UPDATE obejmuje tylko zmienione kolumny - zapis encji nie nadpisuje liczników ocen i polubień,
+// które zmieniane są bezpośrednio w bazie
+@DynamicUpdate
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 public class Recipe {
+
+    // Lista przepisów: autor i kategoria
+    public static final String GRAPH_LISTING = "Recipe.listing";
+    // Szczegóły przepisu: dodatkowo komentarze wraz z autorami
+    public static final String GRAPH_DETAIL = "Recipe.detail";
+    // Edycja przepisu: dodatkowo składniki
+    public static final String GRAPH_EDIT = "Recipe.edit";
+    private static final int COLLECTION_BATCH_SIZE = 50;
+    // Średnia bayesowska ocen: średnia przesunięta w stronę 3.0 tak, jakby przepis miał 10 dodatkowych ocen 3.0 -
+    // pojedyncza ocena 5 nie wyprzedza przepisów z wieloma wysokimi ocenami
+    public static final String RATING_SCORE_EXPRESSION = "((rating_sum + 30.0) / (rating_count + 10))";
+
+    // Identyfikatory przydzielane z sekwencji pulami po 50 - pozwala to Hibernate łączyć inserty w paczki JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recipe_seq")
+    @SequenceGenerator(name = "recipe_seq", sequenceName = "recipe_seq", allocationSize = 50)
     private Long id;
 
     @Column(length = 255)
@@ -33,6 +70,14 @@ public class Recipe {
     // Liczba ocen, do obliczania średniej oceny
     private Integer ratingCount;
 
+    // Suma ocen - średnia to ratingSum / ratingCount; liczniki aktualizuje RatingAggregationService
+    private Long ratingSum;
+
+    // Ocena do sortowania "najlepiej oceniane" (RATING_SCORE_EXPRESSION) - kolumna generowana przez bazę
+    @Column(insertable = false, updatable = false,
+            columnDefinition = "double precision GENERATED ALWAYS AS " + RATING_SCORE_EXPRESSION + " STORED")
+    private Double ratingScore;
+
     // Liczba osób, które polubiły przepis
     private Integer favoritesCount;
 
@@ -51,8 +96,13 @@ public class Recipe {
 
     private Timestamp dateOfModification;
 
-    @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.REMOVE)
-    private List<Ingredient> ingredients;
+    // Składniki zmieniane są wyłącznie przez RecipeIngredientService - kolekcji nie wolno podmieniać na nową
+    @OneToMany(mappedBy = "recipe", fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("position")
+    @BatchSize(size = COLLECTION_BATCH_SIZE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<RecipeIngredient> ingredients;
 
     @ManyToOne
     @JoinColumn(name = "category_id")
@@ -62,7 +112,10 @@ public class Recipe {
     private List<RecipeImage> images;
 
     // Komentarze do przepisu
-    @OneToMany(mappedBy = "recipe", cascade = CascadeType.REMOVE, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "recipe", cascade = CascadeType.REMOVE, fetch = FetchType.LAZY)
+    @BatchSize(size = COLLECTION_BATCH_SIZE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Comment> comments;
 
     // Powiązane ulubione przepisy
@@ -70,9 +123,12 @@ public class Recipe {
     private List<FollowedRecipe> followedRecipes;
 
     // Zmiana z listy obiektów RecipeTag na listę stringów
-    @ElementCollection(fetch = FetchType.EAGER)
+    @ElementCollection(fetch = FetchType.LAZY)
     @CollectionTable(name = "recipe_tags", joinColumns = @JoinColumn(name = "recipe_id"))
     @Column(name = "tag")
+    @BatchSize(size = COLLECTION_BATCH_SIZE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<String> tags;
 
     @Enumerated(EnumType.STRING)
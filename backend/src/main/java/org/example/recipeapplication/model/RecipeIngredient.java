@@ -0,0 +1,43 @@
+package org.example.recipeapplication.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Składnik użyty w przepisie: odwołanie do słownika składników wraz z ilością i jednostką
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(indexes = {
+        @Index(name = "idx_recipe_ingredient_recipe", columnList = "recipe_id"),
+        @Index(name = "idx_recipe_ingredient_ingredient", columnList = "ingredient_id")
+})
+public class RecipeIngredient {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "recipe_ingredient_seq")
+    @SequenceGenerator(name = "recipe_ingredient_seq", sequenceName = "recipe_ingredient_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "recipe_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Recipe recipe;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "ingredient_id", nullable = false)
+    private Ingredient ingredient;
+
+    private String amount;
+
+    private String unit;
+
+    // Kolejność składnika na liście w przepisie
+    private Integer position;
+}
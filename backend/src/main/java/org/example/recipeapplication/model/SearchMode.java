@@ -0,0 +1,12 @@
+package org.example.recipeapplication.model;
+
+public enum SearchMode {
+    // Dopasowanie fragmentu tekstu (LIKE) w tytule, opisie i tagach
+    LIKE,
+    // Wyszukiwanie pełnotekstowe PostgreSQL (tsvector + indeks GIN), wyniki posortowane wg ts_rank
+    FULL_TEXT,
+    // Indeks odwrócony w pamięci aplikacji (tylko przepisy zaakceptowane), sortowanie wg Pageable
+    INDEX,
+    // Indeks w pamięci z rankingiem trafności BM25 (tytuł, tagi, opis, składniki); sortowanie z Pageable jest pomijane
+    RELEVANCE
+}
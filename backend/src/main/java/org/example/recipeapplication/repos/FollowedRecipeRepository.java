@@ -6,6 +6,8 @@ import org.example.recipeapplication.model.Recipe;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,5 +19,7 @@ public interface FollowedRecipeRepository extends JpaRepository<FollowedRecipe,
     List<FollowedRecipe> findByUser(AppUser user);
     Optional<FollowedRecipe> findByUserAndRecipe(AppUser user, Recipe recipe);
     boolean existsByUserAndRecipe(AppUser user, Recipe recipe);
-    void deleteByUserAndRecipe(AppUser user, Recipe recipe);
+    @Modifying
+    @Query("DELETE FROM FollowedRecipe f WHERE f.user = :user AND f.recipe = :recipe")
+    int deleteFollow(AppUser user, Recipe recipe);
 }
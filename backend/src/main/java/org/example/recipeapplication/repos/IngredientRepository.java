@@ -4,9 +4,12 @@ import org.example.recipeapplication.model.Ingredient;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface IngredientRepository extends JpaRepository<Ingredient, Long> {
-    List<Ingredient> findByNameContainingIgnoreCase(String name);
+    List<Ingredient> findByNormalizedNameIn(Collection<String> normalizedNames);
+
+    List<Ingredient> findByNormalizedNameContainingOrderByNormalizedName(String normalizedName);
 }
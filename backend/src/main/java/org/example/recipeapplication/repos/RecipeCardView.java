@@ -0,0 +1,52 @@
+package org.example.recipeapplication.repos;
+
+import org.example.recipeapplication.model.RecipeStatus;
+
+import java.sql.Timestamp;
+
+/**
+ * Projekcja przepisu na potrzeby list i wyników wyszukiwania - tylko pola wyświetlane na karcie,
+ * bez składników, komentarzy i tagów (tagi dociągane są jednym zapytaniem dla całej strony).
+ */
+public interface RecipeCardView {
+    Long getId();
+
+    String getTitle();
+
+    String getMainImageUrl();
+
+    Float getRating();
+
+    Integer getRatingCount();
+
+    Double getRatingScore();
+
+    Integer getFavoritesCount();
+
+    Long getCommentsCount();
+
+    String getEstimatedTimeToPrepare();
+
+    Timestamp getDateOfCreation();
+
+    RecipeStatus getStatus();
+
+    Long getCategoryId();
+
+    Long getAuthorId();
+
+    String getAuthorFirstName();
+
+    String getAuthorLastName();
+
+    String getAuthorProfilePicture();
+
+    /**
+     * Pojedynczy tag przepisu
+     */
+    interface TagView {
+        Long getRecipeId();
+
+        String getTag();
+    }
+}
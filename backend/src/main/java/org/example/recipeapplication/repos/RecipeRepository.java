@@ -4,19 +4,41 @@ import org.example.recipeapplication.dto.RecipeResponseDTO;
 import org.example.recipeapplication.model.AppUser;
 import org.example.recipeapplication.model.Category;
 import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Repository
 public interface RecipeRepository extends JpaRepository<Recipe, Long> {
+
+    // Pola karty przepisu (RecipeCardView) - bez ładowania kolekcji encji
+    String CARD_SELECT = "SELECT r.id AS id, r.title AS title, r.mainImageUrl AS mainImageUrl, r.rating AS rating, " +
+            "r.ratingCount AS ratingCount, r.ratingScore AS ratingScore, r.favoritesCount AS favoritesCount, " +
+            "(SELECT COUNT(cm) FROM Comment cm WHERE cm.recipe = r) AS commentsCount, " +
+            "r.estimatedTimeToPrepare AS estimatedTimeToPrepare, r.dateOfCreation AS dateOfCreation, r.status AS status, " +
+            "c.id AS categoryId, a.id AS authorId, a.firstName AS authorFirstName, a.lastName AS authorLastName, " +
+            "a.profilePicture AS authorProfilePicture " +
+            "FROM Recipe r JOIN r.author a LEFT JOIN r.category c ";
+
+    // Fraza w tytule, opisie lub tagach; tagi sprawdzane podzapytaniem, więc wynik nie wymaga DISTINCT
+    String LIKE_SEARCH_CONDITION = "(LOWER(r.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+            "LOWER(r.description) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+            "EXISTS (SELECT 1 FROM Recipe tr JOIN tr.tags t WHERE tr.id = r.id " +
+            "AND LOWER(t) LIKE LOWER(CONCAT('%', :searchTerm, '%'))))";
+
     List<Recipe> findByCategory_Id(Long categoryId);
     List<Recipe> findByCategory_NameContaining(String categoryName);
 
@@ -51,33 +73,171 @@ public interface RecipeRepository extends JpaRepository<Recipe, Long> {
     @Query("SELECT r FROM Recipe r WHERE LOWER(r.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR LOWER(r.description) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
     Page<Recipe> searchByTitleOrDescription(@Param("searchTerm") String searchTerm, Pageable pageable);
 
+    @Query(value = CARD_SELECT + "WHERE r.status = :status",
+           countQuery = "SELECT COUNT(r) FROM Recipe r WHERE r.status = :status")
+    Page<RecipeCardView> findCardsByStatus(@Param("status") RecipeStatus status, Pageable pageable);
+
+    @Query(value = CARD_SELECT + "WHERE c.id = :categoryId",
+           countQuery = "SELECT COUNT(r) FROM Recipe r WHERE r.category.id = :categoryId")
+    Page<RecipeCardView> findCardsByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    @Query(value = CARD_SELECT + "WHERE a.id = :authorId",
+           countQuery = "SELECT COUNT(r) FROM Recipe r WHERE r.author.id = :authorId")
+    Page<RecipeCardView> findCardsByAuthorId(@Param("authorId") Long authorId, Pageable pageable);
+
+    @Query(value = CARD_SELECT + "WHERE a.email = :email",
+           countQuery = "SELECT COUNT(r) FROM Recipe r WHERE r.author.email = :email")
+    Page<RecipeCardView> findCardsByAuthorEmail(@Param("email") String email, Pageable pageable);
+
+    @Query(CARD_SELECT + "WHERE r.id IN :ids")
+    List<RecipeCardView> findCardsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT r.id AS recipeId, t AS tag FROM Recipe r JOIN r.tags t WHERE r.id IN :ids")
+    List<RecipeCardView.TagView> findTagsByRecipeIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Karty przepisów zawierających podaną frazę w tytule, opisie lub tagach
+     */
+    @Query(value = CARD_SELECT + "WHERE " + LIKE_SEARCH_CONDITION,
+           countQuery = "SELECT COUNT(r) FROM Recipe r WHERE " + LIKE_SEARCH_CONDITION)
+    Page<RecipeCardView> searchCards(@Param("searchTerm") String searchTerm, Pageable pageable);
+
+    @Query(value = CARD_SELECT + "WHERE " + LIKE_SEARCH_CONDITION + " AND c.id = :categoryId",
+           countQuery = "SELECT COUNT(r) FROM Recipe r WHERE " + LIKE_SEARCH_CONDITION + " AND r.category.id = :categoryId")
+    Page<RecipeCardView> searchCardsByCategoryId(@Param("searchTerm") String searchTerm, @Param("categoryId") Long categoryId, Pageable pageable);
+
+    /**
+     * Wyszukiwanie pełnotekstowe po kolumnie search_vector (indeks GIN) - ID przepisów uporządkowane wg trafności.
+     * Parametr query musi być poprawnym wyrażeniem tsquery (np. "makaron:* & ser:*").
+     */
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.search_vector @@ to_tsquery('simple', :query) " +
+                   "ORDER BY ts_rank(r.search_vector, to_tsquery('simple', :query)) DESC, r.id DESC",
+           countQuery = "SELECT COUNT(*) FROM recipe r WHERE r.search_vector @@ to_tsquery('simple', :query)",
+           nativeQuery = true)
+    Page<Long> searchFullTextIds(@Param("query") String query, Pageable pageable);
+
+    /**
+     * Wyszukiwanie pełnotekstowe ograniczone do jednej kategorii
+     */
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.search_vector @@ to_tsquery('simple', :query) " +
+                   "AND r.category_id = :categoryId " +
+                   "ORDER BY ts_rank(r.search_vector, to_tsquery('simple', :query)) DESC, r.id DESC",
+           countQuery = "SELECT COUNT(*) FROM recipe r WHERE r.search_vector @@ to_tsquery('simple', :query) " +
+                        "AND r.category_id = :categoryId",
+           nativeQuery = true)
+    Page<Long> searchFullTextIdsAndCategory(@Param("query") String query, @Param("categoryId") Long categoryId, Pageable pageable);
+
+    // Stronicowanie kursorem (keyset): zamiast OFFSET i COUNT(*) wyszukiwanie zaczyna się od klucza
+    // ostatniego przepisu z poprzedniej strony, co obsługują indeksy (filtr, klucz sortowania, id).
+    // Zapytania zwracają ID, a karty przepisów pobierane są osobno (findCardsByIdIn)
+    // Brak daty utworzenia lub oceny traktowany jest jak najmniejsza wartość (RecipeCursor.after robi to samo)
+
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.status = 'ACCEPTED' " +
+                   "AND (COALESCE(r.date_of_creation, TIMESTAMP 'epoch'), r.id) < (:date, :id) " +
+                   "ORDER BY COALESCE(r.date_of_creation, TIMESTAMP 'epoch') DESC, r.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsAcceptedByDateAfterCursor(@Param("date") Timestamp date, @Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.status = 'ACCEPTED' " +
+                   "AND (COALESCE(r.rating, 0), r.id) < (:rating, :id) " +
+                   "ORDER BY COALESCE(r.rating, 0) DESC, r.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsAcceptedByRatingAfterCursor(@Param("rating") Float rating, @Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.category_id = :categoryId " +
+                   "AND (COALESCE(r.date_of_creation, TIMESTAMP 'epoch'), r.id) < (:date, :id) " +
+                   "ORDER BY COALESCE(r.date_of_creation, TIMESTAMP 'epoch') DESC, r.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsByCategoryAndDateAfterCursor(@Param("categoryId") Long categoryId, @Param("date") Timestamp date,
+                                                  @Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.category_id = :categoryId " +
+                   "AND (COALESCE(r.rating, 0), r.id) < (:rating, :id) " +
+                   "ORDER BY COALESCE(r.rating, 0) DESC, r.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsByCategoryAndRatingAfterCursor(@Param("categoryId") Long categoryId, @Param("rating") Float rating,
+                                                    @Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.author_id = :authorId " +
+                   "AND (COALESCE(r.date_of_creation, TIMESTAMP 'epoch'), r.id) < (:date, :id) " +
+                   "ORDER BY COALESCE(r.date_of_creation, TIMESTAMP 'epoch') DESC, r.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsByAuthorAndDateAfterCursor(@Param("authorId") Long authorId, @Param("date") Timestamp date,
+                                                @Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.author_id = :authorId " +
+                   "AND (COALESCE(r.rating, 0), r.id) < (:rating, :id) " +
+                   "ORDER BY COALESCE(r.rating, 0) DESC, r.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsByAuthorAndRatingAfterCursor(@Param("authorId") Long authorId, @Param("rating") Float rating,
+                                                  @Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.status = 'ACCEPTED' " +
+                   "AND (r.rating_score, r.id) < (:score, :id) " +
+                   "ORDER BY r.rating_score DESC, r.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsAcceptedByScoreAfterCursor(@Param("score") Double score, @Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.category_id = :categoryId " +
+                   "AND (r.rating_score, r.id) < (:score, :id) " +
+                   "ORDER BY r.rating_score DESC, r.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsByCategoryAndScoreAfterCursor(@Param("categoryId") Long categoryId, @Param("score") Double score,
+                                                   @Param("id") Long id, @Param("limit") int limit);
+
+    @Query(value = "SELECT r.id FROM recipe r WHERE r.author_id = :authorId " +
+                   "AND (r.rating_score, r.id) < (:score, :id) " +
+                   "ORDER BY r.rating_score DESC, r.id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findIdsByAuthorAndScoreAfterCursor(@Param("authorId") Long authorId, @Param("score") Double score,
+                                                 @Param("id") Long id, @Param("limit") int limit);
+
+    @EntityGraph(Recipe.GRAPH_LISTING)
     Page<Recipe> findByCategory(Category category, Pageable pageable);
 
+    @EntityGraph(Recipe.GRAPH_LISTING)
     Page<Recipe> findByAuthor(AppUser user, Pageable pageable);
 
+    @EntityGraph(Recipe.GRAPH_LISTING)
     Page<Recipe> findByAuthor_Email(String email, Pageable pageable);
 
-    Page<Recipe> findByStatus(org.example.recipeapplication.model.RecipeStatus status, Pageable pageable);
+    @EntityGraph(Recipe.GRAPH_LISTING)
+    Page<Recipe> findByStatus(RecipeStatus status, Pageable pageable);
 
-    @Query("SELECT DISTINCT r FROM Recipe r LEFT JOIN r.tags t WHERE " +
-            "(LOWER(r.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-            "LOWER(r.description) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-            "LOWER(t) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) " +
-            "ORDER BY r.favoritesCount")
-    Page<Recipe> searchByTitleOrDescriptionOrTagsOrderByFollowersCount(
-            @Param("searchTerm") String searchTerm,
-            Pageable pageable
-    );
+    @EntityGraph(Recipe.GRAPH_LISTING)
+    List<Recipe> findByStatusAndIdGreaterThanOrderByIdAsc(RecipeStatus status, Long id, Limit limit);
 
-    @Query("SELECT DISTINCT r FROM Recipe r LEFT JOIN r.tags t WHERE " +
-            "(LOWER(r.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-            "LOWER(r.description) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
-            "LOWER(t) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) AND " +
-            "r.category = :category " +
-            "ORDER BY r.favoritesCount")
-    Page<Recipe> searchByTitleOrDescriptionOrTagsAndCategoryOrderByFollowersCount(
-            @Param("searchTerm") String searchTerm,
-            @Param("category") Category category,
-            Pageable pageable
-    );
+    /**
+     * Przekazuje wszystkie przepisy o danym statusie paczkami w kolejności id. Kolejna paczka zaczyna się
+     * za ostatnim id poprzedniej (bez OFFSET), więc przepisy zmieniające status w trakcie przeglądania
+     * nie przesuwają pozostałych i żaden niezmieniony przepis nie zostaje pominięty.
+     */
+    default void forEachBatchByStatus(RecipeStatus status, int batchSize, Consumer<List<Recipe>> consumer) {
+        long lastId = 0;
+        while (true) {
+            List<Recipe> batch = findByStatusAndIdGreaterThanOrderByIdAsc(status, lastId, Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                return;
+            }
+            // Odczytane przed przekazaniem - konsument może odłączyć encje od kontekstu persystencji
+            lastId = batch.get(batch.size() - 1).getId();
+            consumer.accept(batch);
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Przepis do wyświetlenia szczegółów - komentarze z autorami pobierane złączeniem,
+     * tagi i składniki leniwie (paczkami)
+     */
+    @EntityGraph(Recipe.GRAPH_DETAIL)
+    Optional<Recipe> findDetailById(Long id);
+
+    /**
+     * Przepis do edycji - składniki pobierane złączeniem
+     */
+    @EntityGraph(Recipe.GRAPH_EDIT)
+    Optional<Recipe> findForEditById(Long id);
 }
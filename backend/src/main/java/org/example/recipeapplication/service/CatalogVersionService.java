@@ -0,0 +1,183 @@
+package org.example.recipeapplication.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.recipeapplication.model.SearchMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Wersje, z których budowane są ETagi odpowiedzi GET. Wersje list zapisywane są w bazie (tabela catalog_version,
+ * numery z sekwencji catalog_version_seq), więc są wspólne dla wszystkich instancji i przetrwają restart.
+ * Zakresy: wszystkie przepisy (recipes), przepisy kategorii (category:id) i autora (author:id), lista kategorii
+ * (categories) oraz zmiany widoczne we wszystkich przepisach, np. dane autorów (shared) - ta wersja jest częścią
+ * każdego ETagu przepisów. Wersje list podbijają tylko zmiany ich składu lub kolejności (status, kategoria,
+ * treść, usunięcie przepisu) - i tylko w zakresach, w których przepis występuje. Zmiany liczników (oceny,
+ * polubienia, komentarze) nie podbijają wersji, żeby nie unieważniać list przy każdym zapisie.
+ * Wersje podbijane są po zatwierdzeniu transakcji jedną krótką instrukcją, w stałej kolejności zakresów.
+ * ETag szczegółów przepisu wyznaczany jest z kolumn jego wiersza (jeden odczyt po kluczu głównym): datę modyfikacji
+ * zmienia edycja, liczniki - oceny i polubienia, a detail_version - komentarze i reakcje na nie.
+ * Cache w pamięci (RecipeDetailCache, RecipeSearchCache) pamiętają ETag, z którym wczytano wpis, i odrzucają wpis,
+ * gdy ETag wyznaczony dla żądania jest inny - także po zmianie wykonanej przez inną instancję.
+ */
+@Slf4j
+@Service
+public class CatalogVersionService {
+
+    static final String ALL_RECIPES = "recipes";
+    static final String CATEGORIES = "categories";
+    static final String SHARED = "shared";
+
+    private static final String BUMP = """
+            INSERT INTO catalog_version (scope, version)
+            SELECT scope, nextval('catalog_version_seq') FROM unnest(?::text[]) AS s(scope) ORDER BY scope
+            ON CONFLICT (scope) DO UPDATE SET version = EXCLUDED.version
+            """;
+
+    private static final String LIST_VERSION = """
+            SELECT COALESCE(MAX(version) FILTER (WHERE scope = ?), 0) AS scoped,
+                   COALESCE(MAX(version) FILTER (WHERE scope = 'shared'), 0) AS shared
+            FROM catalog_version
+            WHERE scope IN (?, 'shared')
+            """;
+
+    private static final String RECIPE_DIGEST = """
+            SELECT md5(concat_ws('|', r.date_of_modification, r.status, r.rating, r.rating_count, r.favorites_count,
+                r.detail_version, (SELECT version FROM catalog_version WHERE scope = 'shared')))
+            FROM recipe r
+            WHERE r.id = ?
+            """;
+
+    private static final String BUMP_DETAIL = "UPDATE recipe SET detail_version = detail_version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RecipeSearchIndex recipeSearchIndex;
+
+    public CatalogVersionService(JdbcTemplate jdbcTemplate, RecipeSearchIndex recipeSearchIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.recipeSearchIndex = recipeSearchIndex;
+    }
+
+    public static String categoryScope(Long categoryId) {
+        return "category:" + categoryId;
+    }
+
+    public static String authorScope(Long authorId) {
+        return "author:" + authorId;
+    }
+
+    /**
+     * Podbija wersje list, w których występują przepisy (wg ich obecnej kategorii i autora); wywoływane
+     * po zatwierdzeniu zmiany statusu. Przepis przeniesiony do innej kategorii lub usunięty wymaga podania
+     * poprzednich zakresów w {@link #scopesChanged(Collection)}.
+     */
+    public void recipesChanged(Collection<Long> recipeIds) {
+        Set<String> scopes = new TreeSet<>();
+        scopes.add(ALL_RECIPES);
+        if (!recipeIds.isEmpty()) {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(
+                        "SELECT DISTINCT category_id, author_id FROM recipe WHERE id = ANY (?)");
+                ps.setArray(1, con.createArrayOf("bigint", recipeIds.toArray()));
+                return ps;
+            }, rs -> {
+                long categoryId = rs.getLong("category_id");
+                if (!rs.wasNull()) {
+                    scopes.add(categoryScope(categoryId));
+                }
+                long authorId = rs.getLong("author_id");
+                if (!rs.wasNull()) {
+                    scopes.add(authorScope(authorId));
+                }
+            });
+        }
+        bump(scopes);
+    }
+
+    /**
+     * Podbija wersje podanych zakresów (oraz listy wszystkich przepisów); wywoływane po zatwierdzeniu zmian
+     */
+    public void scopesChanged(Collection<String> scopes) {
+        Set<String> sorted = new TreeSet<>(scopes);
+        sorted.add(ALL_RECIPES);
+        bump(sorted);
+    }
+
+    /**
+     * Zmiana widoczna we wszystkich przepisach (np. dane autorów) - zmienia ETagi wszystkich list i szczegółów
+     */
+    public void allRecipesChanged() {
+        bump(List.of(SHARED));
+    }
+
+    public void categoriesChanged() {
+        bump(List.of(CATEGORIES));
+    }
+
+    /**
+     * Zmiana szczegółów przepisu, której nie widać w kolumnach jego wiersza (komentarze i reakcje na nie) -
+     * zmienia ETag przepisu; wywoływane w transakcji zapisu
+     */
+    public void recipeDetailChanged(Long recipeId) {
+        jdbcTemplate.update(BUMP_DETAIL, recipeId);
+    }
+
+    /**
+     * ETag szczegółów przepisu
+     *
+     * @return null, gdy przepis nie istnieje
+     */
+    public String recipeETag(Long recipeId) {
+        List<String> digest = jdbcTemplate.queryForList(RECIPE_DIGEST, String.class, recipeId);
+        return digest.isEmpty() ? null : "r-" + digest.get(0);
+    }
+
+    /**
+     * ETag listy zaakceptowanych przepisów (wszystkich lub z jednej kategorii)
+     */
+    public String listETag(Long categoryId) {
+        return versionETag(categoryId == null ? ALL_RECIPES : categoryScope(categoryId));
+    }
+
+    public String authorListETag(Long authorId) {
+        return versionETag(authorScope(authorId));
+    }
+
+    /**
+     * ETag wyników wyszukiwania. Dopóki indeks w pamięci nie jest zbudowany, tryby INDEX i RELEVANCE korzystają
+     * z wyszukiwania LIKE, którego wyniki mogą się różnić - ETag jest wtedy inny.
+     */
+    public String searchETag(Long categoryId, SearchMode mode) {
+        String etag = listETag(categoryId);
+        boolean indexMode = mode == SearchMode.INDEX || mode == SearchMode.RELEVANCE;
+        return indexMode && !recipeSearchIndex.isReady() ? etag + "-like" : etag;
+    }
+
+    public String categoriesETag() {
+        return versionETag(CATEGORIES);
+    }
+
+    private String versionETag(String scope) {
+        return jdbcTemplate.queryForObject(LIST_VERSION, (rs, rowNum) -> "v-"
+                + Long.toString(rs.getLong("scoped"), Character.MAX_RADIX) + "-"
+                + Long.toString(rs.getLong("shared"), Character.MAX_RADIX), scope, scope);
+    }
+
+    private void bump(Collection<String> scopes) {
+        try {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(BUMP);
+                ps.setArray(1, con.createArrayOf("text", scopes.toArray()));
+                return ps;
+            });
+        } catch (Exception e) {
+            // Zmiany są już zatwierdzone - nie zgłaszamy błędu żądaniu, które je wykonało
+            log.error("Nie udało się podbić wersji katalogu {}: {}", scopes, e.getMessage());
+        }
+    }
+}
@@ -15,11 +15,14 @@ import java.util.List;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CatalogVersionService catalogVersionService;
 
     public Category save(CategoryRequestDTO dto) {
         Category category = new Category();
         category.setName(dto.name());
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        catalogVersionService.categoriesChanged();
+        return saved;
     }
 
     public CategoryResponseDTO getById(Long id) {
@@ -39,6 +42,7 @@ public class CategoryService {
         Category category = new Category();
         category.setName(dto.name());
         Category saved = categoryRepository.save(category);
+        catalogVersionService.categoriesChanged();
         return mapToDTO(saved);
     }
 
@@ -63,6 +67,7 @@ public class CategoryService {
 
         try {
             categoryRepository.deleteById(id);
+            catalogVersionService.categoriesChanged();
         } catch (Exception e) {
             // W przypadku naruszenia ograniczeń integralności (np. kategoria używana w przepisach)
             throw new IllegalStateException("Nie można usunąć kategorii, ponieważ jest używana w przepisach", e);
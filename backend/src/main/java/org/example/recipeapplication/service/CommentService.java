@@ -29,6 +29,9 @@ public class CommentService {
     private final AppUserRepository userRepository;
     private final CommentReactionRepository commentReactionRepository;
     private final UserAdminService userAdminService; // Dodanie UserAdminService
+    private final TrendingService trendingService;
+    private final RecipeDetailCache recipeDetailCache;
+    private final CatalogVersionService catalogVersionService;
 
     public CommentResponseDTO addComment(CommentRequestDTO dto, String userEmail) {
         Recipe recipe = recipeRepository.findById(dto.recipeId())
@@ -53,6 +56,8 @@ public class CommentService {
         comment.setDateOfCreation(new Timestamp(System.currentTimeMillis()));
 
         Comment saved = commentRepository.save(comment);
+        trendingService.recordComment(recipe);
+        recipeDetailChanged(recipe.getId());
         return mapToDTO(saved);
     }
 
@@ -79,7 +84,9 @@ public class CommentService {
      * Ta metoda będzie używana tylko wewnętrznie - nie powinna być dostępna przez API
      */
     public void deleteComment(Long id) {
+        Optional<Long> recipeId = commentRepository.findById(id).map(comment -> comment.getRecipe().getId());
         commentRepository.deleteById(id);
+        recipeId.ifPresent(this::recipeDetailChanged);
     }
 
     /**
@@ -120,6 +127,7 @@ public class CommentService {
 
             // Teraz usuwamy sam komentarz
             commentRepository.deleteById(commentId);
+            recipeDetailChanged(recipe.getId());
             return true;
         }
 
@@ -250,6 +258,16 @@ public class CommentService {
         comment.setDislikesCount(dislikes);
 
         commentRepository.save(comment);
+        // Liczniki reakcji są częścią szczegółów przepisu
+        recipeDetailChanged(comment.getRecipe().getId());
+    }
+
+    /**
+     * Komentarze i reakcje na nie są częścią szczegółów przepisu - zmienia ETag przepisu i usuwa go z cache
+     */
+    private void recipeDetailChanged(Long recipeId) {
+        catalogVersionService.recipeDetailChanged(recipeId);
+        recipeDetailCache.evict(recipeId);
     }
 
     /**
@@ -0,0 +1,143 @@
+package org.example.recipeapplication.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Licznik polubień przepisów (favorites_count). Obserwowanie i jego cofnięcie nie zmieniają wiersza przepisu -
+ * zmiana zapisywana jest w tej samej transakcji co obserwacja jako wiersz tabeli favorites_outbox, a co
+ * app.favorites.flush-interval-ms zmiany z outboxa sumowane są per przepis i nanoszone wsadowo w transakcji,
+ * która usuwa przetworzone wiersze. Zmiana nie czeka więc w pamięci żadnej instancji - po awarii nic nie ginie,
+ * a RecipeStatsReconciler widzi w bazie wszystkie zmiany jeszcze nienaniesione na licznik.
+ * Przebiegi wszystkich instancji (i RecipeStatsReconciler) wykluczają się blokadą doradczą.
+ */
+@Slf4j
+@Service
+public class FavoritesCounterService {
+
+    // Klucz blokady doradczej chroniącej liczbę polubień przed równoległym przeliczaniem
+    static final long FAVORITES_LOCK = 0x46415653L;
+
+    private static final String RECORD = """
+            INSERT INTO favorites_outbox (recipe_id, delta, created_at)
+            VALUES (?, ?, now())
+            """;
+
+    private static final String DRAIN_BATCH = """
+            DELETE FROM favorites_outbox WHERE id IN (
+                SELECT id FROM favorites_outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED)
+            RETURNING recipe_id, delta
+            """;
+
+    private static final String APPLY_DELTA = "UPDATE recipe SET favorites_count = favorites_count + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipeDetailCache recipeDetailCache;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Counter flushed;
+
+    public FavoritesCounterService(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   RecipeSearchIndex recipeSearchIndex,
+                                   RecipeDetailCache recipeDetailCache,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.favorites.flush.batch-size:5000}") int batchSize,
+                                   @Value("${app.favorites.flush.max-batches:20}") int maxBatches) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.recipeDetailCache = recipeDetailCache;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.flushed = Counter.builder("recipe.favorites.flushed")
+                .description("Zmiany polubień naniesione na liczniki przepisów")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Zapisuje zmianę liczby polubień do naniesienia na licznik przepisu; wywoływane w transakcji zapisu
+     * lub usunięcia obserwacji
+     */
+    @Transactional
+    public void add(Long recipeId, int delta) {
+        jdbcTemplate.update(RECORD, recipeId, delta);
+    }
+
+    @Scheduled(fixedDelayString = "${app.favorites.flush-interval-ms:1000}",
+               initialDelayString = "${app.favorites.flush-interval-ms:1000}")
+    public void flush() {
+        try {
+            for (int i = 0; i < maxBatches; i++) {
+                if (flushBatch() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            // Wiersze outboxa zostają w tabeli i zostaną naniesione przy następnym przebiegu
+            log.error("Nie udało się nanieść zmian liczby polubień przepisów: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Nanosi jedną paczkę zmian z outboxa: zmiany sumowane są per przepis, a przepisy aktualizowane wsadowo
+     * w kolejności id (stała kolejność blokad wierszy)
+     *
+     * @return liczba przetworzonych wierszy outboxa (0, gdy przebieg trwa na innej instancji)
+     */
+    int flushBatch() {
+        record Stats(long id, Float rating, Integer favoritesCount) {}
+        record Result(int processed, List<Stats> stats) {}
+        Result result = transactionTemplate.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class,
+                    FAVORITES_LOCK);
+            if (!Boolean.TRUE.equals(locked)) {
+                return null;
+            }
+            Map<Long, Long> deltas = new TreeMap<>();
+            int[] processed = {0};
+            jdbcTemplate.query(DRAIN_BATCH, rs -> {
+                deltas.merge(rs.getLong("recipe_id"), (long) rs.getInt("delta"), Long::sum);
+                processed[0]++;
+            }, batchSize);
+            deltas.values().removeIf(delta -> delta == 0);
+            if (deltas.isEmpty()) {
+                return new Result(processed[0], List.of());
+            }
+            jdbcTemplate.batchUpdate(APPLY_DELTA, deltas.entrySet().stream()
+                    .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                    .toList());
+            List<Stats> stats = jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(
+                        "SELECT id, rating, favorites_count FROM recipe WHERE id = ANY (?)");
+                ps.setArray(1, con.createArrayOf("bigint", deltas.keySet().toArray()));
+                return ps;
+            }, (rs, rowNum) -> new Stats(rs.getLong("id"), rs.getObject("rating", Float.class),
+                    rs.getObject("favorites_count", Integer.class)));
+            return new Result(processed[0], stats);
+        });
+        if (result == null) {
+            return 0;
+        }
+        for (Stats stats : result.stats()) {
+            recipeSearchIndex.updateStats(stats.id(), stats.rating(), stats.favoritesCount());
+        }
+        recipeDetailCache.evict(result.stats().stream().map(Stats::id).toList());
+        flushed.increment(result.processed());
+        return result.processed();
+    }
+}
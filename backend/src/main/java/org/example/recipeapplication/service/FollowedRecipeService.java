@@ -3,7 +3,7 @@ package org.example.recipeapplication.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.recipeapplication.dto.FollowedRecipeResponseDTO;
-import org.example.recipeapplication.dto.RecipeResponseDTO;
+import org.example.recipeapplication.dto.RecipeSummaryDTO;
 import org.example.recipeapplication.model.AppUser;
 import org.example.recipeapplication.model.FollowedRecipe;
 import org.example.recipeapplication.model.Recipe;
@@ -12,12 +12,14 @@ import org.example.recipeapplication.repos.FollowedRecipeRepository;
 import org.example.recipeapplication.repos.RecipeRepository;
 import org.example.recipeapplication.repos.AppUserRepository;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.EntityNotFoundException;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -30,6 +32,8 @@ public class FollowedRecipeService {
     private final RecipeRepository recipeRepository;
     private final AppUserRepository userRepository;
     private final RecipeService recipeService;
+    private final TrendingService trendingService;
+    private final FavoritesCounterService favoritesCounterService;
 
     @Transactional
     public FollowedRecipeResponseDTO followRecipe(Long recipeId, String userEmail) {
@@ -48,15 +52,10 @@ public class FollowedRecipeService {
         followedRecipe.setUser(user);
         followedRecipe.setRecipe(recipe);
 
-        // Zwiększ licznik polubień przepisu
-        if (recipe.getFavoritesCount() == null) {
-            recipe.setFavoritesCount(1);
-        } else {
-            recipe.setFavoritesCount(recipe.getFavoritesCount() + 1);
-        }
-        recipeRepository.save(recipe);
-
         FollowedRecipe savedFollowed = followedRecipeRepository.save(followedRecipe);
+        // Licznik polubień zwiększany jest z opóźnieniem (outbox), bez blokowania wiersza przepisu
+        favoritesCounterService.add(recipeId, 1);
+        trendingService.recordFollow(recipe);
         return mapToDTO(savedFollowed);
     }
 
@@ -113,19 +112,10 @@ public class FollowedRecipeService {
         Recipe recipe = recipeRepository.findById(recipeId)
                 .orElseThrow(() -> new EntityNotFoundException("Przepis nie znaleziony"));
 
-        // Sprawdzamy, czy użytkownik faktycznie obserwował ten przepis
-        boolean wasFollowed = followedRecipeRepository.existsByUserAndRecipe(user, recipe);
-
-        if (wasFollowed) {
-            // Zmniejszamy licznik polubień tylko jeśli faktycznie usuwamy obserwację
-            if (recipe.getFavoritesCount() != null && recipe.getFavoritesCount() > 0) {
-                recipe.setFavoritesCount(recipe.getFavoritesCount() - 1);
-                recipeRepository.save(recipe);
-                log.info("Zmniejszono licznik polubień dla przepisu {} do {}", recipeId, recipe.getFavoritesCount());
-            }
-
-            // Usuwamy obserwację
-            followedRecipeRepository.deleteByUserAndRecipe(user, recipe);
+        // Licznik polubień zmniejszamy tylko wtedy, gdy to żądanie faktycznie usunęło obserwację -
+        // z dwóch równoległych żądań wiersz usunie tylko jedno
+        if (followedRecipeRepository.deleteFollow(user, recipe) > 0) {
+            favoritesCounterService.add(recipeId, -1);
             log.info("Usunięto przepis {} z obserwowanych dla użytkownika {}", recipeId, user.getId());
         }
     }
@@ -143,43 +133,43 @@ public class FollowedRecipeService {
     }
 
     /**
-     * Pobiera pełne obiekty RecipeResponseDTO dla ulubionych przepisów użytkownika
+     * Pobiera karty (RecipeSummaryDTO) ulubionych przepisów użytkownika
      * @param userEmail email użytkownika
      * @param pageable parametry paginacji
-     * @return strona z pełnymi danymi przepisów (tak jak w "moje przepisy")
+     * @return strona z kartami przepisów (tak jak w "moje przepisy")
      */
     @Transactional(readOnly = true)
-    public Page<RecipeResponseDTO> getFollowedRecipesAsFullRecipes(String userEmail, Pageable pageable) {
+    public Page<RecipeSummaryDTO> getFollowedRecipesAsFullRecipes(String userEmail, Pageable pageable) {
         log.info("Pobieranie pełnych danych dla obserwowanych przepisów użytkownika: {}", userEmail);
 
         AppUser user = getUserForOperations(userEmail);
         Page<FollowedRecipe> followedRecipesPage = followedRecipeRepository.findByUser(user, pageable);
 
-        // Konwertujemy stronę FollowedRecipe na stronę RecipeResponseDTO
-        return followedRecipesPage.map(followedRecipe ->
-            // Pobieramy pełne dane przepisu przy pomocy RecipeService
-            recipeService.getRecipeById(followedRecipe.getRecipe().getId()).orElse(null)
-        );
+        // Karty wszystkich przepisów ze strony pobierane są razem, zamiast osobnego zapytania dla każdego przepisu
+        List<Long> recipeIds = followedRecipesPage.getContent().stream()
+                .map(followedRecipe -> followedRecipe.getRecipe().getId())
+                .toList();
+        return new PageImpl<>(recipeService.findSummariesInOrder(recipeIds), pageable, followedRecipesPage.getTotalElements());
     }
 
     /**
-     * Pobiera pełne obiekty RecipeResponseDTO dla ulubionych przepisów użytkownika po ID
+     * Pobiera karty (RecipeSummaryDTO) ulubionych przepisów użytkownika po ID
      * @param userId ID użytkownika
      * @param pageable parametry paginacji
-     * @return strona z pełnymi danymi przepisów (tak jak w "moje przepisy")
+     * @return strona z kartami przepisów (tak jak w "moje przepisy")
      */
     @Transactional(readOnly = true)
-    public Page<RecipeResponseDTO> getUserFollowedRecipesAsFullRecipes(Long userId, Pageable pageable) {
+    public Page<RecipeSummaryDTO> getUserFollowedRecipesAsFullRecipes(Long userId, Pageable pageable) {
         AppUser user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("User not found with id: " + userId));
 
         Page<FollowedRecipe> followedRecipesPage = followedRecipeRepository.findByUser(user, pageable);
 
-        // Konwertujemy stronę FollowedRecipe na stronę RecipeResponseDTO
-        return followedRecipesPage.map(followedRecipe ->
-            // Pobieramy pełne dane przepisu przy pomocy RecipeService
-            recipeService.getRecipeById(followedRecipe.getRecipe().getId()).orElse(null)
-        );
+        // Karty wszystkich przepisów ze strony pobierane są razem, zamiast osobnego zapytania dla każdego przepisu
+        List<Long> recipeIds = followedRecipesPage.getContent().stream()
+                .map(followedRecipe -> followedRecipe.getRecipe().getId())
+                .toList();
+        return new PageImpl<>(recipeService.findSummariesInOrder(recipeIds), pageable, followedRecipesPage.getTotalElements());
     }
 
     /**
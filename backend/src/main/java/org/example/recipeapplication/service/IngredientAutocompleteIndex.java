@@ -0,0 +1,365 @@
+package org.example.recipeapplication.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Podpowiedzi nazw składników trzymane w pamięci. Drzewo prefiksowe (trie) zbudowane jest nad znormalizowanymi
+ * nazwami ze słownika składników - bez polskich znaków, więc "zolc" podpowiada "żółć". Składnik dostępny jest
+ * od początku nazwy i od początku każdego kolejnego słowa ("mielona" podpowiada "wołowina mielona").
+ * Podpowiedzi szeregowane są wg liczby przepisów, w których składnik występuje; każdy węzeł pamięta największą
+ * częstość w swoim poddrzewie, więc najlepsze wyniki wybierane są bez przeglądania całego poddrzewa.
+ * Częstości aktualizowane są przyrostowo przez RecipeIngredientService po zatwierdzeniu transakcji.
+ */
+@Slf4j
+@Service
+public class IngredientAutocompleteIndex {
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    // Kolejność składników o tej samej częstości: alfabetycznie wg nazwy znormalizowanej
+    private static final Comparator<Entry> TIE_BREAK = Comparator.comparing(entry -> entry.normalizedName);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxSuggestions;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private Node root = new Node();
+
+    private volatile boolean ready;
+
+    /**
+     * Podpowiedź: pozycja słownika składników i liczba przepisów, które jej używają
+     */
+    public record Suggestion(Long id, String name, long usage) {}
+
+    private static final class Entry {
+        final long id;
+        final String name;
+        final String normalizedName;
+        long usage;
+
+        Entry(long id, String name, String normalizedName, long usage) {
+            this.id = id;
+            this.name = name;
+            this.normalizedName = normalizedName;
+            this.usage = usage;
+        }
+    }
+
+    /**
+     * Węzeł drzewa: dzieci w tablicach posortowanych wg znaku (wyszukiwanie binarne zamiast mapy na węzeł)
+     */
+    private static final class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        // Składniki, których klucz kończy się w tym węźle
+        Entry[] entries = NO_ENTRIES;
+        // Największa częstość składnika w poddrzewie; -1 dla pustego poddrzewa
+        long best = -1;
+
+        Node child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node addChild(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            Node child = new Node();
+            labels = insert(labels, at, label);
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, at);
+            grown[at] = child;
+            System.arraycopy(children, at, grown, at + 1, children.length - at);
+            children = grown;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int at = Arrays.binarySearch(labels, label);
+            if (at < 0) {
+                return;
+            }
+            char[] shrunkLabels = new char[labels.length - 1];
+            System.arraycopy(labels, 0, shrunkLabels, 0, at);
+            System.arraycopy(labels, at + 1, shrunkLabels, at, labels.length - at - 1);
+            Node[] shrunk = new Node[children.length - 1];
+            System.arraycopy(children, 0, shrunk, 0, at);
+            System.arraycopy(children, at + 1, shrunk, at, children.length - at - 1);
+            labels = shrunkLabels;
+            children = shrunk;
+        }
+
+        boolean isEmpty() {
+            return entries.length == 0 && children.length == 0;
+        }
+
+        void recomputeBest() {
+            long max = -1;
+            for (Entry entry : entries) {
+                max = Math.max(max, entry.usage);
+            }
+            for (Node child : children) {
+                max = Math.max(max, child.best);
+            }
+            best = max;
+        }
+
+        private static char[] insert(char[] array, int at, char value) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, at);
+            grown[at] = value;
+            System.arraycopy(array, at, grown, at + 1, array.length - at);
+            return grown;
+        }
+    }
+
+    public IngredientAutocompleteIndex(JdbcTemplate jdbcTemplate,
+                                       @Value("${app.ingredients.autocomplete.max-suggestions:50}") int maxSuggestions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    /**
+     * Buduje drzewo od nowa na podstawie słownika składników i liczby ich użyć w przepisach
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Long, Entry> loaded = new HashMap<>();
+        Node rebuilt = new Node();
+        jdbcTemplate.query("""
+                SELECT i.id, i.name, i.normalized_name, COUNT(ri.id) AS usage_count
+                FROM ingredient i
+                LEFT JOIN recipe_ingredient ri ON ri.ingredient_id = i.id
+                GROUP BY i.id, i.name, i.normalized_name
+                """, rs -> {
+            Entry entry = new Entry(rs.getLong("id"), rs.getString("name"),
+                    rs.getString("normalized_name"), rs.getLong("usage_count"));
+            loaded.put(entry.id, entry);
+            insert(rebuilt, entry);
+        });
+
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            entries.putAll(loaded);
+            root = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+        log.info("Zbudowano indeks podpowiedzi składników: {} składników, {} ms",
+                loaded.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Najczęściej używane składniki, których nazwa lub jedno ze słów nazwy zaczyna się od podanego tekstu
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = RecipeIngredientService.normalizedName(prefix);
+        int size = Math.min(limit, maxSuggestions);
+        if (size <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            return node != null ? top(node, size) : List.of();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Dodaje składnik lub zmienia liczbę jego użyć o podaną wartość
+     */
+    public void addUsage(Long id, String name, String normalizedName, long delta) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                entry = new Entry(id, name, normalizedName, Math.max(0, delta));
+                entries.put(id, entry);
+                insert(root, entry);
+            } else if (delta != 0) {
+                entry.usage = Math.max(0, entry.usage + delta);
+                for (String key : keys(entry.normalizedName)) {
+                    updatePath(key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Usuwa składnik z podpowiedzi (np. po usunięciu go ze słownika)
+     */
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(id);
+            if (entry != null) {
+                for (String key : keys(entry.normalizedName)) {
+                    removeFromPath(key, entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Wybiera najlepsze składniki z poddrzewa przeszukiwaniem "najpierw najlepszy": kolejka zawiera węzły
+     * (z największą częstością w poddrzewie) i składniki, więc poddrzewa ze słabszymi wynikami nie są odwiedzane
+     */
+    private static List<Suggestion> top(Node start, int limit) {
+        record Candidate(long score, Node node, Entry entry) {}
+        PriorityQueue<Candidate> queue = new PriorityQueue<>((a, b) -> {
+            int byScore = Long.compare(b.score(), a.score());
+            if (byScore != 0) {
+                return byScore;
+            }
+            // Składniki przed węzłami o tej samej ocenie, żeby wynik nie czekał na rozwinięcie poddrzewa
+            if (a.entry() == null || b.entry() == null) {
+                return a.entry() != null ? -1 : b.entry() != null ? 1 : 0;
+            }
+            return TIE_BREAK.compare(a.entry(), b.entry());
+        });
+        if (start.best >= 0) {
+            queue.add(new Candidate(start.best, start, null));
+        }
+        List<Suggestion> result = new ArrayList<>(limit);
+        // Składnik dostępny pod kilkoma kluczami (od kolejnych słów) może pojawić się w poddrzewie wielokrotnie
+        Set<Long> seen = new HashSet<>();
+        while (!queue.isEmpty() && result.size() < limit) {
+            Candidate candidate = queue.poll();
+            if (candidate.entry() != null) {
+                Entry entry = candidate.entry();
+                if (seen.add(entry.id)) {
+                    result.add(new Suggestion(entry.id, entry.name, entry.usage));
+                }
+                continue;
+            }
+            Node node = candidate.node();
+            for (Entry entry : node.entries) {
+                queue.add(new Candidate(entry.usage, null, entry));
+            }
+            for (Node child : node.children) {
+                if (child.best >= 0) {
+                    queue.add(new Candidate(child.best, child, null));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void insert(Node root, Entry entry) {
+        for (String key : keys(entry.normalizedName)) {
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < key.length(); i++) {
+                node = node.addChild(key.charAt(i));
+                path.add(node);
+            }
+            Entry[] grown = Arrays.copyOf(node.entries, node.entries.length + 1);
+            grown[grown.length - 1] = entry;
+            node.entries = grown;
+            for (Node onPath : path) {
+                onPath.best = Math.max(onPath.best, entry.usage);
+            }
+        }
+    }
+
+    private void updatePath(String key) {
+        List<Node> path = path(key);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            path.get(i).recomputeBest();
+        }
+    }
+
+    private void removeFromPath(String key, Entry entry) {
+        List<Node> path = path(key);
+        if (path.size() != key.length() + 1) {
+            return;
+        }
+        Node last = path.get(path.size() - 1);
+        last.entries = Arrays.stream(last.entries).filter(e -> e != entry).toArray(Entry[]::new);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            node.recomputeBest();
+            // Puste węzły są odcinane, żeby drzewo nie rosło po usunięciach
+            if (i > 0 && node.isEmpty()) {
+                path.get(i - 1).removeChild(key.charAt(i - 1));
+            }
+        }
+    }
+
+    private List<Node> path(String key) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            if (node == null) {
+                break;
+            }
+            path.add(node);
+        }
+        return path;
+    }
+
+    /**
+     * Klucze składnika: cała znormalizowana nazwa oraz jej końcówki zaczynające się od kolejnych słów
+     */
+    private static List<String> keys(String normalizedName) {
+        List<String> keys = new ArrayList<>();
+        keys.add(normalizedName);
+        for (int i = normalizedName.indexOf(' '); i >= 0; i = normalizedName.indexOf(' ', i + 1)) {
+            if (i + 1 < normalizedName.length()) {
+                keys.add(normalizedName.substring(i + 1));
+            }
+        }
+        return keys;
+    }
+}
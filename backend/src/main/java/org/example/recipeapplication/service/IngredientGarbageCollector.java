@@ -0,0 +1,138 @@
+package org.example.recipeapplication.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Usuwa ze słownika składniki, których nie używa żaden przepis. Działa w dwóch krokach: najpierw oznacza
+ * nieużywane pozycje (orphaned_at), a po czasie app.ingredients.gc.grace-hours usuwa te, które nadal są nieużywane.
+ * Każda paczka (app.ingredients.gc.batch-size wierszy) to osobna, krótka transakcja, a wiersze wybierane są przez
+ * FOR UPDATE SKIP LOCKED - zadanie może działać jednocześnie na wielu instancjach, które dzielą się pracą,
+ * i nie czeka na wiersze zablokowane przez zapisy przepisów. RecipeIngredientService zdejmuje oznaczenie
+ * ze składnika, zanim użyje go w przepisie.
+ * Liczby oznaczonych i usuniętych pozycji publikowane są jako metryki ingredient.gc.*.
+ */
+@Slf4j
+@Service
+public class IngredientGarbageCollector {
+
+    private static final String MARK_BATCH = """
+            WITH batch AS (
+                SELECT i.id FROM ingredient i
+                WHERE i.id > ? AND i.orphaned_at IS NULL
+                  AND NOT EXISTS (SELECT 1 FROM recipe_ingredient ri WHERE ri.ingredient_id = i.id)
+                ORDER BY i.id
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            UPDATE ingredient i SET orphaned_at = ? FROM batch WHERE i.id = batch.id
+            RETURNING i.id
+            """;
+
+    private static final String DELETE_BATCH = """
+            WITH batch AS (
+                SELECT i.id FROM ingredient i
+                WHERE i.orphaned_at < ?
+                  AND NOT EXISTS (SELECT 1 FROM recipe_ingredient ri WHERE ri.ingredient_id = i.id)
+                ORDER BY i.id
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            DELETE FROM ingredient i USING batch WHERE i.id = batch.id
+            RETURNING i.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IngredientAutocompleteIndex ingredientAutocompleteIndex;
+    private final long graceMillis;
+    private final int batchSize;
+    private final int maxBatches;
+
+    private final Counter marked;
+    private final Counter deleted;
+    private final Timer duration;
+
+    public IngredientGarbageCollector(JdbcTemplate jdbcTemplate,
+                                      IngredientAutocompleteIndex ingredientAutocompleteIndex,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.ingredients.gc.grace-hours:24}") long graceHours,
+                                      @Value("${app.ingredients.gc.batch-size:500}") int batchSize,
+                                      @Value("${app.ingredients.gc.max-batches:100}") int maxBatches) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ingredientAutocompleteIndex = ingredientAutocompleteIndex;
+        this.graceMillis = graceHours * 3_600_000;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.marked = Counter.builder("ingredient.gc.marked")
+                .description("Składniki oznaczone jako nieużywane")
+                .register(meterRegistry);
+        this.deleted = Counter.builder("ingredient.gc.deleted")
+                .description("Nieużywane składniki usunięte ze słownika")
+                .register(meterRegistry);
+        this.duration = Timer.builder("ingredient.gc.duration")
+                .description("Czas jednego przebiegu usuwania nieużywanych składników")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.ingredients.gc.interval-ms:3600000}",
+               initialDelayString = "${app.ingredients.gc.interval-ms:3600000}")
+    public void collect() {
+        try {
+            duration.record(this::run);
+        } catch (Exception e) {
+            // Nieprzetworzone pozycje zostaną obsłużone przy następnym przebiegu
+            log.error("Nie udało się usunąć nieużywanych składników: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Jeden przebieg: usuwa pozycje oznaczone dawniej niż okres karencji, a następnie oznacza nowe nieużywane
+     */
+    void run() {
+        long now = System.currentTimeMillis();
+        long removed = sweep(new Timestamp(now - graceMillis));
+        long orphaned = mark(new Timestamp(now));
+        if (removed > 0 || orphaned > 0) {
+            log.info("Słownik składników: usunięto {} nieużywanych pozycji, oznaczono {} nowych", removed, orphaned);
+        }
+    }
+
+    private long sweep(Timestamp orphanedBefore) {
+        long total = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            List<Long> ids = jdbcTemplate.queryForList(DELETE_BATCH, Long.class, orphanedBefore, batchSize);
+            ids.forEach(ingredientAutocompleteIndex::remove);
+            deleted.increment(ids.size());
+            total += ids.size();
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private long mark(Timestamp now) {
+        long total = 0;
+        long lastId = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            List<Long> ids = jdbcTemplate.queryForList(MARK_BATCH, Long.class, lastId, batchSize, now);
+            marked.increment(ids.size());
+            total += ids.size();
+            if (ids.size() < batchSize) {
+                break;
+            }
+            // Przeglądanie tabeli kluczem id - kolejna paczka zaczyna się za ostatnią oznaczoną pozycją
+            lastId = ids.stream().mapToLong(Long::longValue).max().orElse(lastId);
+        }
+        return total;
+    }
+}
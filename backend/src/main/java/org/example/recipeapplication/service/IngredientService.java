@@ -6,37 +6,52 @@ import org.example.recipeapplication.dto.IngredientResponseDTO;
 import org.example.recipeapplication.model.Ingredient;
 import org.example.recipeapplication.repos.IngredientRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
+/**
+ * Operacje na słowniku składników - ilość i jednostka należą do przepisu, więc pozycje słownika ich nie mają
+ */
 @Service
 @RequiredArgsConstructor
 public class IngredientService {
 
     private final IngredientRepository ingredientRepository;
-
-    public List<IngredientResponseDTO> searchIngredients(String name) {
-        return ingredientRepository.findByNameContainingIgnoreCase(name).stream()
-                .map(this::mapToDTO)
+    private final RecipeIngredientService recipeIngredientService;
+    private final IngredientAutocompleteIndex ingredientAutocompleteIndex;
+
+    /**
+     * Podpowiedzi składników dla wpisywanej nazwy - z indeksu w pamięci, a dopóki nie jest zbudowany, z bazy
+     */
+    public List<IngredientResponseDTO> searchIngredients(String name, int limit) {
+        if (!ingredientAutocompleteIndex.isReady()) {
+            return ingredientRepository
+                    .findByNormalizedNameContainingOrderByNormalizedName(RecipeIngredientService.normalizedName(name))
+                    .stream()
+                    .limit(Math.max(limit, 0))
+                    .map(this::mapToDTO)
+                    .toList();
+        }
+        return ingredientAutocompleteIndex.suggest(name, limit).stream()
+                .map(suggestion -> new IngredientResponseDTO(suggestion.id(), suggestion.name(), null, null))
                 .toList();
     }
 
+    /**
+     * Dodaje składnik do słownika; jeśli składnik o tej samej nazwie już istnieje, zwraca istniejącą pozycję
+     */
+    @Transactional
     public IngredientResponseDTO addIngredient(IngredientRequestDTO dto) {
-        Ingredient ingredient = new Ingredient();
-        ingredient.setName(dto.name());
-        ingredient.setAmount(dto.amount());
-        ingredient.setUnit(dto.unit());
-        Ingredient saved = ingredientRepository.save(ingredient);
-        return mapToDTO(saved);
+        return mapToDTO(recipeIngredientService.resolveIngredient(dto.name()));
     }
 
     private IngredientResponseDTO mapToDTO(Ingredient ingredient) {
         return new IngredientResponseDTO(
                 ingredient.getId(),
                 ingredient.getName(),
-                ingredient.getAmount(),
-                ingredient.getUnit()
+                null,
+                null
         );
     }
 }
-
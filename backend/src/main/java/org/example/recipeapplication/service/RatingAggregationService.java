@@ -0,0 +1,190 @@
+package org.example.recipeapplication.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Odroczone przeliczanie liczników ocen przepisów (write-behind). Zmiana oceny zapisywana jest w tej samej
+ * transakcji co ocena jako wiersz tabeli rating_aggregate_outbox - wstawienie nie blokuje wiersza przepisu,
+ * więc równoległe oceny popularnego przepisu nie czekają na siebie. Co app.ratings.flush-interval-ms zmiany
+ * z outboxa sumowane są per przepis i nanoszone wsadowo w tej samej transakcji, która usuwa przetworzone
+ * wiersze - po awarii nic nie ginie i nic nie jest naliczane dwa razy. Średnia ocena jest więc nieaktualna
+ * co najwyżej o czas jednego przebiegu.
+ * Przebiegi wszystkich instancji (i RecipeStatsReconciler) wykluczają się blokadą doradczą.
+ */
+@Slf4j
+@Service
+public class RatingAggregationService {
+
+    // Klucz blokady doradczej chroniącej liczniki ocen przed równoległym przeliczaniem
+    static final long AGGREGATES_LOCK = 0x52415447L;
+
+    private static final String RECORD = """
+            INSERT INTO rating_aggregate_outbox (recipe_id, previous_value, new_value, created_at)
+            VALUES (?, ?, ?, now())
+            """;
+
+    private static final String DRAIN_BATCH = """
+            DELETE FROM rating_aggregate_outbox WHERE id IN (
+                SELECT id FROM rating_aggregate_outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED)
+            RETURNING recipe_id, previous_value, new_value
+            """;
+
+    // Wyrażenia SET widzą wartości sprzed zmiany - średnia liczona jest z nowych liczników
+    private static final String APPLY_DELTA = """
+            UPDATE recipe SET rating_sum = rating_sum + ?, rating_count = rating_count + ?,
+                rating = CASE WHEN rating_count + ? > 0 THEN (rating_sum + ?)::real / (rating_count + ?) END,
+                rating1_count = rating1_count + ?, rating2_count = rating2_count + ?, rating3_count = rating3_count + ?,
+                rating4_count = rating4_count + ?, rating5_count = rating5_count + ?
+            WHERE id = ?
+            """;
+
+    /**
+     * Suma zmian ocen jednego przepisu z paczki outboxa
+     */
+    static final class Delta {
+        long sum;
+        int count;
+        // Zmiana liczby ocen 1-5 (histogram)
+        final int[] stars = new int[5];
+
+        void add(Integer previousValue, Integer newValue) {
+            if (previousValue != null) {
+                sum -= previousValue;
+                count--;
+                stars[previousValue - 1]--;
+            }
+            if (newValue != null) {
+                sum += newValue;
+                count++;
+                stars[newValue - 1]++;
+            }
+        }
+
+        boolean isEmpty() {
+            return Arrays.stream(stars).allMatch(star -> star == 0);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipeDetailCache recipeDetailCache;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Counter flushed;
+
+    public RatingAggregationService(JdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate,
+                                    RecipeSearchIndex recipeSearchIndex,
+                                    RecipeDetailCache recipeDetailCache,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.ratings.flush.batch-size:5000}") int batchSize,
+                                    @Value("${app.ratings.flush.max-batches:20}") int maxBatches) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.recipeDetailCache = recipeDetailCache;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.flushed = Counter.builder("rating.aggregate.flushed")
+                .description("Zmiany ocen naniesione na liczniki przepisów")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Zapisuje zmianę oceny do naniesienia na liczniki przepisu; wywoływane w transakcji zapisu oceny
+     *
+     * @param previousValue poprzednia ocena użytkownika (null - nowa ocena)
+     * @param newValue      nowa ocena użytkownika (null - ocena usunięta)
+     */
+    @Transactional
+    public void recordChange(Long recipeId, Integer previousValue, Integer newValue) {
+        if (previousValue != null && previousValue.equals(newValue)) {
+            return;
+        }
+        jdbcTemplate.update(RECORD, recipeId, previousValue, newValue);
+    }
+
+    @Scheduled(fixedDelayString = "${app.ratings.flush-interval-ms:250}",
+               initialDelayString = "${app.ratings.flush-interval-ms:250}")
+    public void flush() {
+        try {
+            for (int i = 0; i < maxBatches; i++) {
+                if (flushBatch() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            // Wiersze outboxa zostają w tabeli i zostaną naniesione przy następnym przebiegu
+            log.error("Nie udało się nanieść zmian ocen na przepisy: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Nanosi jedną paczkę zmian z outboxa: zmiany sumowane są per przepis, a przepisy aktualizowane wsadowo
+     * w kolejności id (stała kolejność blokad wierszy)
+     *
+     * @return liczba przetworzonych wierszy outboxa (0, gdy przebieg trwa na innej instancji)
+     */
+    int flushBatch() {
+        record Stats(long id, Float rating, Integer favoritesCount) {}
+        record Result(int processed, List<Stats> stats) {}
+        Result result = transactionTemplate.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class,
+                    AGGREGATES_LOCK);
+            if (!Boolean.TRUE.equals(locked)) {
+                return null;
+            }
+            Map<Long, Delta> deltas = new TreeMap<>();
+            int[] processed = {0};
+            jdbcTemplate.query(DRAIN_BATCH, rs -> {
+                deltas.computeIfAbsent(rs.getLong("recipe_id"), id -> new Delta())
+                        .add(rs.getObject("previous_value", Integer.class), rs.getObject("new_value", Integer.class));
+                processed[0]++;
+            }, batchSize);
+            deltas.values().removeIf(Delta::isEmpty);
+            if (deltas.isEmpty()) {
+                return new Result(processed[0], List.of());
+            }
+            jdbcTemplate.batchUpdate(APPLY_DELTA, deltas.entrySet().stream()
+                    .map(entry -> {
+                        Delta delta = entry.getValue();
+                        return new Object[]{delta.sum, delta.count, delta.count, delta.sum, delta.count,
+                                delta.stars[0], delta.stars[1], delta.stars[2], delta.stars[3], delta.stars[4],
+                                entry.getKey()};
+                    })
+                    .toList());
+            List<Stats> stats = jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(
+                        "SELECT id, rating, favorites_count FROM recipe WHERE id = ANY (?)");
+                ps.setArray(1, con.createArrayOf("bigint", deltas.keySet().toArray()));
+                return ps;
+            }, (rs, rowNum) -> new Stats(rs.getLong("id"), rs.getObject("rating", Float.class),
+                    rs.getObject("favorites_count", Integer.class)));
+            return new Result(processed[0], stats);
+        });
+        if (result == null) {
+            return 0;
+        }
+        for (Stats stats : result.stats()) {
+            recipeSearchIndex.updateStats(stats.id(), stats.rating(), stats.favoritesCount());
+        }
+        recipeDetailCache.evict(result.stats().stream().map(Stats::id).toList());
+        flushed.increment(result.processed());
+        return result.processed();
+    }
+}
@@ -1,6 +1,7 @@
 package org.example.recipeapplication.service;
 
 import lombok.RequiredArgsConstructor;
+import org.example.recipeapplication.dto.RatingHistogramDTO;
 import org.example.recipeapplication.dto.RatingRequestDTO;
 import org.example.recipeapplication.dto.RatingResponseDTO;
 import org.example.recipeapplication.model.AppUser;
@@ -9,11 +10,16 @@ import org.example.recipeapplication.model.Recipe;
 import org.example.recipeapplication.repos.RatingRepository;
 import org.example.recipeapplication.repos.RecipeRepository;
 import org.example.recipeapplication.repos.AppUserRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.EntityNotFoundException;
+import java.sql.PreparedStatement;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -22,6 +28,9 @@ public class RatingService {
     private final RatingRepository ratingRepository;
     private final AppUserRepository userRepository;
     private final RecipeRepository recipeRepository;
+    private final TrendingService trendingService;
+    private final RatingAggregationService ratingAggregationService;
+    private final JdbcTemplate jdbcTemplate;
 
     @Transactional
     public RatingResponseDTO rateRecipe(Long recipeId, String userEmail, RatingRequestDTO ratingRequestDTO) {
@@ -31,11 +40,14 @@ public class RatingService {
         Recipe recipe = recipeRepository.findById(recipeId)
                 .orElseThrow(() -> new EntityNotFoundException("Przepis nie znaleziony"));
 
-        Optional<Rating> existingRating = ratingRepository.findByUserAndRecipe(user, recipe);
+        // Blokada wiersza oceny - równoległe zmiany oceny tego samego użytkownika nie rozjadą liczników przepisu
+        Optional<Rating> existingRating = ratingRepository.findForUpdateByUserAndRecipe(user, recipe);
 
         Rating rating;
+        Integer previousValue = null;
         if (existingRating.isPresent()) {
             rating = existingRating.get();
+            previousValue = rating.getValue();
             rating.setValue(ratingRequestDTO.getValue());
             rating.setUpdatedAt(LocalDateTime.now());
         } else {
@@ -43,12 +55,14 @@ public class RatingService {
             rating.setUser(user);
             rating.setRecipe(recipe);
             rating.setValue(ratingRequestDTO.getValue());
+            // Do popularności liczy się tylko pierwsza ocena użytkownika, nie jej kolejne zmiany
+            trendingService.recordRating(recipe, ratingRequestDTO.getValue());
         }
 
         Rating savedRating = ratingRepository.save(rating);
 
-        // Aktualizacja średniej oceny przepisu
-        updateRecipeAverageRating(recipeId);
+        // Średnia ocena przepisu aktualizowana jest z opóźnieniem przez RatingAggregationService
+        ratingAggregationService.recordChange(recipeId, previousValue, savedRating.getValue());
 
         return mapToDTO(savedRating);
     }
@@ -66,6 +80,52 @@ public class RatingService {
                 .orElse(null);
     }
 
+    /**
+     * Rozkład ocen przepisu z liczników przepisu (nieaktualny co najwyżej o jeden przebieg RatingAggregationService)
+     */
+    public Optional<RatingHistogramDTO> getRatingHistogram(Long recipeId) {
+        return jdbcTemplate.query("""
+                SELECT rating, rating_count, rating_score,
+                       rating1_count, rating2_count, rating3_count, rating4_count, rating5_count
+                FROM recipe WHERE id = ?
+                """, rs -> {
+            if (!rs.next()) {
+                return Optional.empty();
+            }
+            Map<Integer, Integer> stars = new LinkedHashMap<>();
+            for (int star = 1; star <= 5; star++) {
+                stars.put(star, rs.getInt("rating" + star + "_count"));
+            }
+            return Optional.of(new RatingHistogramDTO(recipeId, rs.getObject("rating", Float.class),
+                    rs.getInt("rating_count"), rs.getObject("rating_score", Double.class), stars));
+        }, recipeId);
+    }
+
+    /**
+     * Oceny zalogowanego użytkownika dla wielu przepisów naraz (np. gwiazdki na kartach listy) - jedno zapytanie
+     * korzystające z unikalnego indeksu (user_id, recipe_id)
+     *
+     * @return ocena według ID przepisu; przepisy bez oceny użytkownika są pomijane
+     */
+    public Map<Long, Integer> getUserRatingsForRecipes(Collection<Long> recipeIds, String userEmail) {
+        if (recipeIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Integer> ratings = new LinkedHashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("""
+                    SELECT recipe_id, value FROM rating
+                    WHERE user_id = (SELECT id FROM app_user WHERE email = ?) AND recipe_id = ANY (?)
+                    """);
+            ps.setString(1, userEmail);
+            ps.setArray(2, con.createArrayOf("bigint", recipeIds.toArray()));
+            return ps;
+        }, rs -> {
+            ratings.put(rs.getLong("recipe_id"), rs.getInt("value"));
+        });
+        return ratings;
+    }
+
     @Transactional
     public void deleteRating(Long recipeId, String userEmail) {
         AppUser user = userRepository.findByEmail(userEmail)
@@ -74,30 +134,13 @@ public class RatingService {
         Recipe recipe = recipeRepository.findById(recipeId)
                 .orElseThrow(() -> new EntityNotFoundException("Przepis nie znaleziony"));
 
-        ratingRepository.deleteByUserAndRecipe(user, recipe);
-
-        // Aktualizacja średniej oceny przepisu
-        updateRecipeAverageRating(recipeId);
-    }
-
-    private void updateRecipeAverageRating(Long recipeId) {
-        Double averageRating = ratingRepository.calculateAverageRating(recipeId);
-        Recipe recipe = recipeRepository.findById(recipeId)
-                .orElseThrow(() -> new EntityNotFoundException("Przepis nie znaleziony"));
-
-        // Pobierz liczbę ocen dla przepisu
-        int ratingCount = ratingRepository.findByRecipeId(recipeId).size();
-
-        // Aktualizuj rating i licznik ocen
-        if (averageRating != null) {
-            recipe.setRating(averageRating.floatValue());
-            recipe.setRatingCount(ratingCount);
-        } else {
-            recipe.setRating(null);
-            recipe.setRatingCount(0);
+        Optional<Rating> existingRating = ratingRepository.findForUpdateByUserAndRecipe(user, recipe);
+        if (existingRating.isEmpty()) {
+            return;
         }
+        ratingRepository.delete(existingRating.get());
 
-        recipeRepository.save(recipe);
+        ratingAggregationService.recordChange(recipeId, existingRating.get().getValue(), null);
     }
 
     private RatingResponseDTO mapToDTO(Rating rating) {
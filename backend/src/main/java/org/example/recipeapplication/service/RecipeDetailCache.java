@@ -0,0 +1,97 @@
+package org.example.recipeapplication.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.example.recipeapplication.dto.RecipeResponseDTO;
+import org.example.recipeapplication.util.TransactionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cache szczegółów przepisu (RecipeResponseDTO) dla GET /api/v1/recipes/{id}. Przy braku wpisu tylko jeden wątek
+ * ładuje przepis z bazy, pozostałe żądania o ten sam przepis czekają na jego wynik. Wpis pamięta ETag przepisu,
+ * z którym został zapisany, i jest ładowany ponownie, gdy ETag wyznaczony dla żądania jest inny (również po zmianie
+ * na innej instancji). Edycje zapisują nowy DTO do cache (write-through), a zmiany komentarzy, ocen i obserwacji
+ * usuwają wpis - zawsze po zatwierdzeniu transakcji. Wersji list nie podbijają - zmiany składu list (status,
+ * kategoria, treść, usunięcie) zgłasza RecipeSearchCache.evict.
+ * Statystyki publikowane są jako metryki cache.* z tagiem cache=recipe-detail.
+ */
+@Service
+public class RecipeDetailCache {
+
+    private record Entry(String etag, RecipeResponseDTO recipe) {}
+
+    private final Cache<Long, Entry> cache;
+    private final CatalogVersionService catalogVersionService;
+
+    public RecipeDetailCache(MeterRegistry meterRegistry,
+                             CatalogVersionService catalogVersionService,
+                             @Value("${app.cache.recipe-detail.ttl-seconds:600}") long ttlSeconds,
+                             @Value("${app.cache.recipe-detail.max-size:10000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "recipe-detail");
+        this.catalogVersionService = catalogVersionService;
+    }
+
+    /**
+     * Zwraca przepis z cache lub ładuje go loaderem. Równoległe wywołania dla tego samego id czekają na jedno
+     * ładowanie; brak przepisu nie jest zapamiętywany. ETag (wynik {@link CatalogVersionService#recipeETag})
+     * wyznacza wywołujący przed odczytem danych, więc wpis nigdy nie jest starszy niż zapamiętany z nim ETag.
+     *
+     * @param etag aktualny ETag przepisu; null, gdy przepis nie istnieje
+     */
+    public Optional<RecipeResponseDTO> get(Long recipeId, String etag,
+                                           Function<Long, Optional<RecipeResponseDTO>> loader) {
+        if (etag == null) {
+            cache.invalidate(recipeId);
+            return Optional.empty();
+        }
+        Function<Long, Entry> load = id -> loader.apply(id).map(recipe -> new Entry(etag, recipe)).orElse(null);
+        Entry entry = cache.get(recipeId, load);
+        if (entry != null && !entry.etag().equals(etag)) {
+            entry = cache.asMap().compute(recipeId,
+                    (id, cached) -> cached != null && cached.etag().equals(etag) ? cached : load.apply(id));
+        }
+        return Optional.ofNullable(entry).map(Entry::recipe);
+    }
+
+    /**
+     * Zapisuje przepis po zatwierdzeniu transakcji
+     *
+     * @param etag ETag przepisu wyznaczony w transakcji zapisu, po wysłaniu zmian do bazy
+     */
+    public void put(String etag, RecipeResponseDTO recipe) {
+        TransactionUtils.afterCommit(() -> cache.put(recipe.id(), new Entry(etag, recipe)));
+    }
+
+    public void evict(Long recipeId) {
+        evict(List.of(recipeId));
+    }
+
+    public void evict(Collection<Long> recipeIds) {
+        List<Long> ids = List.copyOf(recipeIds);
+        TransactionUtils.afterCommit(() -> cache.invalidateAll(ids));
+    }
+
+    /**
+     * Usuwa wszystkie wpisy - przy zmianach widocznych we wszystkich przepisach (np. dane autorów)
+     */
+    public void evictAll() {
+        TransactionUtils.afterCommit(() -> {
+            cache.invalidateAll();
+            catalogVersionService.allRecipesChanged();
+        });
+    }
+}
@@ -0,0 +1,159 @@
+package org.example.recipeapplication.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.example.recipeapplication.dto.IngredientResponseDTO;
+import org.example.recipeapplication.dto.RecipeExportDTO;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Eksport całego katalogu przepisów jako NDJSON (jeden przepis w wierszu). Przepisy czytane są kursorem
+ * (fetch size), a każdy wiersz od razu zapisywany do strumienia wyjściowego, więc zużycie pamięci nie zależy
+ * od liczby przepisów. Składniki i tagi agregowane są w tym samym zapytaniu.
+ */
+@Slf4j
+@Service
+public class RecipeExportService {
+
+    private static final String EXPORT_QUERY = """
+            SELECT r.id, r.title, r.description, r.estimated_time_to_prepare, r.main_image_url, r.status,
+                   r.rating, r.rating_count, r.favorites_count, r.category_id, c.name AS category_name,
+                   r.author_id, r.date_of_creation, r.date_of_modification,
+                   (SELECT array_agg(t.tag) FROM recipe_tags t WHERE t.recipe_id = r.id) AS tags,
+                   ing.ids AS ingredient_ids, ing.names AS ingredient_names,
+                   ing.amounts AS ingredient_amounts, ing.units AS ingredient_units
+            FROM recipe r
+            LEFT JOIN category c ON c.id = r.category_id
+            LEFT JOIN LATERAL (
+                SELECT array_agg(i.id ORDER BY ri.position) AS ids,
+                       array_agg(i.name ORDER BY ri.position) AS names,
+                       array_agg(ri.amount ORDER BY ri.position) AS amounts,
+                       array_agg(ri.unit ORDER BY ri.position) AS units
+                FROM recipe_ingredient ri
+                JOIN ingredient i ON i.id = ri.ingredient_id
+                WHERE ri.recipe_id = r.id
+            ) ing ON true
+            ORDER BY r.id
+            """;
+
+    // Bufor między kolejnymi zapisami do odpowiedzi HTTP
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectWriter writer;
+    private final int fetchSize;
+
+    public RecipeExportService(JdbcTemplate jdbcTemplate,
+                               ObjectMapper objectMapper,
+                               @Value("${app.export.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Strumień wyjściowy opróżniany jest dopiero po zapełnieniu bufora, a nie po każdym przepisie
+        this.writer = objectMapper.writerFor(RecipeExportDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Zapisuje wszystkie przepisy do strumienia, po jednym obiekcie JSON w wierszu. Transakcja jest wymagana,
+     * bo sterownik PostgreSQL pobiera wiersze porcjami (kursorem) tylko przy wyłączonym autocommit.
+     *
+     * @return liczba wyeksportowanych przepisów
+     */
+    @Transactional(readOnly = true)
+    public long exportRecipes(OutputStream outputStream) throws IOException {
+        long start = System.currentTimeMillis();
+        BufferedOutputStream out = new BufferedOutputStream(outputStream, OUTPUT_BUFFER_SIZE);
+        long[] exported = {0};
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_QUERY,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    writer.writeValue(out, mapRow(rs));
+                    out.write('\n');
+                } catch (IOException e) {
+                    // Klient przerwał pobieranie - przerywamy też odczyt z bazy
+                    throw new UncheckedIOException(e);
+                }
+                exported[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+        log.info("Wyeksportowano {} przepisów w {} ms", exported[0], System.currentTimeMillis() - start);
+        return exported[0];
+    }
+
+    private static RecipeExportDTO mapRow(ResultSet rs) throws SQLException {
+        return new RecipeExportDTO(
+                rs.getLong("id"),
+                rs.getString("title"),
+                rs.getString("description"),
+                rs.getString("estimated_time_to_prepare"),
+                rs.getString("main_image_url"),
+                rs.getString("status") != null ? RecipeStatus.valueOf(rs.getString("status")) : null,
+                rs.getObject("rating", Float.class),
+                rs.getObject("rating_count", Integer.class),
+                rs.getObject("favorites_count", Integer.class),
+                rs.getObject("category_id", Long.class),
+                rs.getString("category_name"),
+                rs.getObject("author_id", Long.class),
+                toLocalDateTime(rs.getTimestamp("date_of_creation")),
+                toLocalDateTime(rs.getTimestamp("date_of_modification")),
+                toList(rs.getArray("tags")),
+                mapIngredients(rs)
+        );
+    }
+
+    private static List<IngredientResponseDTO> mapIngredients(ResultSet rs) throws SQLException {
+        Array ids = rs.getArray("ingredient_ids");
+        if (ids == null) {
+            return List.of();
+        }
+        Long[] idValues = (Long[]) ids.getArray();
+        String[] names = (String[]) rs.getArray("ingredient_names").getArray();
+        String[] amounts = (String[]) rs.getArray("ingredient_amounts").getArray();
+        String[] units = (String[]) rs.getArray("ingredient_units").getArray();
+        List<IngredientResponseDTO> ingredients = new ArrayList<>(idValues.length);
+        for (int i = 0; i < idValues.length; i++) {
+            ingredients.add(new IngredientResponseDTO(idValues[i], names[i], amounts[i], units[i]));
+        }
+        return ingredients;
+    }
+
+    private static List<String> toList(Array array) throws SQLException {
+        return array != null ? Arrays.asList((String[]) array.getArray()) : List.of();
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
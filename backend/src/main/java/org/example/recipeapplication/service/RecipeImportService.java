@@ -0,0 +1,360 @@
+package org.example.recipeapplication.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.example.recipeapplication.dto.IngredientRequestDTO;
+import org.example.recipeapplication.dto.RecipeImportErrorDTO;
+import org.example.recipeapplication.dto.RecipeImportProgressDTO;
+import org.example.recipeapplication.dto.RecipeRequestDTO;
+import org.example.recipeapplication.model.AppUser;
+import org.example.recipeapplication.model.Category;
+import org.example.recipeapplication.model.Ingredient;
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.example.recipeapplication.repos.AppUserRepository;
+import org.example.recipeapplication.repos.CategoryRepository;
+import org.example.recipeapplication.util.CsvReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Import wielu przepisów naraz (JSON lub CSV). Dane czytane są strumieniowo i zapisywane paczkami po
+ * app.import.chunk-size przepisów, każda w osobnej transakcji: identyfikatory pochodzą z puli sekwencji,
+ * a inserty przepisów, składników i tagów łączone są w paczki JDBC. Wiersze z błędami walidacji są pomijane;
+ * gdy zapis paczki się nie powiedzie, jej wiersze zapisywane są pojedynczo, żeby wskazać te błędne.
+ */
+@Slf4j
+@Service
+public class RecipeImportService {
+
+    // Kolumny CSV; tagi rozdzielone znakiem |, składniki znakiem |, a pola składnika (nazwa;ilość;jednostka) średnikiem
+    static final List<String> CSV_COLUMNS = List.of(
+            "title", "description", "estimatedTimeToPrepare", "mainImageUrl", "categoryId", "tags", "ingredients");
+    private static final String LIST_SEPARATOR = "\\|";
+    private static final String INGREDIENT_FIELD_SEPARATOR = ";";
+
+    /**
+     * Odbiorca zdarzeń importu - błędów pojedynczych wierszy i postępu po każdej paczce
+     */
+    public interface ImportListener {
+        void onError(RecipeImportErrorDTO error);
+
+        void onProgress(RecipeImportProgressDTO progress);
+    }
+
+    /**
+     * Wiersz danych wejściowych - przepis albo opis błędu, przez który nie dało się go odczytać
+     */
+    record ImportRow(long row, RecipeRequestDTO recipe, String error) {
+    }
+
+    private final AppUserRepository userRepository;
+    private final CategoryRepository categoryRepository;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipeSimilarityIndex recipeSimilarityIndex;
+    private final CatalogVersionService catalogVersionService;
+    private final RecipeIngredientService recipeIngredientService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+
+    public RecipeImportService(AppUserRepository userRepository,
+                               CategoryRepository categoryRepository,
+                               RecipeSearchIndex recipeSearchIndex,
+                               RecipeSimilarityIndex recipeSimilarityIndex,
+                               CatalogVersionService catalogVersionService,
+                               RecipeIngredientService recipeIngredientService,
+                               EntityManager entityManager,
+                               TransactionTemplate transactionTemplate,
+                               ObjectMapper objectMapper,
+                               Validator validator,
+                               @Value("${app.import.chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.categoryRepository = categoryRepository;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.recipeSimilarityIndex = recipeSimilarityIndex;
+        this.catalogVersionService = catalogVersionService;
+        this.recipeIngredientService = recipeIngredientService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Importuje przepisy z tablicy JSON lub z obiektów JSON rozdzielonych znakami nowej linii (NDJSON),
+     * w formacie RecipeRequestDTO
+     */
+    public RecipeImportProgressDTO importJson(InputStream input, String email, RecipeStatus status,
+                                              ImportListener listener) throws IOException {
+        MappingIterator<RecipeRequestDTO> values = objectMapper.readerFor(RecipeRequestDTO.class).readValues(input);
+        return importRows(email, status, listener, new RowSource() {
+            private long row;
+
+            @Override
+            public ImportRow next() throws IOException {
+                if (!values.hasNextValue()) {
+                    return null;
+                }
+                row++;
+                try {
+                    return new ImportRow(row, values.nextValue(), null);
+                } catch (JsonProcessingException e) {
+                    // Błędny typ pola - parser przechodzi do kolejnego obiektu
+                    return new ImportRow(row, null, "Nieprawidłowe dane: " + e.getOriginalMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Importuje przepisy z CSV z nagłówkiem zawierającym kolumny CSV_COLUMNS (kolejność dowolna)
+     */
+    public RecipeImportProgressDTO importCsv(Reader input, String email, RecipeStatus status,
+                                             ImportListener listener) throws IOException {
+        CsvReader csv = new CsvReader(input);
+        List<String> header = csv.readRecord();
+        if (header == null) {
+            throw new IllegalArgumentException("Plik CSV jest pusty");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        List<String> missing = CSV_COLUMNS.stream()
+                .filter(column -> !columns.containsKey(column.toLowerCase(Locale.ROOT)))
+                .toList();
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Brak kolumn w nagłówku CSV: " + String.join(", ", missing));
+        }
+
+        return importRows(email, status, listener, new RowSource() {
+            private long row;
+
+            @Override
+            public ImportRow next() throws IOException {
+                List<String> fields;
+                do {
+                    fields = csv.readRecord();
+                } while (fields != null && fields.stream().allMatch(String::isBlank));
+                if (fields == null) {
+                    return null;
+                }
+                row++;
+                try {
+                    return new ImportRow(row, parseCsvRecord(fields, columns), null);
+                } catch (IllegalArgumentException e) {
+                    return new ImportRow(row, null, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private interface RowSource {
+        ImportRow next() throws IOException;
+    }
+
+    private RecipeImportProgressDTO importRows(String email, RecipeStatus status, ImportListener listener,
+                                               RowSource source) throws IOException {
+        long start = System.currentTimeMillis();
+        AppUser author = userRepository.findByEmail(email)
+                .orElseThrow(() -> new EntityNotFoundException("User not found with email: " + email));
+        Set<Long> categoryIds = categoryRepository.findAll().stream()
+                .map(Category::getId)
+                .collect(Collectors.toSet());
+
+        long processed = 0;
+        long imported = 0;
+        List<ImportRow> chunk = new ArrayList<>(chunkSize);
+        // Zakresy list, w których mogą pojawić się zaimportowane przepisy
+        Set<String> scopes = new HashSet<>();
+        scopes.add(CatalogVersionService.authorScope(author.getId()));
+        try {
+            ImportRow row;
+            while ((row = source.next()) != null) {
+                processed++;
+                String error = row.error() != null ? row.error() : validate(row.recipe(), categoryIds);
+                if (error != null) {
+                    listener.onError(errorOf(row, error));
+                } else {
+                    chunk.add(row);
+                    scopes.add(CatalogVersionService.categoryScope(row.recipe().categoryId()));
+                }
+                if (chunk.size() == chunkSize) {
+                    imported += saveChunk(chunk, author.getId(), status, listener);
+                    chunk.clear();
+                    listener.onProgress(new RecipeImportProgressDTO(processed, imported, processed - imported, false));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // Uszkodzony JSON - nie da się odnaleźć początku kolejnego przepisu, dalsze dane są pomijane
+            listener.onError(new RecipeImportErrorDTO(processed + 1, null,
+                    "Nieprawidłowy format danych: " + e.getOriginalMessage()));
+        }
+        imported += saveChunk(chunk, author.getId(), status, listener);
+
+        if (imported > 0) {
+            catalogVersionService.scopesChanged(scopes);
+        }
+        RecipeImportProgressDTO result = new RecipeImportProgressDTO(processed, imported, processed - imported, true);
+        listener.onProgress(result);
+        log.info("Zaimportowano {} z {} przepisów w {} ms", imported, processed, System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private String validate(RecipeRequestDTO recipe, Set<Long> categoryIds) {
+        if (recipe == null) {
+            return "Pusty wiersz";
+        }
+        Set<ConstraintViolation<RecipeRequestDTO>> violations = validator.validate(recipe);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        if (!categoryIds.contains(recipe.categoryId())) {
+            return "Category not found: " + recipe.categoryId();
+        }
+        return recipe.ingredients().stream().anyMatch(ingredient -> ingredient == null || ingredient.name() == null
+                || ingredient.name().isBlank())
+                ? "ingredients: nazwa składnika nie może być pusta"
+                : null;
+    }
+
+    /**
+     * Zapisuje paczkę w jednej transakcji, a gdy to się nie uda - każdy wiersz osobno
+     *
+     * @return liczba zapisanych przepisów
+     */
+    private long saveChunk(List<ImportRow> chunk, Long authorId, RecipeStatus status, ImportListener listener) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(tx -> persist(chunk, authorId, status));
+            return chunk.size();
+        } catch (RuntimeException chunkError) {
+            long saved = 0;
+            for (ImportRow row : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(tx -> persist(List.of(row), authorId, status));
+                    saved++;
+                } catch (RuntimeException rowError) {
+                    listener.onError(errorOf(row, NestedExceptionUtils.getMostSpecificCause(rowError).getMessage()));
+                }
+            }
+            return saved;
+        }
+    }
+
+    private void persist(List<ImportRow> rows, Long authorId, RecipeStatus status) {
+        AppUser author = entityManager.getReference(AppUser.class, authorId);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        // Pozycje słownika składników rozwiązywane są raz dla całej paczki
+        Map<String, Ingredient> dictionary = recipeIngredientService.resolveIngredients(rows.stream()
+                .flatMap(row -> row.recipe().ingredients().stream())
+                .map(IngredientRequestDTO::name)
+                .toList());
+        for (ImportRow row : rows) {
+            RecipeRequestDTO dto = row.recipe();
+            Recipe recipe = new Recipe();
+            recipe.setTitle(dto.title());
+            recipe.setDescription(dto.description());
+            recipe.setEstimatedTimeToPrepare(dto.estimatedTimeToPrepare());
+            recipe.setMainImageUrl(dto.mainImageUrl());
+            recipe.setDateOfCreation(now);
+            recipe.setRating(0f);
+            recipe.setRatingCount(0);
+            recipe.setRatingSum(0L);
+            recipe.setFavoritesCount(0);
+            recipe.setStatus(status);
+            recipe.setAuthor(author);
+            recipe.setCategory(entityManager.getReference(Category.class, dto.categoryId()));
+            recipeIngredientService.replaceIngredients(recipe, dto.ingredients(), dictionary);
+            recipe.setTags(dto.tags() != null ? new ArrayList<>(dto.tags()) : new ArrayList<>());
+            entityManager.persist(recipe);
+            // Indeksy w pamięci obejmują tylko zaakceptowane przepisy; zmiana widoczna po zatwierdzeniu paczki
+            if (status == RecipeStatus.ACCEPTED) {
+                recipeSearchIndex.index(recipe);
+                recipeSimilarityIndex.index(recipe);
+            }
+        }
+        // Zapis paczki i odłączenie encji - kontekst persystencji nie rośnie wraz z liczbą przepisów
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    static RecipeRequestDTO parseCsvRecord(List<String> fields, Map<String, Integer> columns) {
+        Long categoryId;
+        String category = field(fields, columns, "categoryId");
+        try {
+            categoryId = category.isBlank() ? null : Long.valueOf(category.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("categoryId: nieprawidłowa liczba \"" + category + "\"");
+        }
+        List<String> tags = split(field(fields, columns, "tags"));
+        List<IngredientRequestDTO> ingredients = split(field(fields, columns, "ingredients")).stream()
+                .map(ingredient -> {
+                    String[] parts = ingredient.split(INGREDIENT_FIELD_SEPARATOR, -1);
+                    return new IngredientRequestDTO(
+                            parts[0].trim(),
+                            parts.length > 1 ? parts[1].trim() : null,
+                            parts.length > 2 && !parts[2].isBlank() ? parts[2].trim() : null);
+                })
+                .toList();
+        return new RecipeRequestDTO(
+                field(fields, columns, "title"),
+                field(fields, columns, "description"),
+                blankToNull(field(fields, columns, "estimatedTimeToPrepare")),
+                blankToNull(field(fields, columns, "mainImageUrl")),
+                ingredients,
+                categoryId,
+                tags);
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        int index = columns.get(column.toLowerCase(Locale.ROOT));
+        return index < fields.size() ? fields.get(index) : "";
+    }
+
+    private static List<String> split(String value) {
+        return Arrays.stream(value.split(LIST_SEPARATOR))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toList();
+    }
+
+    private static String blankToNull(String value) {
+        return value.isBlank() ? null : value.trim();
+    }
+
+    private static RecipeImportErrorDTO errorOf(ImportRow row, String error) {
+        return new RecipeImportErrorDTO(row.row(), row.recipe() != null ? row.recipe().title() : null, error);
+    }
+}
@@ -1,7 +1,223 @@
 package org.example.recipeapplication.service;
 
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.recipeapplication.dto.IngredientRequestDTO;
+import org.example.recipeapplication.model.Ingredient;
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.RecipeIngredient;
+import org.example.recipeapplication.repos.IngredientRepository;
+import org.example.recipeapplication.util.TextNormalizer;
+import org.example.recipeapplication.util.TransactionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Słownik składników i składniki przepisów. Każdy odrębny składnik (po normalizacji nazwy) zapisany jest w tabeli
+ * ingredient dokładnie raz, a przepis wskazuje go przez RecipeIngredient razem z ilością i jednostką.
+ * Nowe pozycje słownika dodawane są przez INSERT ... ON CONFLICT DO NOTHING na unikalnym indeksie
+ * normalized_name, więc równoległe zapisy tego samego składnika nie tworzą duplikatów.
+ */
+@Slf4j
 @Service
+@RequiredArgsConstructor
 public class RecipeIngredientService {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+
+    private final IngredientRepository ingredientRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final IngredientAutocompleteIndex ingredientAutocompleteIndex;
+
+    /**
+     * Klucz słownika: małe litery bez polskich znaków, słowa rozdzielone pojedynczą spacją ("Sól morska!" -> "sol morska")
+     */
+    public static String normalizedName(String name) {
+        if (name == null) {
+            return "";
+        }
+        String normalized = NON_WORD.matcher(TextNormalizer.normalize(name)).replaceAll(" ").trim();
+        // Nazwy złożone wyłącznie ze znaków specjalnych zachowujemy w oryginalnej postaci
+        return normalized.isEmpty() ? name.trim().toLowerCase(Locale.ROOT) : normalized;
+    }
+
+    /**
+     * Zwraca pozycje słownika dla podanych nazw, dodając brakujące
+     *
+     * @return pozycje słownika według znormalizowanej nazwy
+     */
+    @Transactional
+    public Map<String, Ingredient> resolveIngredients(Collection<String> names) {
+        // Nazwa wyświetlana nowej pozycji - pierwsza napotkana postać
+        Map<String, String> displayNames = new LinkedHashMap<>();
+        for (String name : names) {
+            displayNames.putIfAbsent(normalizedName(name), name.trim());
+        }
+        // Zdjęcie oznaczenia blokuje wiersz, więc IngredientGarbageCollector go pominie; jeśli zdążył go usunąć,
+        // składnik nie zostanie znaleziony i będzie dodany ponownie
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "UPDATE ingredient SET orphaned_at = NULL WHERE orphaned_at IS NOT NULL AND normalized_name = ANY (?)");
+            ps.setArray(1, con.createArrayOf("text", displayNames.keySet().toArray()));
+            return ps;
+        });
+        Map<String, Ingredient> resolved = findByNormalizedNames(displayNames.keySet());
+        if (resolved.size() < displayNames.size()) {
+            List<Object[]> missing = displayNames.entrySet().stream()
+                    .filter(entry -> !resolved.containsKey(entry.getKey()))
+                    .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                    .toList();
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO ingredient (id, name, normalized_name)
+                    VALUES (nextval('ingredient_seq'), ?, ?)
+                    ON CONFLICT (normalized_name) DO NOTHING
+                    """, missing);
+            List<Ingredient> added = List.copyOf(
+                    findByNormalizedNames(missing.stream().map(row -> (String) row[1]).toList()).values());
+            added.forEach(ingredient -> resolved.put(ingredient.getNormalizedName(), ingredient));
+            // Nowe pozycje słownika trafiają do podpowiedzi, nawet jeśli żaden przepis ich jeszcze nie używa
+            TransactionUtils.afterCommit(() -> added.forEach(ingredient -> ingredientAutocompleteIndex.addUsage(
+                    ingredient.getId(), ingredient.getName(), ingredient.getNormalizedName(), 0)));
+        }
+        return resolved;
+    }
+
+    @Transactional
+    public Ingredient resolveIngredient(String name) {
+        return resolveIngredients(List.of(name)).get(normalizedName(name));
+    }
+
+    /**
+     * Zastępuje składniki przepisu podanymi; brakujące pozycje słownika są dodawane
+     */
+    @Transactional
+    public void replaceIngredients(Recipe recipe, List<IngredientRequestDTO> ingredients) {
+        replaceIngredients(recipe, ingredients,
+                resolveIngredients(ingredients.stream().map(IngredientRequestDTO::name).toList()));
+    }
+
+    /**
+     * Zastępuje składniki przepisu podanymi, korzystając z rozwiązanych wcześniej pozycji słownika
+     * (np. wspólnych dla całej paczki importu). Usunięte pozycje kasowane są przez orphanRemoval.
+     */
+    public void replaceIngredients(Recipe recipe, List<IngredientRequestDTO> ingredients,
+                                   Map<String, Ingredient> dictionary) {
+        List<Ingredient> removed = new ArrayList<>();
+        if (recipe.getIngredients() == null) {
+            recipe.setIngredients(new ArrayList<>());
+        } else {
+            recipe.getIngredients().forEach(recipeIngredient -> removed.add(recipeIngredient.getIngredient()));
+            recipe.getIngredients().clear();
+        }
+        for (IngredientRequestDTO dto : ingredients) {
+            Ingredient ingredient = dictionary.get(normalizedName(dto.name()));
+            if (ingredient == null) {
+                throw new IllegalStateException("Ingredient not resolved: " + dto.name());
+            }
+            RecipeIngredient recipeIngredient = new RecipeIngredient();
+            recipeIngredient.setRecipe(recipe);
+            recipeIngredient.setIngredient(ingredient);
+            recipeIngredient.setAmount(dto.amount());
+            recipeIngredient.setUnit(dto.unit());
+            recipeIngredient.setPosition(recipe.getIngredients().size());
+            recipe.getIngredients().add(recipeIngredient);
+        }
+        recordUsage(removed, recipe.getIngredients().stream().map(RecipeIngredient::getIngredient).toList());
+    }
+
+    /**
+     * Zmniejsza liczbę użyć składników usuwanego przepisu (wiersze recipe_ingredient usuwa kaskada)
+     */
+    public void recipeDeleted(Recipe recipe) {
+        if (recipe.getIngredients() != null) {
+            recordUsage(recipe.getIngredients().stream().map(RecipeIngredient::getIngredient).toList(), List.of());
+        }
+    }
+
+    /**
+     * Przenosi dane ze starego schematu, w którym każdy przepis miał własne wiersze ingredient (z ilością
+     * i jednostką) połączone tabelą recipe_ingredients. Wiersze o tej samej znormalizowanej nazwie scalane są
+     * w pozycję o najmniejszym id. Nic nie robi, gdy tabela recipe_ingredients już nie istnieje.
+     */
+    @Transactional
+    public void migrateLegacyIngredients() {
+        Boolean legacy = jdbcTemplate.queryForObject(
+                "SELECT to_regclass('recipe_ingredients') IS NOT NULL", Boolean.class);
+        if (!Boolean.TRUE.equals(legacy)) {
+            return;
+        }
+
+        // Nazwy normalizowane są w Javie - ta sama funkcja obsługuje nowe zapisy
+        List<Object[]> names = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, name FROM ingredient WHERE normalized_name IS NULL",
+                rs -> {
+                    names.add(new Object[]{normalizedName(rs.getString("name")), rs.getLong("id")});
+                });
+        jdbcTemplate.batchUpdate("UPDATE ingredient SET normalized_name = ? WHERE id = ?", names,
+                MIGRATION_BATCH_SIZE, (ps, row) -> {
+                    ps.setString(1, (String) row[0]);
+                    ps.setLong(2, (Long) row[1]);
+                });
+
+        int migrated = jdbcTemplate.update("""
+                INSERT INTO recipe_ingredient (id, recipe_id, ingredient_id, amount, unit, position)
+                SELECT nextval('recipe_ingredient_seq'), ri.recipe_id, c.id, i.amount, i.unit,
+                       row_number() OVER (PARTITION BY ri.recipe_id ORDER BY i.id) - 1
+                FROM recipe_ingredients ri
+                JOIN ingredient i ON i.id = ri.ingredients_id
+                JOIN (SELECT normalized_name, MIN(id) AS id FROM ingredient GROUP BY normalized_name) c
+                  ON c.normalized_name = i.normalized_name
+                """);
+        jdbcTemplate.execute("DROP TABLE recipe_ingredients");
+        int merged = jdbcTemplate.update("""
+                DELETE FROM ingredient i USING ingredient j
+                WHERE j.normalized_name = i.normalized_name AND j.id < i.id
+                """);
+        jdbcTemplate.execute("ALTER TABLE ingredient DROP COLUMN IF EXISTS amount, DROP COLUMN IF EXISTS unit");
+        log.info("Przeniesiono {} składników przepisów do słownika, usunięto {} zduplikowanych pozycji",
+                migrated, merged);
+    }
+
+    /**
+     * Po zatwierdzeniu transakcji aktualizuje liczby użyć składników w podpowiedziach
+     */
+    private void recordUsage(List<Ingredient> removed, List<Ingredient> added) {
+        Map<Long, Ingredient> ingredients = new HashMap<>();
+        Map<Long, Long> deltas = new HashMap<>();
+        removed.forEach(ingredient -> {
+            ingredients.put(ingredient.getId(), ingredient);
+            deltas.merge(ingredient.getId(), -1L, Long::sum);
+        });
+        added.forEach(ingredient -> {
+            ingredients.put(ingredient.getId(), ingredient);
+            deltas.merge(ingredient.getId(), 1L, Long::sum);
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        TransactionUtils.afterCommit(() -> deltas.forEach((id, delta) -> {
+            Ingredient ingredient = ingredients.get(id);
+            ingredientAutocompleteIndex.addUsage(id, ingredient.getName(), ingredient.getNormalizedName(), delta);
+        }));
+    }
+
+    private Map<String, Ingredient> findByNormalizedNames(Collection<String> normalizedNames) {
+        Map<String, Ingredient> found = new HashMap<>();
+        for (Ingredient ingredient : ingredientRepository.findByNormalizedNameIn(normalizedNames)) {
+            found.put(ingredient.getNormalizedName(), ingredient);
+        }
+        return found;
+    }
 }
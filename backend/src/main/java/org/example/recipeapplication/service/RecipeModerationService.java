@@ -0,0 +1,207 @@
+package org.example.recipeapplication.service;
+
+import jakarta.persistence.EntityNotFoundException;
+import org.example.recipeapplication.dto.RecipeStatusBatchResultDTO;
+import org.example.recipeapplication.dto.RecipeSummaryDTO;
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.example.recipeapplication.repos.AppUserRepository;
+import org.example.recipeapplication.repos.RecipeRepository;
+import org.example.recipeapplication.util.TransactionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moderacja przepisów oczekujących na akceptację. Moderator pobiera paczkę przepisów z kolejki (najstarsze
+ * najpierw) i przejmuje je na app.moderation.claim-minutes - wiersze wybierane są przez FOR UPDATE SKIP LOCKED,
+ * a przejęcie zapisywane jest w samym wierszu przepisu, więc dwóch moderatorów nigdy nie dostanie tego samego
+ * przepisu. Status wielu przepisów zmieniany jest jednym UPDATE; przepisy przejęte przez innego moderatora
+ * są pomijane.
+ */
+@Service
+public class RecipeModerationService {
+
+    private static final String CLAIM = """
+            UPDATE recipe r SET moderation_claimed_by = ?, moderation_claimed_until = ?
+            WHERE r.id IN (
+                SELECT p.id FROM recipe p
+                WHERE p.status = 'PENDING'
+                  AND (p.moderation_claimed_until IS NULL OR p.moderation_claimed_until < ?
+                       OR p.moderation_claimed_by = ?)
+                ORDER BY p.date_of_creation, p.id
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING r.id, r.date_of_creation
+            """;
+
+    private static final String CHANGE_STATUS = """
+            UPDATE recipe SET status = ?, moderation_claimed_by = NULL, moderation_claimed_until = NULL
+            WHERE id = ANY (?)
+              AND (moderation_claimed_until IS NULL OR moderation_claimed_until < ? OR moderation_claimed_by = ?)
+            RETURNING id
+            """;
+
+    private static final String RELEASE = """
+            UPDATE recipe SET moderation_claimed_by = NULL, moderation_claimed_until = NULL
+            WHERE id = ANY (?) AND moderation_claimed_by = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AppUserRepository userRepository;
+    private final RecipeRepository recipeRepository;
+    private final RecipeService recipeService;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipeSimilarityIndex recipeSimilarityIndex;
+    private final RecipeDetailCache recipeDetailCache;
+    private final CatalogVersionService catalogVersionService;
+    private final TrendingService trendingService;
+    private final long claimMillis;
+
+    public RecipeModerationService(JdbcTemplate jdbcTemplate,
+                                   AppUserRepository userRepository,
+                                   RecipeRepository recipeRepository,
+                                   RecipeService recipeService,
+                                   RecipeSearchIndex recipeSearchIndex,
+                                   RecipeSimilarityIndex recipeSimilarityIndex,
+                                   RecipeDetailCache recipeDetailCache,
+                                   CatalogVersionService catalogVersionService,
+                                   TrendingService trendingService,
+                                   @Value("${app.moderation.claim-minutes:15}") long claimMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.recipeRepository = recipeRepository;
+        this.recipeService = recipeService;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.recipeSimilarityIndex = recipeSimilarityIndex;
+        this.recipeDetailCache = recipeDetailCache;
+        this.catalogVersionService = catalogVersionService;
+        this.trendingService = trendingService;
+        this.claimMillis = claimMinutes * 60_000;
+    }
+
+    /**
+     * Przejmuje do moderacji najstarsze oczekujące przepisy, których nie przejął nikt inny. Przepisy już przejęte
+     * przez tego moderatora zwracane są ponownie (z przedłużonym czasem przejęcia).
+     */
+    @Transactional
+    public List<RecipeSummaryDTO> claimPendingRecipes(String moderatorEmail, int size) {
+        Long moderatorId = moderatorId(moderatorEmail);
+        long now = System.currentTimeMillis();
+        record Claimed(long id, Timestamp createdAt) {}
+        List<Claimed> claimed = new ArrayList<>(jdbcTemplate.query(CLAIM,
+                (rs, rowNum) -> new Claimed(rs.getLong("id"), rs.getTimestamp("date_of_creation")),
+                moderatorId, new Timestamp(now + claimMillis), new Timestamp(now), moderatorId, size));
+        // RETURNING nie zachowuje kolejności podzapytania
+        claimed.sort(Comparator.comparing(Claimed::createdAt, Comparator.nullsFirst(Comparator.<Timestamp>naturalOrder()))
+                .thenComparingLong(Claimed::id));
+        return recipeService.findSummariesInOrder(claimed.stream().map(Claimed::id).toList());
+    }
+
+    /**
+     * Zwalnia przepisy przejęte przez moderatora, np. gdy rezygnuje z ich oceny
+     */
+    @Transactional
+    public int releaseClaims(String moderatorEmail, Collection<Long> recipeIds) {
+        Long moderatorId = moderatorId(moderatorEmail);
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(RELEASE);
+            ps.setArray(1, con.createArrayOf("bigint", recipeIds.toArray()));
+            ps.setLong(2, moderatorId);
+            return ps;
+        });
+    }
+
+    /**
+     * Zmienia status wielu przepisów jednym UPDATE. Pomija przepisy przejęte przez innego moderatora;
+     * zmienione przepisy są zwalniane z kolejki.
+     */
+    @Transactional
+    public RecipeStatusBatchResultDTO changeStatus(String moderatorEmail, Collection<Long> recipeIds, RecipeStatus status) {
+        Long moderatorId = moderatorId(moderatorEmail);
+        Set<Long> requested = new LinkedHashSet<>(recipeIds);
+        Long[] ids = requested.toArray(Long[]::new);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Long> updated = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(CHANGE_STATUS);
+            ps.setString(1, status.name());
+            ps.setArray(2, con.createArrayOf("bigint", ids));
+            ps.setTimestamp(3, now);
+            ps.setLong(4, moderatorId);
+            return ps;
+        }, (rs, rowNum) -> rs.getLong("id"));
+
+        Set<Long> updatedIds = new HashSet<>(updated);
+        List<Long> remaining = requested.stream().filter(id -> !updatedIds.contains(id)).toList();
+        Set<Long> existing = remaining.isEmpty() ? Set.of() : new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT id FROM recipe WHERE id = ANY (?)");
+            ps.setArray(1, con.createArrayOf("bigint", remaining.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong("id")));
+
+        refreshAfterStatusChange(updated, status);
+        return batchResult(status, requested, updatedIds, existing);
+    }
+
+    /**
+     * Dzieli żądane przepisy (w kolejności żądania) na zmienione, przejęte przez innego moderatora
+     * (istniejące, ale niezmienione) i nieistniejące
+     */
+    static RecipeStatusBatchResultDTO batchResult(RecipeStatus status, Collection<Long> requested,
+                                                  Set<Long> updatedIds, Set<Long> existing) {
+        List<Long> updated = new ArrayList<>();
+        List<Long> claimedByOthers = new ArrayList<>();
+        List<Long> notFound = new ArrayList<>();
+        for (Long id : requested) {
+            if (updatedIds.contains(id)) {
+                updated.add(id);
+            } else if (existing.contains(id)) {
+                claimedByOthers.add(id);
+            } else {
+                notFound.add(id);
+            }
+        }
+        return new RecipeStatusBatchResultDTO(status, updated, claimedByOthers, notFound);
+    }
+
+    private void refreshAfterStatusChange(List<Long> recipeIds, RecipeStatus status) {
+        if (recipeIds.isEmpty()) {
+            return;
+        }
+        if (status == RecipeStatus.ACCEPTED) {
+            // Dokumenty indeksu budowane są z przepisów wczytanych po UPDATE; tagi i składniki dociągane paczkami
+            for (Recipe recipe : recipeRepository.findAllById(recipeIds)) {
+                recipeSearchIndex.index(recipe);
+                recipeSimilarityIndex.index(recipe);
+            }
+        } else {
+            TransactionUtils.afterCommit(() -> recipeIds.forEach(id -> {
+                recipeSearchIndex.remove(id);
+                recipeSimilarityIndex.remove(id);
+            }));
+            recipeIds.forEach(trendingService::remove);
+        }
+        recipeDetailCache.evict(recipeIds);
+        // Zmiana statusu zmienia skład list kategorii i autorów - wpisy cache wyszukiwania z tych list
+        // zostaną wczytane ponownie przy następnym odczycie
+        TransactionUtils.afterCommit(() -> catalogVersionService.recipesChanged(recipeIds));
+    }
+
+    private Long moderatorId(String email) {
+        return userRepository.findByEmail(email)
+                .orElseThrow(() -> new EntityNotFoundException("User not found with email: " + email))
+                .getId();
+    }
+}
@@ -0,0 +1,326 @@
+package org.example.recipeapplication.service;
+
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.example.recipeapplication.dto.RecipeSummaryDTO;
+import org.example.recipeapplication.repos.AppUserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Spersonalizowany feed przepisów (item-to-item collaborative filtering). Okresowe zadanie wsadowe liczy dla
+ * każdego zaakceptowanego przepisu listę przepisów najczęściej polubianych przez tych samych użytkowników
+ * (obserwowanie lub ocena co najmniej POSITIVE_RATING) - podobieństwo kosinusowe wektorów użytkowników.
+ * Przepisy dzielone są między wątki ForkJoinPool, a wynik trzymany jest w pamięci jako tablice identyfikatorów
+ * i wag. Obsługa żądania to jedno zapytanie o historię użytkownika i scalenie list sąsiadów jego przepisów.
+ */
+@Slf4j
+@Service
+public class RecipeRecommendationService {
+
+    static final int POSITIVE_RATING = 4;
+    // Ograniczenia kosztu zadania: aktywność bardzo aktywnych użytkowników i popularnych przepisów jest przycinana
+    private static final int MAX_ITEMS_PER_USER = 500;
+    private static final int MAX_USERS_PER_ITEM = 5000;
+    // Przepisy, z których historii budowany jest feed (najnowsze interakcje)
+    private static final int HISTORY_LIMIT = 200;
+    // Liczba przepisów liczona w jednym zadaniu ForkJoin
+    private static final int ITEMS_PER_TASK = 64;
+
+    private static final String INTERACTIONS = """
+            SELECT x.user_id, x.recipe_id
+            FROM (SELECT user_id, recipe_id FROM followed_recipe
+                  UNION
+                  SELECT user_id, recipe_id FROM rating WHERE value >= ?) x
+            JOIN recipe r ON r.id = x.recipe_id AND r.status = 'ACCEPTED'
+            ORDER BY x.user_id
+            """;
+
+    private static final String HISTORY = """
+            SELECT recipe_id, positive FROM (
+                SELECT recipe_id, true AS positive, followed_at AS at FROM followed_recipe WHERE user_id = ?
+                UNION ALL
+                SELECT recipe_id, value >= ?, COALESCE(updated_at, created_at) FROM rating WHERE user_id = ?
+            ) h
+            ORDER BY at DESC NULLS LAST
+            LIMIT ?
+            """;
+
+    /**
+     * Najbardziej podobne przepisy do danego, od najbardziej podobnych
+     */
+    record Neighbors(long[] recipeIds, float[] similarities) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AppUserRepository userRepository;
+    private final RecipeService recipeService;
+    private final int maxNeighbors;
+    private final int parallelism;
+
+    private volatile Map<Long, Neighbors> neighbors = Map.of();
+
+    public RecipeRecommendationService(JdbcTemplate jdbcTemplate,
+                                       AppUserRepository userRepository,
+                                       RecipeService recipeService,
+                                       @Value("${app.recommendations.max-neighbors:50}") int maxNeighbors,
+                                       @Value("${app.recommendations.parallelism:0}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.recipeService = recipeService;
+        this.maxNeighbors = maxNeighbors;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Przepisy polecane użytkownikowi na podstawie jego obserwowanych i wysoko ocenionych przepisów.
+     * Przepisy, które już obserwuje lub ocenił, są pomijane. Gdy nie ma na czym oprzeć poleceń (brak historii
+     * lub zadanie jeszcze się nie wykonało), zwracane są popularne przepisy.
+     */
+    public Page<RecipeSummaryDTO> getFeed(String email, Pageable pageable) {
+        Long userId = userRepository.findByEmail(email)
+                .orElseThrow(() -> new EntityNotFoundException("User not found with email: " + email))
+                .getId();
+        // Przepis obserwowany i wysoko oceniony liczy się raz
+        Set<Long> liked = new HashSet<>();
+        Set<Long> seen = new HashSet<>();
+        jdbcTemplate.query(HISTORY, rs -> {
+            long recipeId = rs.getLong("recipe_id");
+            seen.add(recipeId);
+            if (rs.getBoolean("positive")) {
+                liked.add(recipeId);
+            }
+        }, userId, POSITIVE_RATING, userId, HISTORY_LIMIT);
+
+        // Lista sąsiadów mogła powstać, zanim przepisowi cofnięto akceptację - odfiltrowujemy przed stronicowaniem,
+        // żeby strony były pełne, a liczba wyników zgodna
+        List<Long> ranked = acceptedOnly(recommend(neighbors, liked, seen));
+        if (ranked.isEmpty()) {
+            return recipeService.getTrendingRecipes(pageable);
+        }
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        int to = Math.min(from + pageable.getPageSize(), ranked.size());
+        List<RecipeSummaryDTO> recipes = recipeService.findSummariesInOrder(ranked.subList(from, to));
+        return new PageImpl<>(recipes, pageable, ranked.size());
+    }
+
+    private List<Long> acceptedOnly(List<Long> recipeIds) {
+        if (recipeIds.isEmpty()) {
+            return recipeIds;
+        }
+        Set<Long> accepted = new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT id FROM recipe WHERE id = ANY (?) AND status = 'ACCEPTED'");
+            ps.setArray(1, con.createArrayOf("bigint", recipeIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong("id")));
+        return recipeIds.stream().filter(accepted::contains).toList();
+    }
+
+    /**
+     * Scala listy sąsiadów polubionych przepisów: wynik przepisu to suma jego podobieństw do nich
+     */
+    static List<Long> recommend(Map<Long, Neighbors> neighbors, Collection<Long> liked, Set<Long> exclude) {
+        Map<Long, Double> scores = new HashMap<>();
+        for (Long recipeId : new HashSet<>(liked)) {
+            Neighbors list = neighbors.get(recipeId);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.recipeIds().length; i++) {
+                long candidate = list.recipeIds()[i];
+                if (!exclude.contains(candidate)) {
+                    scores.merge(candidate, (double) list.similarities()[i], Double::sum);
+                }
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Przelicza listy sąsiadów wszystkich przepisów i podmienia je w całości
+     */
+    @Scheduled(fixedDelayString = "${app.recommendations.interval-ms:21600000}",
+               initialDelayString = "${app.recommendations.initial-delay-ms:60000}")
+    public void recompute() {
+        long start = System.currentTimeMillis();
+        try {
+            // Gęsta numeracja przepisów i listy przepisów kolejnych użytkowników (wiersze posortowane wg użytkownika)
+            Map<Long, Integer> itemIndex = new HashMap<>();
+            List<Long> itemIds = new ArrayList<>();
+            List<int[]> userItems = new ArrayList<>();
+            List<Integer> current = new ArrayList<>();
+            long[] currentUser = {Long.MIN_VALUE};
+            jdbcTemplate.query(INTERACTIONS, rs -> {
+                long userId = rs.getLong("user_id");
+                long recipeId = rs.getLong("recipe_id");
+                if (userId != currentUser[0]) {
+                    addUser(userItems, current);
+                    currentUser[0] = userId;
+                }
+                if (current.size() < MAX_ITEMS_PER_USER) {
+                    current.add(itemIndex.computeIfAbsent(recipeId, id -> {
+                        itemIds.add(id);
+                        return itemIds.size() - 1;
+                    }));
+                }
+            }, POSITIVE_RATING);
+            addUser(userItems, current);
+
+            Map<Long, Neighbors> computed = computeNeighbors(userItems,
+                    itemIds.stream().mapToLong(Long::longValue).toArray(), maxNeighbors, parallelism);
+            neighbors = computed;
+            log.info("Przeliczono polecane przepisy: {} przepisów, {} użytkowników, {} ms",
+                    computed.size(), userItems.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // Do następnego przebiegu używane są poprzednie listy
+            log.error("Nie udało się przeliczyć polecanych przepisów: {}", e.getMessage());
+        }
+    }
+
+    private static void addUser(List<int[]> userItems, List<Integer> items) {
+        if (items.size() > 1) {
+            userItems.add(items.stream().mapToInt(Integer::intValue).toArray());
+        }
+        items.clear();
+    }
+
+    /**
+     * Dla każdego przepisu liczy współwystępowanie z innymi przepisami u tych samych użytkowników i zostawia
+     * maxNeighbors najbardziej podobnych (cos = wspólni / sqrt(użytkownicy_a * użytkownicy_b))
+     *
+     * @param userItems przepisy kolejnych użytkowników (numery z itemIds)
+     * @param itemIds   identyfikatory przepisów wg numeru
+     */
+    static Map<Long, Neighbors> computeNeighbors(List<int[]> userItems, long[] itemIds, int maxNeighbors, int parallelism) {
+        int itemCount = itemIds.length;
+        int[] userCounts = new int[itemCount];
+        for (int[] items : userItems) {
+            for (int item : items) {
+                userCounts[item]++;
+            }
+        }
+        // Indeks odwrotny: przepis -> użytkownicy (przycięty dla bardzo popularnych przepisów)
+        int[][] itemUsers = new int[itemCount][];
+        for (int item = 0; item < itemCount; item++) {
+            itemUsers[item] = new int[Math.min(userCounts[item], MAX_USERS_PER_ITEM)];
+        }
+        int[] filled = new int[itemCount];
+        for (int user = 0; user < userItems.size(); user++) {
+            for (int item : userItems.get(user)) {
+                if (filled[item] < itemUsers[item].length) {
+                    itemUsers[item][filled[item]++] = user;
+                }
+            }
+        }
+
+        Neighbors[] result = new Neighbors[itemCount];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new NeighborsTask(userItems, itemIds, itemUsers, userCounts, maxNeighbors, result, 0, itemCount));
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<Long, Neighbors> byRecipe = new HashMap<>();
+        for (int item = 0; item < itemCount; item++) {
+            if (result[item] != null && result[item].recipeIds().length > 0) {
+                byRecipe.put(itemIds[item], result[item]);
+            }
+        }
+        return byRecipe;
+    }
+
+    /**
+     * Liczy sąsiadów dla przedziału przepisów, dzieląc go na połowy aż do ITEMS_PER_TASK przepisów
+     */
+    private static final class NeighborsTask extends RecursiveAction {
+        private final List<int[]> userItems;
+        private final long[] itemIds;
+        private final int[][] itemUsers;
+        private final int[] userCounts;
+        private final int maxNeighbors;
+        private final Neighbors[] result;
+        private final int from;
+        private final int to;
+
+        NeighborsTask(List<int[]> userItems, long[] itemIds, int[][] itemUsers, int[] userCounts, int maxNeighbors,
+                      Neighbors[] result, int from, int to) {
+            this.userItems = userItems;
+            this.itemIds = itemIds;
+            this.itemUsers = itemUsers;
+            this.userCounts = userCounts;
+            this.maxNeighbors = maxNeighbors;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ITEMS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new NeighborsTask(userItems, itemIds, itemUsers, userCounts, maxNeighbors, result, from, middle),
+                        new NeighborsTask(userItems, itemIds, itemUsers, userCounts, maxNeighbors, result, middle, to));
+                return;
+            }
+            // Liczniki współwystępowania współdzielone przez przepisy przedziału - zerowane po każdym przepisie
+            int[] coCounts = new int[itemIds.length];
+            int[] touched = new int[itemIds.length];
+            for (int item = from; item < to; item++) {
+                int touchedCount = 0;
+                for (int user : itemUsers[item]) {
+                    for (int other : userItems.get(user)) {
+                        if (other != item && coCounts[other]++ == 0) {
+                            touched[touchedCount++] = other;
+                        }
+                    }
+                }
+                result[item] = top(item, touched, touchedCount, coCounts);
+                for (int i = 0; i < touchedCount; i++) {
+                    coCounts[touched[i]] = 0;
+                }
+            }
+        }
+
+        private Neighbors top(int item, int[] touched, int touchedCount, int[] coCounts) {
+            record Scored(int item, float similarity) {}
+            List<Scored> scored = new ArrayList<>(touchedCount);
+            for (int i = 0; i < touchedCount; i++) {
+                int other = touched[i];
+                double similarity = coCounts[other] / Math.sqrt((double) userCounts[item] * userCounts[other]);
+                scored.add(new Scored(other, (float) similarity));
+            }
+            scored.sort(Comparator.comparingDouble(Scored::similarity).reversed()
+                    .thenComparingLong(s -> itemIds[s.item()]));
+            int size = Math.min(maxNeighbors, scored.size());
+            long[] ids = new long[size];
+            float[] similarities = new float[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = itemIds[scored.get(i).item()];
+                similarities[i] = scored.get(i).similarity();
+            }
+            return new Neighbors(ids, similarities);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.example.recipeapplication.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.example.recipeapplication.dto.RecipeSummaryDTO;
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.SearchMode;
+import org.example.recipeapplication.util.TextNormalizer;
+import org.example.recipeapplication.util.TransactionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cache stron wyników wyszukiwania przepisów. Rozmiar ograniczony jest łączną liczbą przepisów na zapamiętanych
+ * stronach, a wpisy wygasają po czasie app.cache.search.ttl-seconds. Zmiana przepisu usuwa tylko te wpisy, w których
+ * przepis występuje lub mógłby wystąpić (zgodna kategoria i wszystkie słowa zapytania obecne w jego tekście).
+ * Wpis pamięta ETag listy z chwili wczytania i jest ładowany ponownie, gdy ETag wyznaczony dla żądania jest inny
+ * (również po zmianie na innej instancji) - sprawdzenie nie wymaga dodatkowego zapytania.
+ * Statystyki trafień i chybień publikowane są jako metryki cache.* z tagiem cache=recipe-search.
+ */
+@Service
+public class RecipeSearchCache {
+
+    private record Entry(String etag, Page<RecipeSummaryDTO> page) {}
+
+    private final Cache<Key, Entry> cache;
+    private final CatalogVersionService catalogVersionService;
+
+    public RecipeSearchCache(MeterRegistry meterRegistry,
+                             CatalogVersionService catalogVersionService,
+                             @Value("${app.cache.search.ttl-seconds:300}") long ttlSeconds,
+                             @Value("${app.cache.search.max-recipes:20000}") long maxRecipes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxRecipes)
+                .weigher((Key key, Entry entry) -> 1 + entry.page().getNumberOfElements())
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "recipe-search");
+        this.catalogVersionService = catalogVersionService;
+    }
+
+    /**
+     * Parametry wyszukiwania; fraza sprowadzona do postaci, w której różnice nie zmieniają wyniku w danym trybie
+     */
+    public record Key(SearchMode mode, String term, Long categoryId, String sort, int page, int size) {
+
+        public static Key of(String search, Pageable pageable, Long categoryId, SearchMode mode) {
+            String term = search == null ? "" : switch (mode) {
+                // Indeks ignoruje wielkość liter, polskie znaki i słowa krótsze niż 2 znaki
+                case INDEX, RELEVANCE -> String.join(" ", TextNormalizer.tokenize(search));
+                // LIKE i wyszukiwanie pełnotekstowe nie rozróżniają wielkości liter
+                default -> search.toLowerCase(Locale.ROOT);
+            };
+            return new Key(mode, term, categoryId, pageable.getSort().toString(),
+                    pageable.getPageNumber(), pageable.getPageSize());
+        }
+    }
+
+    /**
+     * Stan przepisu istotny dla wyszukiwania: kategoria i znormalizowany tekst (tytuł, opis, tagi, składniki).
+     * Wymaga otwartej sesji - tagi i składniki ładowane są leniwie.
+     */
+    public record RecipeSnapshot(Long id, Long categoryId, Long authorId, String text) {
+
+        public static RecipeSnapshot of(Recipe recipe) {
+            Stream<String> tags = recipe.getTags() != null ? recipe.getTags().stream() : Stream.empty();
+            Stream<String> ingredients = recipe.getIngredients() != null
+                    ? recipe.getIngredients().stream().map(ingredient -> ingredient.getIngredient().getName())
+                    : Stream.empty();
+            String text = Stream.of(Stream.of(recipe.getTitle(), recipe.getDescription()), tags, ingredients)
+                    .flatMap(s -> s)
+                    .filter(Objects::nonNull)
+                    .map(TextNormalizer::normalize)
+                    .collect(Collectors.joining(" "));
+            return new RecipeSnapshot(recipe.getId(),
+                    recipe.getCategory() != null ? recipe.getCategory().getId() : null,
+                    recipe.getAuthor() != null ? recipe.getAuthor().getId() : null,
+                    text);
+        }
+    }
+
+    /**
+     * @param etag ETag listy wyznaczony dla żądania przed odczytem danych
+     *             (zob. {@link CatalogVersionService#searchETag})
+     */
+    public Page<RecipeSummaryDTO> get(Key key, String etag, Supplier<Page<RecipeSummaryDTO>> loader) {
+        Entry entry = cache.get(key, k -> new Entry(etag, loader.get()));
+        if (!entry.etag().equals(etag)) {
+            entry = cache.asMap().compute(key, (k, cached) -> cached != null && cached.etag().equals(etag)
+                    ? cached
+                    : new Entry(etag, loader.get()));
+        }
+        return entry.page();
+    }
+
+    /**
+     * Po zatwierdzeniu transakcji usuwa wpisy, na które mogła wpłynąć zmiana przepisu. Przy edycji należy podać
+     * stan sprzed i po zmianie - przepis mógł zniknąć z jednych wyników i pojawić się w innych.
+     */
+    public void evict(RecipeSnapshot... states) {
+        List<RecipeSnapshot> snapshots = List.of(states);
+        TransactionUtils.afterCommit(() -> {
+            cache.asMap().entrySet()
+                    .removeIf(entry -> snapshots.stream().anyMatch(snapshot -> affects(entry, snapshot)));
+            // Stan sprzed zmiany wskazuje listy, z których przepis mógł zniknąć (zmiana kategorii, usunięcie)
+            Set<String> scopes = new HashSet<>();
+            for (RecipeSnapshot snapshot : snapshots) {
+                if (snapshot.categoryId() != null) {
+                    scopes.add(CatalogVersionService.categoryScope(snapshot.categoryId()));
+                }
+                if (snapshot.authorId() != null) {
+                    scopes.add(CatalogVersionService.authorScope(snapshot.authorId()));
+                }
+            }
+            catalogVersionService.scopesChanged(scopes);
+        });
+    }
+
+    /**
+     * Usuwa wszystkie wpisy - przy zmianach widocznych we wszystkich kartach przepisów (np. dane autorów)
+     */
+    public void evictAll() {
+        TransactionUtils.afterCommit(() -> {
+            cache.invalidateAll();
+            catalogVersionService.allRecipesChanged();
+        });
+    }
+
+    private static boolean affects(Map.Entry<Key, Entry> entry, RecipeSnapshot snapshot) {
+        boolean listed = entry.getValue().page().getContent().stream()
+                .anyMatch(recipe -> recipe.id().equals(snapshot.id()));
+        if (listed) {
+            return true;
+        }
+        Key key = entry.getKey();
+        if (key.categoryId() != null && !key.categoryId().equals(snapshot.categoryId())) {
+            return false;
+        }
+        // Dopasowanie fragmentów słów obejmuje zarówno LIKE, jak i dopasowanie prefiksowe indeksu
+        return TextNormalizer.tokenize(key.term()).stream().allMatch(snapshot.text()::contains);
+    }
+}
@@ -0,0 +1,693 @@
+package org.example.recipeapplication.service;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.recipeapplication.model.PrepTimeBucket;
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.RecipeIngredient;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.example.recipeapplication.repos.RecipeRepository;
+import org.example.recipeapplication.util.TextNormalizer;
+import org.example.recipeapplication.util.TransactionUtils;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indeks odwrócony przepisów trzymany w pamięci. Każde słowo z tytułu, opisu, tagów i nazw składników
+ * wskazuje na skompresowaną listę (RoaringBitmap) identyfikatorów przepisów, w których występuje.
+ * Indeksowane są wyłącznie przepisy zaakceptowane; indeks aktualizowany jest przyrostowo przez RecipeService.
+ * Częstości słów w poszczególnych polach pozwalają szeregować wyniki wg trafności (BM25F).
+ * Osobny słownik pełnych, znormalizowanych nazw składników służy do wyszukiwania przepisów z posiadanych składników.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecipeSearchIndex {
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    // Parametry BM25: nasycenie częstości słowa i wpływ długości pola
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Dopasowanie samego prefiksu słowa jest mniej istotne niż dopasowanie całego słowa
+    private static final double PREFIX_MATCH_WEIGHT = 0.7;
+    // Słowa w nazwach składników uznawane są za zgodne, gdy różnią się najwyżej tyloma końcowymi znakami
+    // (odmiana: "pomidor" - "pomidory", "jajka" - "jajko", ale już nie "mak" - "makaron")
+    private static final int MAX_INFLECTION_SUFFIX = 2;
+
+    /**
+     * Indeksowane pola przepisu wraz z wagą dopasowania w rankingu
+     */
+    enum Field {
+        TITLE(3.0),
+        TAGS(2.0),
+        DESCRIPTION(1.0),
+        INGREDIENTS(1.0);
+
+        private final double boost;
+
+        Field(double boost) {
+            this.boost = boost;
+        }
+    }
+
+    private final RecipeRepository recipeRepository;
+    private final EntityManager entityManager;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Słownik posortowany leksykograficznie, dzięki czemu słowa z zapytania można rozwijać prefiksowo
+    private final NavigableMap<String, RoaringBitmap> postings = new TreeMap<>();
+    private final Map<Long, RoaringBitmap> categories = new HashMap<>();
+    private final Map<Integer, IndexedRecipe> documents = new HashMap<>();
+    private final RoaringBitmap allDocuments = new RoaringBitmap();
+    // Suma długości pól we wszystkich przepisach - do wyznaczenia średniej długości pola w BM25
+    private final long[] totalFieldLengths = new long[Field.values().length];
+    // Znormalizowana nazwa składnika (np. "ser zolty") -> przepisy, które go zawierają
+    private final Map<String, RoaringBitmap> ingredientPostings = new HashMap<>();
+    // Słowo z nazwy składnika -> nazwy składników zawierające to słowo
+    private final NavigableMap<String, Set<String>> ingredientWords = new TreeMap<>();
+    // Przepisy zmienione przyrostowo w trakcie przebudowy (null poza przebudową) - ich stan z wczytywanych stron
+    // może być starszy, więc przebudowa ich nie dodaje
+    private Set<Integer> changedDuringRebuild;
+
+    private volatile boolean ready;
+
+    /**
+     * Dane przepisu potrzebne do dopasowania, filtrowania i sortowania bez sięgania do bazy
+     */
+    record IndexedRecipe(
+            int id,
+            Long categoryId,
+            String title,
+            long createdAt,
+            float rating,
+            int favoritesCount,
+            // słowo -> liczba wystąpień w kolejnych polach (indeksowane wg Field.ordinal())
+            Map<String, int[]> termFrequencies,
+            int[] fieldLengths,
+            // znormalizowana nazwa składnika -> nazwa wyświetlana
+            Map<String, String> ingredients,
+            // tagi sprowadzone do małych liter, bez powtórzeń
+            List<String> tags,
+            PrepTimeBucket prepTime
+    ) {
+        IndexedRecipe withStats(float rating, int favoritesCount) {
+            return new IndexedRecipe(id, categoryId, title, createdAt, rating, favoritesCount, termFrequencies, fieldLengths,
+                    ingredients, tags, prepTime);
+        }
+
+        Set<String> terms() {
+            return termFrequencies.keySet();
+        }
+    }
+
+    private record ScoredRecipe(int id, double score) {}
+
+    /**
+     * Przepis dopasowany do posiadanych składników: liczba składników przepisu, które użytkownik ma,
+     * oraz nazwy brakujących
+     */
+    public record IngredientMatch(long recipeId, int matchedCount, int ingredientCount, List<String> missingIngredients) {}
+
+    /**
+     * Dopasowania z żądanej strony oraz łączna liczba przepisów spełniających warunek
+     */
+    public record IngredientMatches(List<IngredientMatch> matches, long total) {}
+
+    /**
+     * Liczby dopasowanych przepisów wg kategorii (bez filtra kategorii), tagów (najpopularniejsze) i czasu przygotowania
+     */
+    public record Facets(Map<Long, Long> categories, Map<String, Long> tags, Map<PrepTimeBucket, Long> prepTime) {}
+
+    /**
+     * Identyfikatory przepisów z żądanej strony (w kolejności wyników) oraz łączna liczba dopasowań
+     */
+    public record SearchHits(List<Long> recipeIds, long total) {}
+
+    /**
+     * Buduje indeks od zera na podstawie zaakceptowanych przepisów z bazy
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        ready = false;
+
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            categories.clear();
+            documents.clear();
+            allDocuments.clear();
+            ingredientPostings.clear();
+            ingredientWords.clear();
+            Arrays.fill(totalFieldLengths, 0L);
+            changedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            recipeRepository.forEachBatchByStatus(RecipeStatus.ACCEPTED, REBUILD_BATCH_SIZE, recipes -> {
+                List<IndexedRecipe> batch = recipes.stream().map(this::toIndexedRecipe).toList();
+                // Wczytane encje nie są już potrzebne - kontekst persystencji nie rośnie wraz z katalogiem
+                entityManager.clear();
+                lock.writeLock().lock();
+                try {
+                    batch.stream()
+                            .filter(document -> !changedDuringRebuild.contains(document.id()))
+                            .forEach(this::addInternal);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        ready = true;
+        log.info("Zbudowano indeks wyszukiwania: {} przepisów, {} słów, {} ms",
+                documents.size(), postings.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Dodaje lub odświeża przepis w indeksie. Przepisy o statusie innym niż ACCEPTED są z indeksu usuwane.
+     * Dokument budowany jest od razu, bo tagi i składniki przepisu ładowane są leniwie i wymagają otwartej sesji,
+     * a zmiana w indeksie widoczna jest dopiero po zatwierdzeniu bieżącej transakcji.
+     */
+    public void index(Recipe recipe) {
+        if (recipe.getStatus() != RecipeStatus.ACCEPTED) {
+            Long recipeId = recipe.getId();
+            TransactionUtils.afterCommit(() -> remove(recipeId));
+            return;
+        }
+
+        IndexedRecipe document = toIndexedRecipe(recipe);
+        TransactionUtils.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                markChanged(document.id());
+                removeInternal(document.id());
+                addInternal(document);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void remove(Long recipeId) {
+        lock.writeLock().lock();
+        try {
+            markChanged(Math.toIntExact(recipeId));
+            removeInternal(Math.toIntExact(recipeId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Wywoływane pod blokadą zapisu
+    private void markChanged(int id) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(id);
+        }
+    }
+
+    /**
+     * Aktualizuje pola używane do sortowania (ocena, liczba polubień) bez ponownego indeksowania tekstu
+     */
+    public void updateStats(Long recipeId, Float rating, Integer favoritesCount) {
+        lock.writeLock().lock();
+        try {
+            documents.computeIfPresent(Math.toIntExact(recipeId), (id, document) -> document.withStats(
+                    rating != null ? rating : 0f,
+                    favoritesCount != null ? favoritesCount : 0));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Wyszukuje przepisy zawierające wszystkie słowa zapytania (każde dopasowywane prefiksowo).
+     * Puste zapytanie zwraca wszystkie zaindeksowane przepisy.
+     *
+     * @param query fraza wyszukiwania
+     * @param categoryId opcjonalny filtr kategorii
+     * @param sort sortowanie wyników (obsługiwane pola: dateOfCreation, rating, followersCount, title, id)
+     * @param offset liczba pominiętych wyników
+     * @param limit rozmiar strony
+     */
+    public SearchHits search(String query, Long categoryId, Sort sort, long offset, int limit) {
+        List<String> tokens = TextNormalizer.tokenize(query);
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = match(tokens, categoryId);
+            List<IndexedRecipe> top = topK(
+                    () -> matches.stream().mapToObj(documents::get).iterator(),
+                    comparatorFor(sort),
+                    (int) Math.min(offset + limit, Integer.MAX_VALUE));
+
+            List<Long> recipeIds = top.stream()
+                    .skip(offset)
+                    .map(document -> (long) document.id())
+                    .toList();
+            return new SearchHits(recipeIds, matches.getLongCardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Wyszukuje przepisy zawierające wszystkie słowa zapytania i szereguje je wg trafności (BM25F z wagami pól:
+     * tytuł, tagi, opis, składniki). Na stronę wybierane jest tylko offset + limit najlepszych wyników (kopiec),
+     * bez sortowania całego zbioru dopasowań. Dla pustego zapytania działa jak {@link #search} z domyślnym sortowaniem.
+     */
+    public SearchHits searchByRelevance(String query, Long categoryId, long offset, int limit) {
+        List<String> tokens = TextNormalizer.tokenize(query);
+        if (tokens.isEmpty()) {
+            return search(query, categoryId, Sort.unsorted(), offset, limit);
+        }
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = match(tokens, categoryId);
+            double[] averageFieldLengths = averageFieldLengths();
+            Map<String, Double> idfCache = new HashMap<>();
+
+            List<ScoredRecipe> top = topK(
+                    () -> matches.stream()
+                            .mapToObj(id -> new ScoredRecipe(id, score(documents.get(id), tokens, averageFieldLengths, idfCache)))
+                            .iterator(),
+                    Comparator.comparingDouble(ScoredRecipe::score).reversed()
+                            .thenComparing(Comparator.comparingInt(ScoredRecipe::id).reversed()),
+                    (int) Math.min(offset + limit, Integer.MAX_VALUE));
+
+            List<Long> recipeIds = top.stream()
+                    .skip(offset)
+                    .map(scored -> (long) scored.id())
+                    .toList();
+            return new SearchHits(recipeIds, matches.getLongCardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Zlicza dopasowania zapytania w podziale na kategorie, tagi i przedziały czasu przygotowania w jednym przejściu
+     * po zbiorze dopasowań. Kategorie liczone są bez filtra categoryId (pozwala to pokazać liczby w innych kategoriach),
+     * tagi i czas przygotowania - z filtrem.
+     *
+     * @param maxTags liczba zwracanych najpopularniejszych tagów
+     */
+    public Facets facets(String query, Long categoryId, int maxTags) {
+        List<String> tokens = TextNormalizer.tokenize(query);
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = match(tokens, null);
+            Map<Long, Long> categoryCounts = new HashMap<>();
+            Map<String, Long> tagCounts = new HashMap<>();
+            Map<PrepTimeBucket, Long> prepTimeCounts = new EnumMap<>(PrepTimeBucket.class);
+            matches.forEach((int id) -> {
+                IndexedRecipe document = documents.get(id);
+                if (document.categoryId() != null) {
+                    categoryCounts.merge(document.categoryId(), 1L, Long::sum);
+                }
+                if (categoryId == null || categoryId.equals(document.categoryId())) {
+                    document.tags().forEach(tag -> tagCounts.merge(tag, 1L, Long::sum));
+                    prepTimeCounts.merge(document.prepTime(), 1L, Long::sum);
+                }
+            });
+
+            Map<String, Long> topTags = new LinkedHashMap<>();
+            topK(tagCounts.entrySet(),
+                    Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()),
+                    maxTags)
+                    .forEach(entry -> topTags.put(entry.getKey(), entry.getValue()));
+            return new Facets(categoryCounts, topTags, prepTimeCounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Wyszukuje przepisy, które można przygotować z podanych składników. Najpierw zwracane są przepisy,
+     * do których mamy wszystkie składniki, potem te z jednym, dwoma itd. brakującymi (najwyżej maxMissing);
+     * przy tej samej liczbie braków decyduje liczba posiadanych składników, a następnie ocena przepisu.
+     *
+     * @param available nazwy posiadanych składników, dopasowywane bez względu na wielkość liter, polskie znaki i odmianę
+     * @param maxMissing maksymalna liczba brakujących składników
+     */
+    public IngredientMatches searchByIngredients(Collection<String> available, int maxMissing, long offset, int limit) {
+        lock.readLock().lock();
+        try {
+            Set<String> owned = new HashSet<>();
+            for (String name : available) {
+                owned.addAll(resolveIngredient(name));
+            }
+            if (owned.isEmpty()) {
+                return new IngredientMatches(List.of(), 0);
+            }
+
+            // Kandydaci: przepisy zawierające co najmniej jeden z posiadanych składników
+            RoaringBitmap candidates = FastAggregation.or(owned.stream().map(ingredientPostings::get).iterator());
+            List<IngredientMatch> qualifying = new ArrayList<>();
+            candidates.forEach((int id) -> {
+                IndexedRecipe document = documents.get(id);
+                int matched = 0;
+                for (String ingredient : document.ingredients().keySet()) {
+                    if (owned.contains(ingredient)) {
+                        matched++;
+                    }
+                }
+                if (document.ingredients().size() - matched <= maxMissing) {
+                    qualifying.add(new IngredientMatch(id, matched, document.ingredients().size(), null));
+                }
+            });
+
+            Comparator<IngredientMatch> order = Comparator
+                    .comparingInt((IngredientMatch match) -> match.ingredientCount() - match.matchedCount())
+                    .thenComparing(Comparator.comparingInt(IngredientMatch::matchedCount).reversed())
+                    .thenComparing(Comparator.comparingDouble(
+                            (IngredientMatch match) -> documents.get((int) match.recipeId()).rating()).reversed())
+                    .thenComparing(Comparator.comparingLong(IngredientMatch::recipeId).reversed());
+            List<IngredientMatch> page = topK(qualifying, order, (int) Math.min(offset + limit, Integer.MAX_VALUE)).stream()
+                    .skip(offset)
+                    .map(match -> new IngredientMatch(match.recipeId(), match.matchedCount(), match.ingredientCount(),
+                            documents.get((int) match.recipeId()).ingredients().entrySet().stream()
+                                    .filter(ingredient -> !owned.contains(ingredient.getKey()))
+                                    .map(Map.Entry::getValue)
+                                    .toList()))
+                    .toList();
+            return new IngredientMatches(page, qualifying.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Znormalizowane nazwy składników pasujące do nazwy podanej przez użytkownika: każde jej słowo musi wystąpić
+     * w nazwie składnika (z dokładnością do odmiany), np. "ser" pasuje do "ser żółty" i "serek", "jajka" do "jajko"
+     */
+    private Set<String> resolveIngredient(String name) {
+        Set<String> result = null;
+        for (String word : TextNormalizer.tokenize(name)) {
+            Set<String> matching = new HashSet<>();
+            // Każde zgodne słowo zaczyna się od rdzenia podanego słowa bez końcówki
+            String stem = word.substring(0, Math.max(TextNormalizer.MIN_TOKEN_LENGTH, word.length() - MAX_INFLECTION_SUFFIX));
+            ingredientWords.subMap(stem, true, stem + Character.MAX_VALUE, true).forEach((indexed, names) -> {
+                if (isInflection(word, indexed)) {
+                    matching.addAll(names);
+                }
+            });
+            if (result == null) {
+                result = matching;
+            } else {
+                result.retainAll(matching);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result != null ? result : Set.of();
+    }
+
+    private static boolean isInflection(String word, String other) {
+        int common = 0;
+        int shorter = Math.min(word.length(), other.length());
+        while (common < shorter && word.charAt(common) == other.charAt(common)) {
+            common++;
+        }
+        return Math.max(word.length(), other.length()) - common <= MAX_INFLECTION_SUFFIX;
+    }
+
+    /**
+     * Suma po słowach zapytania najlepiej ocenionego dopasowania w przepisie (całe słowo lub słowo z danym prefiksem)
+     */
+    private double score(IndexedRecipe document, List<String> tokens, double[] averageFieldLengths, Map<String, Double> idfCache) {
+        double score = 0;
+        for (String token : tokens) {
+            double best = 0;
+            for (Map.Entry<String, int[]> entry : document.termFrequencies().entrySet()) {
+                String term = entry.getKey();
+                if (!term.startsWith(token)) {
+                    continue;
+                }
+                double weightedTf = 0;
+                int[] frequencies = entry.getValue();
+                for (Field field : Field.values()) {
+                    int tf = frequencies[field.ordinal()];
+                    if (tf > 0) {
+                        double lengthRatio = averageFieldLengths[field.ordinal()] > 0
+                                ? document.fieldLengths()[field.ordinal()] / averageFieldLengths[field.ordinal()]
+                                : 1.0;
+                        weightedTf += field.boost * tf / (1 - B + B * lengthRatio);
+                    }
+                }
+                double termScore = idfCache.computeIfAbsent(term, this::idf) * weightedTf / (K1 + weightedTf);
+                if (!term.equals(token)) {
+                    termScore *= PREFIX_MATCH_WEIGHT;
+                }
+                best = Math.max(best, termScore);
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    private double idf(String term) {
+        RoaringBitmap posting = postings.get(term);
+        int documentFrequency = posting != null ? posting.getCardinality() : 0;
+        return Math.log(1 + (documents.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private double[] averageFieldLengths() {
+        double[] averages = new double[totalFieldLengths.length];
+        if (!documents.isEmpty()) {
+            for (int i = 0; i < averages.length; i++) {
+                averages[i] = (double) totalFieldLengths[i] / documents.size();
+            }
+        }
+        return averages;
+    }
+
+    private RoaringBitmap match(List<String> tokens, Long categoryId) {
+        RoaringBitmap result = allDocuments.clone();
+        for (String token : tokens) {
+            result.and(expandPrefix(token));
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+        if (categoryId != null) {
+            result.and(categories.getOrDefault(categoryId, new RoaringBitmap()));
+        }
+        return result;
+    }
+
+    /**
+     * Suma list wszystkich słów zaczynających się od podanego prefiksu (np. "makaron" -> "makaronem", "makaronu")
+     */
+    private RoaringBitmap expandPrefix(String prefix) {
+        return FastAggregation.or(postings.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values().iterator());
+    }
+
+    /**
+     * Wybiera k najlepszych elementów wg komparatora przy użyciu kopca o rozmiarze k,
+     * bez sortowania całego zbioru dopasowań. Wynik jest posortowany od najlepszego.
+     */
+    static <T> List<T> topK(Iterable<T> candidates, Comparator<T> order, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        // Na szczycie kopca znajduje się najgorszy z dotychczas wybranych elementów
+        PriorityQueue<T> heap = new PriorityQueue<>(Math.min(k, 1024), order.reversed());
+        for (T candidate : candidates) {
+            if (heap.size() < k) {
+                heap.add(candidate);
+            } else if (order.compare(candidate, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+        List<T> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static Comparator<IndexedRecipe> comparatorFor(Sort sort) {
+        Sort.Order order = sort.stream().findFirst().orElse(Sort.Order.desc("dateOfCreation"));
+        Comparator<IndexedRecipe> comparator = switch (order.getProperty()) {
+            case "rating" -> Comparator.comparingDouble(IndexedRecipe::rating);
+            case "followersCount", "favoritesCount" -> Comparator.comparingInt(IndexedRecipe::favoritesCount);
+            case "title" -> Comparator.comparing(IndexedRecipe::title, String.CASE_INSENSITIVE_ORDER);
+            case "id" -> Comparator.comparingInt(IndexedRecipe::id);
+            default -> Comparator.comparingLong(IndexedRecipe::createdAt);
+        };
+        if (order.isDescending()) {
+            comparator = comparator.reversed();
+        }
+        // Przy równych wartościach nowsze przepisy (wyższe ID) pierwsze - kolejność stabilna między stronami
+        return comparator.thenComparing(Comparator.comparingInt(IndexedRecipe::id).reversed());
+    }
+
+    private IndexedRecipe toIndexedRecipe(Recipe recipe) {
+        Map<String, int[]> termFrequencies = new HashMap<>();
+        int[] fieldLengths = new int[Field.values().length];
+
+        addField(termFrequencies, fieldLengths, Field.TITLE, recipe.getTitle());
+        addField(termFrequencies, fieldLengths, Field.DESCRIPTION, recipe.getDescription());
+        Set<String> tags = new LinkedHashSet<>();
+        if (recipe.getTags() != null) {
+            recipe.getTags().forEach(tag -> addField(termFrequencies, fieldLengths, Field.TAGS, tag));
+            recipe.getTags().stream()
+                    .filter(Objects::nonNull)
+                    .map(tag -> tag.trim().toLowerCase(Locale.ROOT))
+                    .filter(tag -> !tag.isEmpty())
+                    .forEach(tags::add);
+        }
+        Map<String, String> ingredients = new LinkedHashMap<>();
+        if (recipe.getIngredients() != null) {
+            for (RecipeIngredient recipeIngredient : recipe.getIngredients()) {
+                String name = recipeIngredient.getIngredient().getName();
+                addField(termFrequencies, fieldLengths, Field.INGREDIENTS, name);
+                String key = ingredientKey(name);
+                if (!key.isEmpty()) {
+                    ingredients.putIfAbsent(key, name.trim());
+                }
+            }
+        }
+
+        return new IndexedRecipe(
+                Math.toIntExact(recipe.getId()),
+                recipe.getCategory() != null ? recipe.getCategory().getId() : null,
+                recipe.getTitle() != null ? recipe.getTitle() : "",
+                recipe.getDateOfCreation() != null ? recipe.getDateOfCreation().getTime() : 0L,
+                recipe.getRating() != null ? recipe.getRating() : 0f,
+                recipe.getFavoritesCount() != null ? recipe.getFavoritesCount() : 0,
+                Map.copyOf(termFrequencies),
+                fieldLengths,
+                Collections.unmodifiableMap(ingredients),
+                List.copyOf(tags),
+                PrepTimeBucket.of(recipe.getEstimatedTimeToPrepare())
+        );
+    }
+
+    /**
+     * Nazwa składnika sprowadzona do słów znormalizowanych, np. "Ser  Żółty" -> "ser zolty"
+     */
+    static String ingredientKey(String name) {
+        return String.join(" ", TextNormalizer.tokenize(name));
+    }
+
+    private static void addField(Map<String, int[]> termFrequencies, int[] fieldLengths, Field field, String text) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            termFrequencies.computeIfAbsent(token, t -> new int[Field.values().length])[field.ordinal()]++;
+            fieldLengths[field.ordinal()]++;
+        }
+    }
+
+    private void addInternal(IndexedRecipe document) {
+        int id = document.id();
+        documents.put(id, document);
+        allDocuments.add(id);
+        for (int i = 0; i < totalFieldLengths.length; i++) {
+            totalFieldLengths[i] += document.fieldLengths()[i];
+        }
+        for (String term : document.terms()) {
+            postings.computeIfAbsent(term, t -> new RoaringBitmap()).add(id);
+        }
+        if (document.categoryId() != null) {
+            categories.computeIfAbsent(document.categoryId(), c -> new RoaringBitmap()).add(id);
+        }
+        for (String ingredient : document.ingredients().keySet()) {
+            ingredientPostings.computeIfAbsent(ingredient, i -> {
+                for (String word : ingredient.split(" ")) {
+                    ingredientWords.computeIfAbsent(word, w -> new HashSet<>()).add(ingredient);
+                }
+                return new RoaringBitmap();
+            }).add(id);
+        }
+    }
+
+    private void removeInternal(int id) {
+        IndexedRecipe document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        allDocuments.remove(id);
+        for (int i = 0; i < totalFieldLengths.length; i++) {
+            totalFieldLengths[i] -= document.fieldLengths()[i];
+        }
+        for (String term : document.terms()) {
+            RoaringBitmap posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        if (document.categoryId() != null) {
+            RoaringBitmap category = categories.get(document.categoryId());
+            if (category != null) {
+                category.remove(id);
+            }
+        }
+        for (String ingredient : document.ingredients().keySet()) {
+            RoaringBitmap posting = ingredientPostings.get(ingredient);
+            if (posting == null) {
+                continue;
+            }
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                ingredientPostings.remove(ingredient);
+                for (String word : ingredient.split(" ")) {
+                    Set<String> names = ingredientWords.get(word);
+                    if (names != null && names.remove(ingredient) && names.isEmpty()) {
+                        ingredientWords.remove(word);
+                    }
+                }
+            }
+        }
+    }
+}
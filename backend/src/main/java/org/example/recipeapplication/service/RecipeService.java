@@ -7,95 +7,323 @@ import org.example.recipeapplication.model.*;
 import org.example.recipeapplication.repos.AppUserRepository;
 import org.example.recipeapplication.repos.CategoryRepository;
 import org.example.recipeapplication.repos.CommentRepository;
-import org.example.recipeapplication.repos.IngredientRepository;
+import org.example.recipeapplication.repos.RecipeCardView;
 import org.example.recipeapplication.repos.RecipeRepository;
 import org.example.recipeapplication.repos.RatingRepository; // Import RatingRepository
+import org.example.recipeapplication.util.RecipeCursor;
+import org.example.recipeapplication.util.TransactionUtils;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class RecipeService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final int MAX_AVAILABLE_INGREDIENTS = 50;
+    private static final int MAX_MISSING_INGREDIENTS = 5;
+    private static final int MAX_SIMILAR_RECIPES = 20;
+    private static final int FACET_TAG_COUNT = 10;
+
     private final RecipeRepository recipeRepository;
     private final CategoryRepository categoryRepository;
     private final AppUserRepository userRepository;
-    private final IngredientRepository ingredientRepository;
+    private final RecipeIngredientService recipeIngredientService;
     private final FileStorageService fileStorageService;
     private final CommentService commentService; // Dodanie CommentService
     private final UserAdminService userAdminService; // Dodanie UserAdminService
     private final CommentRepository commentRepository; // Dodanie CommentRepository
     private final RatingRepository ratingRepository; // Dodanie repozytorium ocen
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipeSimilarityIndex recipeSimilarityIndex;
+    private final TrendingService trendingService;
+    private final RecipeSearchCache recipeSearchCache;
+    private final RecipeDetailCache recipeDetailCache;
+    private final CatalogVersionService catalogVersionService;
+    private final TransactionTemplate transactionTemplate;
+
+    public Page<RecipeSummaryDTO> getAllRecipes(Pageable pageable) {
+        return toSummaryPage(recipeRepository.findCardsByStatus(RecipeStatus.ACCEPTED, withCardSort(pageable)));
+    }
 
-    public Page<RecipeResponseDTO> getAllRecipes(Pageable pageable) {
-        return recipeRepository.findByStatus(org.example.recipeapplication.model.RecipeStatus.ACCEPTED, pageable)
-                .map(this::mapToDTO);
+    public Page<RecipeSummaryDTO> getPendingRecipes(Pageable pageable) {
+        return toSummaryPage(recipeRepository.findCardsByStatus(RecipeStatus.PENDING, withCardSort(pageable)));
     }
 
-    public Page<RecipeResponseDTO> getPendingRecipes(Pageable pageable) {
-        return recipeRepository.findByStatus(org.example.recipeapplication.model.RecipeStatus.PENDING, pageable)
-                .map(this::mapToDTO);
+    /**
+     * Popularne przepisy - ranking wg polubień, ocen i komentarzy wygasających z czasem (TrendingService).
+     * Dopóki ranking jest pusty (brak aktywności), zwracane są przepisy z największą liczbą polubień.
+     */
+    public Page<RecipeSummaryDTO> getTrendingRecipes(Pageable pageable) {
+        int total = trendingService.size();
+        if (total == 0) {
+            Pageable byFavorites = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                    Sort.by(Sort.Order.desc("favoritesCount"), Sort.Order.desc("id")));
+            return getAllRecipes(byFavorites);
+        }
+        List<Long> ids = trendingService.topRecipeIds(pageable.getOffset(), pageable.getPageSize());
+        // Ranking obejmuje tylko zaakceptowane przepisy; filtr chroni przed zmianą statusu w trakcie żądania
+        List<RecipeSummaryDTO> recipes = findSummariesInOrder(ids).stream()
+                .filter(recipe -> recipe.status() == RecipeStatus.ACCEPTED)
+                .toList();
+        return new PageImpl<>(recipes, pageable, total);
     }
 
+    @Transactional
     public RecipeResponseDTO changeRecipeStatus(Long recipeId, org.example.recipeapplication.model.RecipeStatus status) {
-        Recipe recipe = recipeRepository.findById(recipeId)
+        Recipe recipe = recipeRepository.findDetailById(recipeId)
                 .orElseThrow(() -> new EntityNotFoundException("Recipe not found"));
         recipe.setStatus(status);
         recipeRepository.save(recipe);
-        return mapToDTO(recipe);
+        recipeSearchIndex.index(recipe);
+        recipeSimilarityIndex.index(recipe);
+        recipeSearchCache.evict(RecipeSearchCache.RecipeSnapshot.of(recipe));
+        if (status != RecipeStatus.ACCEPTED) {
+            trendingService.remove(recipeId);
+        }
+        return cacheDetail(recipe);
     }
 
-    public Page<RecipeResponseDTO> searchRecipes(String search, Pageable pageable) {
+    public Page<RecipeSummaryDTO> searchRecipes(String search, Pageable pageable) {
         // Używamy ulepszonej metody wyszukującej w tytule, opisie i tagach
-        return recipeRepository.searchByTitleOrDescriptionOrTags(search, pageable).map(this::mapToDTO);
+        return toSummaryPage(recipeRepository.searchCards(search, withCardSort(pageable)));
     }
 
-    public Page<RecipeResponseDTO> searchRecipes(String search, Pageable pageable, Long categoryId) {
+    public Page<RecipeSummaryDTO> searchRecipes(String search, Pageable pageable, Long categoryId) {
         if (categoryId == null) {
-            // Sprawdź typ sortowania
-            String sortField = pageable.getSort().iterator().next().getProperty();
-            if (sortField.equals("followersCount")) {
-                // Specjalne sortowanie po liczbie polubień przepisu
-                return recipeRepository.searchByTitleOrDescriptionOrTagsOrderByFollowersCount(
-                        search,
-                        pageable
-                ).map(this::mapToDTO);
-            } else {
-                // Standardowe wyszukiwanie z domyślnym sortowaniem lub po ratingu
-                return recipeRepository.searchByTitleOrDescriptionOrTags(search, pageable).map(this::mapToDTO);
-            }
-        } else {
-            // Z filtrowaniem po kategorii
-            Category category = categoryRepository.findById(categoryId)
-                    .orElseThrow(() -> new EntityNotFoundException("Category not found"));
+            return searchRecipes(search, pageable);
+        }
+        // Z filtrowaniem po kategorii
+        if (!categoryRepository.existsById(categoryId)) {
+            throw new EntityNotFoundException("Category not found");
+        }
+        return toSummaryPage(recipeRepository.searchCardsByCategoryId(search, categoryId, withCardSort(pageable)));
+    }
+
+    /**
+     * Wyszukuje przepisy w wybranym trybie. Tryb FULL_TEXT korzysta z indeksu GIN na kolumnie search_vector
+     * i zwraca wyniki uporządkowane wg trafności (ts_rank); pusta fraza wyszukiwania obsługiwana jest jak w trybie LIKE.
+     * Tryb INDEX dopasowuje, filtruje i sortuje w indeksie w pamięci - z bazy pobierane są tylko przepisy z żądanej strony.
+     * Tryb RELEVANCE korzysta z tego samego indeksu, ale szereguje wyniki wg trafności (BM25).
+     * Dopóki indeks nie zostanie zbudowany po starcie aplikacji, wyszukiwanie odbywa się w trybie LIKE.
+     * Strony wyników zapamiętywane są w RecipeSearchCache.
+     */
+    public Page<RecipeSummaryDTO> searchRecipes(String search, Pageable pageable, Long categoryId, SearchMode mode) {
+        return searchRecipes(search, pageable, categoryId, mode, catalogVersionService.searchETag(categoryId, mode));
+    }
+
+    /**
+     * @param etag ETag wyników wyznaczony dla żądania (zob. {@link CatalogVersionService#searchETag})
+     */
+    public Page<RecipeSummaryDTO> searchRecipes(String search, Pageable pageable, Long categoryId, SearchMode mode,
+                                                String etag) {
+        boolean indexMode = mode == SearchMode.INDEX || mode == SearchMode.RELEVANCE;
+        if (indexMode && !recipeSearchIndex.isReady()) {
+            // Wyniki zastępczego wyszukiwania LIKE nie trafiają do cache pod kluczem trybu indeksu
+            return findRecipes(search, pageable, categoryId, mode);
+        }
+        return recipeSearchCache.get(RecipeSearchCache.Key.of(search, pageable, categoryId, mode), etag,
+                () -> findRecipes(search, pageable, categoryId, mode));
+    }
 
-            // Sprawdź typ sortowania
-            String sortField = pageable.getSort().iterator().next().getProperty();
-            if (sortField.equals("followersCount")) {
-                // Specjalne sortowanie po liczbie polubień przepisu
-                return recipeRepository.searchByTitleOrDescriptionOrTagsAndCategoryOrderByFollowersCount(
-                        search,
-                        category,
-                        pageable
-                ).map(this::mapToDTO);
-            } else {
-                // Standardowe sortowanie lub po ratingu
-                return recipeRepository.searchByTitleOrDescriptionOrTagsAndCategory(search, category, pageable)
-                        .map(this::mapToDTO);
+    private Page<RecipeSummaryDTO> findRecipes(String search, Pageable pageable, Long categoryId, SearchMode mode) {
+        if ((mode == SearchMode.INDEX || mode == SearchMode.RELEVANCE) && recipeSearchIndex.isReady()) {
+            RecipeSearchIndex.SearchHits hits = mode == SearchMode.RELEVANCE
+                    ? recipeSearchIndex.searchByRelevance(search, categoryId, pageable.getOffset(), pageable.getPageSize())
+                    : recipeSearchIndex.search(search, categoryId, pageable.getSort(), pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(findSummariesInOrder(hits.recipeIds()), pageable, hits.total());
+        }
+        if (mode == SearchMode.FULL_TEXT) {
+            String tsQuery = toPrefixTsQuery(search);
+            if (tsQuery != null) {
+                // Kolejność wyznacza ts_rank, więc sortowanie z Pageable jest pomijane
+                Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+                Page<Long> ids = categoryId == null
+                        ? recipeRepository.searchFullTextIds(tsQuery, unsorted)
+                        : recipeRepository.searchFullTextIdsAndCategory(tsQuery, categoryId, unsorted);
+                return new PageImpl<>(findSummariesInOrder(ids.getContent()), pageable, ids.getTotalElements());
             }
         }
+        return searchRecipes(search, pageable, categoryId);
     }
 
+    /**
+     * Wyszukuje przepisy jak {@link #searchRecipes(String, Pageable, Long, SearchMode)} i opcjonalnie zwraca liczby wyników
+     * w podziale na kategorie, popularne tagi i czas przygotowania. Liczby wyznaczane są jednym przejściem po dopasowaniach
+     * w indeksie w pamięci, więc dostępne są w trybach INDEX i RELEVANCE, gdy indeks jest zbudowany.
+     */
+    public RecipeSearchResultDTO searchRecipes(String search, Pageable pageable, Long categoryId, SearchMode mode,
+                                               String etag, boolean withFacets) {
+        Page<RecipeSummaryDTO> results = searchRecipes(search, pageable, categoryId, mode, etag);
+        SearchFacetsDTO facets = null;
+        if (withFacets && (mode == SearchMode.INDEX || mode == SearchMode.RELEVANCE) && recipeSearchIndex.isReady()) {
+            facets = mapToFacetsDTO(recipeSearchIndex.facets(search, categoryId, FACET_TAG_COUNT));
+        }
+        return new RecipeSearchResultDTO(results, facets);
+    }
+
+    private static SearchFacetsDTO mapToFacetsDTO(RecipeSearchIndex.Facets facets) {
+        List<FacetCountDTO> categories = facets.categories().entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(entry -> new FacetCountDTO(entry.getKey().toString(), entry.getValue()))
+                .toList();
+        List<FacetCountDTO> tags = facets.tags().entrySet().stream()
+                .map(entry -> new FacetCountDTO(entry.getKey(), entry.getValue()))
+                .toList();
+        // Wszystkie przedziały w stałej kolejności, również puste
+        List<FacetCountDTO> prepTime = Arrays.stream(PrepTimeBucket.values())
+                .map(bucket -> new FacetCountDTO(bucket.name(), facets.prepTime().getOrDefault(bucket, 0L)))
+                .toList();
+        return new SearchFacetsDTO(categories, tags, prepTime);
+    }
+
+    /**
+     * Zaakceptowane przepisy, które można przygotować z podanych składników - najpierw te, do których mamy wszystko,
+     * potem z jednym, dwoma itd. brakującymi składnikami (najwyżej maxMissing)
+     *
+     * @throws IllegalArgumentException gdy lista składników jest pusta lub zbyt długa albo maxMissing jest spoza zakresu
+     * @throws IllegalStateException gdy indeks przepisów nie został jeszcze zbudowany
+     */
+    public Page<CookableRecipeDTO> getRecipesByIngredients(List<String> ingredients, int maxMissing, Pageable pageable) {
+        if (ingredients == null || ingredients.isEmpty() || ingredients.size() > MAX_AVAILABLE_INGREDIENTS) {
+            throw new IllegalArgumentException("Provide between 1 and " + MAX_AVAILABLE_INGREDIENTS + " ingredients");
+        }
+        if (maxMissing < 0 || maxMissing > MAX_MISSING_INGREDIENTS) {
+            throw new IllegalArgumentException("maxMissing must be between 0 and " + MAX_MISSING_INGREDIENTS);
+        }
+        if (!recipeSearchIndex.isReady()) {
+            throw new IllegalStateException("Recipe index is not ready yet");
+        }
+
+        RecipeSearchIndex.IngredientMatches result = recipeSearchIndex.searchByIngredients(
+                ingredients, maxMissing, pageable.getOffset(), pageable.getPageSize());
+        Map<Long, RecipeSummaryDTO> summariesById = findSummariesInOrder(result.matches().stream()
+                .map(RecipeSearchIndex.IngredientMatch::recipeId)
+                .toList()).stream()
+                .collect(Collectors.toMap(RecipeSummaryDTO::id, Function.identity()));
+        List<CookableRecipeDTO> content = result.matches().stream()
+                .filter(match -> summariesById.containsKey(match.recipeId()))
+                .map(match -> new CookableRecipeDTO(
+                        summariesById.get(match.recipeId()),
+                        match.matchedCount(),
+                        match.ingredientCount(),
+                        match.missingIngredients()))
+                .toList();
+        return new PageImpl<>(content, pageable, result.total());
+    }
+
+    /**
+     * Przepisy podobne do podanego (wspólne tagi i składniki) - kandydaci z indeksu MinHash LSH,
+     * uszeregowani wg podobieństwa Jaccarda
+     *
+     * @return pusty wynik, gdy przepis nie istnieje
+     */
+    public Optional<List<SimilarRecipeDTO>> getSimilarRecipes(Long recipeId, int limit) {
+        if (limit < 1 || limit > MAX_SIMILAR_RECIPES) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_SIMILAR_RECIPES);
+        }
+        if (!recipeSimilarityIndex.isReady()) {
+            throw new IllegalStateException("Similarity index is not ready yet");
+        }
+        Optional<List<RecipeSimilarityIndex.SimilarRecipe>> similar = recipeSimilarityIndex.similar(recipeId, limit);
+        if (similar.isEmpty()) {
+            // Przepis spoza indeksu (oczekujący, bez tagów i składników) nie ma podobnych, ale może istnieć
+            return recipeRepository.existsById(recipeId) ? Optional.of(List.of()) : Optional.empty();
+        }
+        Map<Long, RecipeSummaryDTO> summariesById = findSummariesInOrder(similar.get().stream()
+                .map(RecipeSimilarityIndex.SimilarRecipe::recipeId)
+                .toList()).stream()
+                .collect(Collectors.toMap(RecipeSummaryDTO::id, Function.identity()));
+        return Optional.of(similar.get().stream()
+                .filter(match -> summariesById.containsKey(match.recipeId()))
+                .map(match -> new SimilarRecipeDTO(summariesById.get(match.recipeId()), match.similarity()))
+                .toList());
+    }
+
+    /**
+     * Pobiera karty przepisów o podanych ID zachowując kolejność listy (np. kolejność wyników wyszukiwania).
+     * Niezależnie od liczby przepisów wykonywane są dwa zapytania: karty i tagi.
+     */
+    public List<RecipeSummaryDTO> findSummariesInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, RecipeCardView> cardsById = recipeRepository.findCardsByIdIn(ids).stream()
+                .collect(Collectors.toMap(RecipeCardView::getId, Function.identity()));
+        Map<Long, List<String>> tagsById = findTagsByRecipeIds(ids);
+        return ids.stream()
+                .map(cardsById::get)
+                .filter(Objects::nonNull)
+                .map(card -> mapToSummary(card, tagsById))
+                .toList();
+    }
+
+    /**
+     * Dociąga tagi dla całej strony kart jednym zapytaniem
+     */
+    private Page<RecipeSummaryDTO> toSummaryPage(Page<RecipeCardView> cards) {
+        Map<Long, List<String>> tagsById = findTagsByRecipeIds(
+                cards.getContent().stream().map(RecipeCardView::getId).toList());
+        return cards.map(card -> mapToSummary(card, tagsById));
+    }
+
+    private Map<Long, List<String>> findTagsByRecipeIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return recipeRepository.findTagsByRecipeIdIn(ids).stream()
+                .collect(Collectors.groupingBy(RecipeCardView.TagView::getRecipeId,
+                        Collectors.mapping(RecipeCardView.TagView::getTag, Collectors.toList())));
+    }
+
+    /**
+     * Sortowanie po "followersCount" (parametr używany przez frontend) odpowiada kolumnie favoritesCount
+     */
+    private static Pageable withCardSort(Pageable pageable) {
+        if (pageable.getSort().isUnsorted()) {
+            return pageable;
+        }
+        Sort sort = Sort.by(pageable.getSort().stream()
+                .map(order -> order.getProperty().equals("followersCount") ? order.withProperty("favoritesCount") : order)
+                .toList());
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+    }
+
+    /**
+     * Zamienia frazę użytkownika na zapytanie tsquery, w którym każde słowo dopasowywane jest prefiksowo,
+     * np. "Makaron z serem" -> "makaron:* & z:* & serem:*". Zwraca null, gdy fraza nie zawiera żadnych słów.
+     */
+    private static String toPrefixTsQuery(String search) {
+        if (search == null) {
+            return null;
+        }
+        String query = Arrays.stream(search.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .map(word -> word + ":*")
+                .collect(Collectors.joining(" & "));
+        return query.isEmpty() ? null : query;
+    }
+
+    @Transactional
     public RecipeResponseDTO addRecipe(RecipeRequestDTO dto, String email) {
         // Pobierz użytkownika z bazy
         AppUser author = userRepository.findByEmail(email)
@@ -115,6 +343,7 @@ public class RecipeService {
         recipe.setDateOfCreation(new Timestamp(System.currentTimeMillis()));
         recipe.setRating(0f);
         recipe.setRatingCount(0);
+        recipe.setRatingSum(0L);
         recipe.setFavoritesCount(0);
         recipe.setStatus(org.example.recipeapplication.model.RecipeStatus.PENDING);
 
@@ -124,17 +353,8 @@ public class RecipeService {
                 .orElseThrow(() -> new EntityNotFoundException("Category not found"));
         recipe.setCategory(category);
 
-        // ingredients - map DTO -> entities and save
-        List<Ingredient> ingredients = dto.ingredients().stream()
-                .map(ingredientDTO -> {
-                    Ingredient ing = new Ingredient();
-                    ing.setName(ingredientDTO.name());
-                    ing.setAmount(ingredientDTO.amount());
-                    ing.setUnit(ingredientDTO.unit());
-                    return ingredientRepository.save(ing);
-                }).toList();
-
-        recipe.setIngredients(ingredients);
+        // Składniki wskazują pozycje słownika - brakujące zostaną do niego dodane
+        recipeIngredientService.replaceIngredients(recipe, dto.ingredients());
 
         // Dodawanie tagów do przepisu, analogicznie jak przy aktualizacji
         if (dto.tags() != null) {
@@ -142,6 +362,10 @@ public class RecipeService {
         }
 
         Recipe saved = recipeRepository.save(recipe);
+        recipeSearchIndex.index(saved);
+        recipeSimilarityIndex.index(saved);
+        // Wyszukiwanie LIKE nie filtruje po statusie, więc nowy przepis może od razu pojawić się w wynikach
+        recipeSearchCache.evict(RecipeSearchCache.RecipeSnapshot.of(saved));
         return mapToDTO(saved);
     }
 
@@ -177,9 +401,10 @@ public class RecipeService {
     /**
      * Aktualizuje zdjęcie główne dla istniejącego przepisu
      */
+    @Transactional
     public RecipeResponseDTO updateRecipeImage(Long recipeId, MultipartFile imageFile, String email) {
         // Sprawdzamy, czy przepis istnieje i czy użytkownik ma uprawnienia
-        Recipe recipe = recipeRepository.findById(recipeId)
+        Recipe recipe = recipeRepository.findDetailById(recipeId)
                 .orElseThrow(() -> new EntityNotFoundException("Recipe not found with id: " + recipeId));
 
         // Sprawdzamy czy zalogowany użytkownik jest autorem przepisu
@@ -198,7 +423,8 @@ public class RecipeService {
             recipe.setMainImageUrl(imageUrl);
             recipe.setDateOfModification(new Timestamp(System.currentTimeMillis()));
             Recipe updatedRecipe = recipeRepository.save(recipe);
-            return mapToDTO(updatedRecipe);
+            recipeSearchCache.evict(RecipeSearchCache.RecipeSnapshot.of(updatedRecipe));
+            return cacheDetail(updatedRecipe);
         } else {
             throw new IllegalArgumentException("Image file cannot be empty");
         }
@@ -213,9 +439,10 @@ public class RecipeService {
      * @throws EntityNotFoundException gdy przepis nie istnieje
      * @throws SecurityException gdy użytkownik nie ma uprawnień do edycji przepisu
      */
+    @Transactional
     public RecipeResponseDTO updateRecipe(Long id, RecipeRequestDTO dto, String email) {
         // Pobierz przepis z bazy
-        Recipe recipe = recipeRepository.findById(id)
+        Recipe recipe = recipeRepository.findForEditById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Recipe not found with id: " + id));
 
         // Pobierz użytkownika, aby sprawdzi�� jego rolę
@@ -230,6 +457,7 @@ public class RecipeService {
         if (!isAuthor && !isAdmin) {
             throw new SecurityException("You are not authorized to update this recipe");
         }
+        RecipeSearchCache.RecipeSnapshot before = RecipeSearchCache.RecipeSnapshot.of(recipe);
 
         // Aktualizuj podstawowe pola
         recipe.setTitle(dto.title());
@@ -251,25 +479,9 @@ public class RecipeService {
             recipe.setCategory(category);
         }
 
-        // Usuń stare składniki i dodaj nowe
+        // Zastąp składniki przepisu - pozycje słownika pozostają, usuwane są tylko powiązania z przepisem
         if (dto.ingredients() != null && !dto.ingredients().isEmpty()) {
-            // Usuń stare relacje ze sk��adnikami
-            if (recipe.getIngredients() != null) {
-                // Nie usuwamy samych składników z bazy, tylko odłączamy je od przepisu
-                recipe.setIngredients(null);
-            }
-
-            // Dodaj nowe składniki
-            List<Ingredient> ingredients = dto.ingredients().stream()
-                    .map(ingredientDTO -> {
-                        Ingredient ing = new Ingredient();
-                        ing.setName(ingredientDTO.name());
-                        ing.setAmount(ingredientDTO.amount());
-                        ing.setUnit(ingredientDTO.unit());
-                        return ingredientRepository.save(ing);
-                    }).toList();
-
-            recipe.setIngredients(ingredients);
+            recipeIngredientService.replaceIngredients(recipe, dto.ingredients());
         }
 
         // Aktualizuj tagi, jeśli podano
@@ -280,9 +492,16 @@ public class RecipeService {
 
         // Zapisz zaktualizowany przepis
         Recipe saved = recipeRepository.save(recipe);
-        return mapToDTO(saved);
+        recipeSearchIndex.index(saved);
+        recipeSimilarityIndex.index(saved);
+        recipeSearchCache.evict(before, RecipeSearchCache.RecipeSnapshot.of(saved));
+        return cacheDetail(saved);
     }
 
+    /**
+     * Wymaga otwartej sesji - tagi, składniki i komentarze są ładowane leniwie
+     * (przepis najlepiej pobrać grafem Recipe.GRAPH_DETAIL lub Recipe.GRAPH_EDIT)
+     */
     private RecipeResponseDTO mapToDTO(Recipe recipe) {
         return new RecipeResponseDTO(
                 recipe.getId(),
@@ -309,8 +528,8 @@ public class RecipeService {
                 recipe.getTags() != null ? recipe.getTags() : List.of(),
                 recipe.getIngredients() != null ? recipe.getIngredients().stream()
                         .map(ing -> new IngredientResponseDTO(
-                                ing.getId(),
-                                ing.getName(),
+                                ing.getIngredient().getId(),
+                                ing.getIngredient().getName(),
                                 ing.getAmount(),
                                 ing.getUnit()))
                         .collect(Collectors.toList()) : List.of(),
@@ -338,20 +557,139 @@ public class RecipeService {
         );
     }
 
-    public Page<RecipeResponseDTO> getRecipesByCategory(Long categoryId, Pageable pageable) {
-        Category category = categoryRepository.findById(categoryId)
-                .orElseThrow(() -> new EntityNotFoundException("Category not found"));
-        return recipeRepository.findByCategory(category, pageable).map(this::mapToDTO);
+    private RecipeSummaryDTO mapToSummary(RecipeCardView card, Map<Long, List<String>> tagsById) {
+        return new RecipeSummaryDTO(
+                card.getId(),
+                card.getTitle(),
+                card.getRating(),
+                card.getRatingCount() != null ? card.getRatingCount() : 0,
+                card.getRatingScore(),
+                card.getFavoritesCount() != null ? card.getFavoritesCount() : 0,
+                card.getCommentsCount() != null ? card.getCommentsCount() : 0L,
+                card.getMainImageUrl(),
+                card.getEstimatedTimeToPrepare(),
+                new RecipeAuthorDTO(
+                        card.getAuthorId(),
+                        card.getAuthorFirstName(),
+                        card.getAuthorLastName(),
+                        card.getAuthorProfilePicture()
+                ),
+                card.getDateOfCreation() != null ? card.getDateOfCreation().toLocalDateTime() : null,
+                card.getStatus(),
+                card.getCategoryId(),
+                tagsById.getOrDefault(card.getId(), List.of())
+        );
+    }
+
+    public Page<RecipeSummaryDTO> getRecipesByCategory(Long categoryId, Pageable pageable) {
+        if (!categoryRepository.existsById(categoryId)) {
+            throw new EntityNotFoundException("Category not found");
+        }
+        return toSummaryPage(recipeRepository.findCardsByCategoryId(categoryId, withCardSort(pageable)));
+    }
+
+    public Page<RecipeSummaryDTO> getUserRecipes(Long userId, Pageable pageable) {
+        if (!userRepository.existsById(userId)) {
+            throw new EntityNotFoundException("User not found");
+        }
+        return toSummaryPage(recipeRepository.findCardsByAuthorId(userId, withCardSort(pageable)));
+    }
+
+    /**
+     * Lista zaakceptowanych przepisów stronicowana kursorem (opcjonalnie z jednej kategorii).
+     * Kolejna strona zaczyna się za ostatnim przepisem poprzedniej - bez OFFSET i bez zliczania wszystkich wierszy.
+     *
+     * @param sortBy dateOfCreation (domyślnie), rating lub ratingScore (średnia bayesowska), zawsze malejąco
+     * @param cursor token z poprzedniej strony lub null dla pierwszej strony
+     * @throws IllegalArgumentException gdy kursor jest nieprawidłowy
+     */
+    public CursorPageDTO<RecipeSummaryDTO> getAllRecipesAfterCursor(String sortBy, String cursor, int size) {
+        RecipeCursor.SortKey sortKey = RecipeCursor.SortKey.fromSortBy(sortBy);
+        return fetchAfterCursor(RecipeCursor.decode(cursor, sortKey), size, (after, limit) ->
+                switch (sortKey) {
+                    case RATING -> recipeRepository.findIdsAcceptedByRatingAfterCursor(after.rating(), after.id(), limit);
+                    case SCORE -> recipeRepository.findIdsAcceptedByScoreAfterCursor(after.score(), after.id(), limit);
+                    case DATE_OF_CREATION -> recipeRepository.findIdsAcceptedByDateAfterCursor(after.dateOfCreation(), after.id(), limit);
+                });
     }
 
-    public Page<RecipeResponseDTO> getUserRecipes(Long userId, Pageable pageable) {
-        AppUser user = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        return recipeRepository.findByAuthor(user, pageable).map(this::mapToDTO);
+    public CursorPageDTO<RecipeSummaryDTO> getRecipesByCategoryAfterCursor(Long categoryId, String sortBy, String cursor, int size) {
+        if (!categoryRepository.existsById(categoryId)) {
+            throw new EntityNotFoundException("Category not found");
+        }
+        RecipeCursor.SortKey sortKey = RecipeCursor.SortKey.fromSortBy(sortBy);
+        return fetchAfterCursor(RecipeCursor.decode(cursor, sortKey), size, (after, limit) ->
+                switch (sortKey) {
+                    case RATING -> recipeRepository.findIdsByCategoryAndRatingAfterCursor(categoryId, after.rating(), after.id(), limit);
+                    case SCORE -> recipeRepository.findIdsByCategoryAndScoreAfterCursor(categoryId, after.score(), after.id(), limit);
+                    case DATE_OF_CREATION -> recipeRepository.findIdsByCategoryAndDateAfterCursor(categoryId, after.dateOfCreation(), after.id(), limit);
+                });
     }
 
+    public CursorPageDTO<RecipeSummaryDTO> getUserRecipesAfterCursor(Long userId, String sortBy, String cursor, int size) {
+        if (!userRepository.existsById(userId)) {
+            throw new EntityNotFoundException("User not found");
+        }
+        RecipeCursor.SortKey sortKey = RecipeCursor.SortKey.fromSortBy(sortBy);
+        return fetchAfterCursor(RecipeCursor.decode(cursor, sortKey), size, (after, limit) ->
+                switch (sortKey) {
+                    case RATING -> recipeRepository.findIdsByAuthorAndRatingAfterCursor(userId, after.rating(), after.id(), limit);
+                    case SCORE -> recipeRepository.findIdsByAuthorAndScoreAfterCursor(userId, after.score(), after.id(), limit);
+                    case DATE_OF_CREATION -> recipeRepository.findIdsByAuthorAndDateAfterCursor(userId, after.dateOfCreation(), after.id(), limit);
+                });
+    }
+
+    public CursorPageDTO<RecipeSummaryDTO> getMyRecipesAfterCursor(String email, String sortBy, String cursor, int size) {
+        AppUser user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new EntityNotFoundException("User not found with email: " + email));
+        return getUserRecipesAfterCursor(user.getId(), sortBy, cursor, size);
+    }
+
+    /**
+     * Pobiera o jeden wiersz więcej niż rozmiar strony - jego obecność oznacza, że istnieje następna strona
+     */
+    private CursorPageDTO<RecipeSummaryDTO> fetchAfterCursor(RecipeCursor after, int size,
+                                                             BiFunction<RecipeCursor, Integer, List<Long>> query) {
+        int pageSize = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        List<Long> ids = query.apply(after, pageSize + 1);
+        boolean hasNext = ids.size() > pageSize;
+        List<RecipeSummaryDTO> page = findSummariesInOrder(hasNext ? ids.subList(0, pageSize) : ids);
+        String nextCursor = hasNext && !page.isEmpty()
+                ? RecipeCursor.after(page.get(page.size() - 1), after.sortKey()).encode()
+                : null;
+        return new CursorPageDTO<>(page, nextCursor, nextCursor != null);
+    }
+
+    /**
+     * Szczegóły przepisu z cache. Przy braku wpisu przepis ładowany jest w osobnej transakcji tylko do odczytu,
+     * żeby żądania czekające na to samo ładowanie nie trzymały otwartych połączeń z bazą.
+     */
     public Optional<RecipeResponseDTO> getRecipeById(Long id) {
-        return recipeRepository.findById(id).map(this::mapToDTO);
+        return getRecipeById(id, catalogVersionService.recipeETag(id));
+    }
+
+    /**
+     * @param etag ETag przepisu wyznaczony dla żądania (zob. {@link CatalogVersionService#recipeETag})
+     */
+    public Optional<RecipeResponseDTO> getRecipeById(Long id, String etag) {
+        return recipeDetailCache.get(id, etag, this::loadRecipeDetail);
+    }
+
+    /**
+     * Mapuje zapisany przepis i zapisuje go w cache szczegółów po zatwierdzeniu transakcji. ETag wyznaczany jest
+     * w tej transakcji po wysłaniu zmian do bazy, więc odpowiada dokładnie zapisanemu DTO.
+     */
+    private RecipeResponseDTO cacheDetail(Recipe recipe) {
+        recipeRepository.flush();
+        RecipeResponseDTO dto = mapToDTO(recipe);
+        recipeDetailCache.put(catalogVersionService.recipeETag(recipe.getId()), dto);
+        return dto;
+    }
+
+    private Optional<RecipeResponseDTO> loadRecipeDetail(Long id) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> recipeRepository.findDetailById(id).map(this::mapToDTO));
     }
 
     @Transactional
@@ -371,6 +709,7 @@ public class RecipeService {
         if (!isAuthor && !isAdmin) {
             throw new SecurityException("You are not authorized to delete this recipe.");
         }
+        RecipeSearchCache.RecipeSnapshot snapshot = RecipeSearchCache.RecipeSnapshot.of(recipe);
 
         // Pobierz wszystkie komentarze powiązane z przepisem
         List<Comment> comments = commentRepository.findByRecipeId(id);
@@ -388,12 +727,20 @@ public class RecipeService {
         ratingRepository.deleteByRecipeId(id);
 
         // Na końcu usuń przepis
+        recipeIngredientService.recipeDeleted(recipe);
         recipeRepository.delete(recipe);
+        TransactionUtils.afterCommit(() -> {
+            recipeSearchIndex.remove(id);
+            recipeSimilarityIndex.remove(id);
+        });
+        // Cache i wersje odświeżane są po zmianie indeksu, żeby nie zapamiętać wyników sprzed usunięcia
+        recipeSearchCache.evict(snapshot);
+        recipeDetailCache.evict(id);
+        trendingService.remove(id);
     }
 
-    public Page<RecipeResponseDTO> getMyRecipes(String email, Pageable pageable) {
-        return recipeRepository.findByAuthor_Email(email, pageable)
-                .map(this::mapToDTO);
+    public Page<RecipeSummaryDTO> getMyRecipes(String email, Pageable pageable) {
+        return toSummaryPage(recipeRepository.findCardsByAuthorEmail(email, withCardSort(pageable)));
     }
 
     public Map<String, Object> getRecipeComments(Long recipeId, Pageable pageable) {
@@ -0,0 +1,315 @@
+package org.example.recipeapplication.service;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.RecipeIngredient;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.example.recipeapplication.repos.RecipeRepository;
+import org.example.recipeapplication.util.TextNormalizer;
+import org.example.recipeapplication.util.TransactionUtils;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indeks podobnych przepisów (MinHash + LSH) trzymany w pamięci. Przepis opisany jest zbiorem cech: tagów
+ * i znormalizowanych nazw składników. Sygnatura MinHash (NUM_HASHES minimów) dzielona jest na BANDS pasm;
+ * przepisy o tym samym skrócie choć jednego pasma trafiają do wspólnego kubełka i są kandydatami na podobne -
+ * prawdopodobieństwo zależy od podobieństwa Jaccarda zbiorów cech (próg ok. (1/BANDS)^(1/ROWS) ≈ 0.29).
+ * Kandydaci szeregowani są wg dokładnego podobieństwa Jaccarda. Indeksowane są wyłącznie przepisy zaakceptowane;
+ * indeks aktualizowany jest przyrostowo przez RecipeService.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecipeSimilarityIndex {
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+    static final int BANDS = 40;
+    static final int ROWS = 3;
+    private static final int NUM_HASHES = BANDS * ROWS;
+    // Górna granica liczby kandydatów oceniana dla jednego zapytania (kubełki popularnych cech bywają duże)
+    private static final int MAX_CANDIDATES = 5000;
+    private static final long[] SEEDS = new SplittableRandom(0x5EED_CAFEL).longs(NUM_HASHES).toArray();
+
+    private final RecipeRepository recipeRepository;
+    private final EntityManager entityManager;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Skrót pasma (z numerem pasma) -> przepisy, których sygnatura ma w tym paśmie takie wartości
+    private final Map<Long, RoaringBitmap> buckets = new HashMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    // Przepisy zmienione przyrostowo w trakcie przebudowy (null poza przebudową) - przebudowa ich nie dodaje
+    private Set<Integer> changedDuringRebuild;
+
+    private volatile boolean ready;
+
+    /**
+     * Przepis w indeksie: posortowane skróty cech (do dokładnego Jaccarda) i skróty pasm sygnatury
+     */
+    record Document(int id, long[] features, long[] bandKeys) {}
+
+    /**
+     * Podobny przepis wraz z podobieństwem Jaccarda zbiorów cech (0-1]
+     */
+    public record SimilarRecipe(long recipeId, double similarity) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        ready = false;
+        lock.writeLock().lock();
+        try {
+            buckets.clear();
+            documents.clear();
+            changedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            recipeRepository.forEachBatchByStatus(RecipeStatus.ACCEPTED, REBUILD_BATCH_SIZE, recipes -> {
+                List<Document> batch = recipes.stream().map(RecipeSimilarityIndex::toDocument).toList();
+                entityManager.clear();
+                lock.writeLock().lock();
+                try {
+                    batch.stream()
+                            .filter(document -> document.features().length > 0)
+                            .filter(document -> !changedDuringRebuild.contains(document.id()))
+                            .forEach(this::addInternal);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            });
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        ready = true;
+        log.info("Zbudowano indeks podobnych przepisów: {} przepisów, {} kubełków, {} ms",
+                documents.size(), buckets.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Dodaje lub odświeża przepis w indeksie; przepisy o statusie innym niż ACCEPTED są z indeksu usuwane.
+     * Cechy wyznaczane są od razu (tagi i składniki wymagają otwartej sesji), a indeks zmieniany po zatwierdzeniu
+     * transakcji.
+     */
+    public void index(Recipe recipe) {
+        Long recipeId = recipe.getId();
+        if (recipe.getStatus() != RecipeStatus.ACCEPTED) {
+            TransactionUtils.afterCommit(() -> remove(recipeId));
+            return;
+        }
+        Document document = toDocument(recipe);
+        TransactionUtils.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                markChanged(document.id());
+                removeInternal(document.id());
+                if (document.features().length > 0) {
+                    addInternal(document);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void remove(Long recipeId) {
+        lock.writeLock().lock();
+        try {
+            markChanged(Math.toIntExact(recipeId));
+            removeInternal(Math.toIntExact(recipeId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Wywoływane pod blokadą zapisu
+    private void markChanged(int id) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(id);
+        }
+    }
+
+    /**
+     * Przepisy najbardziej podobne do podanego, od najbardziej podobnych
+     *
+     * @return pusty wynik, gdy przepisu nie ma w indeksie (nie jest zaakceptowany lub nie ma tagów ani składników)
+     */
+    public Optional<List<SimilarRecipe>> similar(Long recipeId, int limit) {
+        lock.readLock().lock();
+        try {
+            Document document = documents.get(Math.toIntExact(recipeId));
+            if (document == null) {
+                return Optional.empty();
+            }
+            RoaringBitmap candidates = new RoaringBitmap();
+            for (long bandKey : document.bandKeys()) {
+                RoaringBitmap bucket = buckets.get(bandKey);
+                if (bucket != null) {
+                    candidates.or(bucket);
+                }
+                if (candidates.getLongCardinality() > MAX_CANDIDATES) {
+                    break;
+                }
+            }
+            candidates.remove(document.id());
+
+            List<SimilarRecipe> scored = new ArrayList<>();
+            candidates.forEach((int candidateId) -> {
+                double similarity = jaccard(document.features(), documents.get(candidateId).features());
+                if (similarity > 0) {
+                    scored.add(new SimilarRecipe(candidateId, similarity));
+                }
+            });
+            scored.sort(Comparator.comparingDouble(SimilarRecipe::similarity).reversed()
+                    .thenComparingLong(SimilarRecipe::recipeId));
+            return Optional.of(scored.size() > limit ? List.copyOf(scored.subList(0, limit)) : scored);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addInternal(Document document) {
+        documents.put(document.id(), document);
+        for (long bandKey : document.bandKeys()) {
+            buckets.computeIfAbsent(bandKey, key -> new RoaringBitmap()).add(document.id());
+        }
+    }
+
+    private void removeInternal(int recipeId) {
+        Document document = documents.remove(recipeId);
+        if (document == null) {
+            return;
+        }
+        for (long bandKey : document.bandKeys()) {
+            RoaringBitmap bucket = buckets.get(bandKey);
+            if (bucket != null) {
+                bucket.remove(recipeId);
+                if (bucket.isEmpty()) {
+                    buckets.remove(bandKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * Wymaga otwartej sesji - tagi i składniki ładowane są leniwie
+     */
+    static Document toDocument(Recipe recipe) {
+        List<String> features = new ArrayList<>();
+        if (recipe.getTags() != null) {
+            recipe.getTags().stream()
+                    .map(TextNormalizer::normalize)
+                    .map(String::trim)
+                    .filter(tag -> !tag.isEmpty())
+                    .forEach(tag -> features.add("t:" + tag));
+        }
+        if (recipe.getIngredients() != null) {
+            for (RecipeIngredient recipeIngredient : recipe.getIngredients()) {
+                features.add("i:" + RecipeIngredientService.normalizedName(recipeIngredient.getIngredient().getName()));
+            }
+        }
+        long[] hashes = features.stream().mapToLong(RecipeSimilarityIndex::hash).sorted().distinct().toArray();
+        return new Document(Math.toIntExact(recipe.getId()), hashes, bandKeys(hashes));
+    }
+
+    private static long[] bandKeys(long[] features) {
+        if (features.length == 0) {
+            return new long[0];
+        }
+        long[] signature = new long[NUM_HASHES];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (long feature : features) {
+            for (int i = 0; i < NUM_HASHES; i++) {
+                signature[i] = Math.min(signature[i], mix(feature ^ SEEDS[i]));
+            }
+        }
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long key = band;
+            for (int row = 0; row < ROWS; row++) {
+                key = mix(key * 31 + signature[band * ROWS + row]);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * Podobieństwo Jaccarda dwóch posortowanych zbiorów
+     */
+    static double jaccard(long[] a, long[] b) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = a.length + b.length - common;
+        return union == 0 ? 0 : (double) common / union;
+    }
+
+    // 64-bitowy skrót FNV-1a cechy, wymieszany dla równomiernego rozkładu bitów
+    private static long hash(String feature) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : feature.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // Funkcja mieszająca ze SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
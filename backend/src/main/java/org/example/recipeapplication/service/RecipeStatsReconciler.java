@@ -0,0 +1,202 @@
+package org.example.recipeapplication.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Okresowo porównuje liczniki przepisów z tabelami źródłowymi i poprawia rozbieżności: liczniki ocen
+ * (rating_sum, rating_count, rating, histogram) z tabelą rating, a liczbę polubień z tabelą followed_recipe.
+ * Przepisy przeglądane są paczkami (app.recipes.reconcile.batch-size) w osobnych transakcjach, z wyłączeniem
+ * przebiegów RatingAggregationService i FavoritesCounterService - ocena lub obserwacja i jej wiersz w outboxie
+ * zatwierdzane są razem, więc zapytanie liczące widzi albo oba, albo żadnego, a zmiany czekające w outboxie
+ * są odejmowane od stanu tabel źródłowych.
+ * Liczba poprawionych przepisów publikowana jest jako metryka recipe.stats.reconciled (tag counter).
+ */
+@Slf4j
+@Service
+public class RecipeStatsReconciler {
+
+    // FOR NO KEY UPDATE wystarcza do wykluczenia równoległych UPDATE liczników, a nie blokuje blokad KEY SHARE,
+    // które zakładają klucze obce przy wstawianiu ocen, komentarzy i polubień
+    private static final String LOCK_BATCH = "SELECT id FROM recipe WHERE id > ? ORDER BY id LIMIT ? FOR NO KEY UPDATE";
+
+    // Oczekiwany histogram to stan tabeli ocen bez zmian, które czekają jeszcze w outboxie RatingAggregationService;
+    // suma i liczba ocen wynikają z histogramu
+    private static final String RECONCILE_RATINGS = """
+            WITH pending AS (
+                SELECT recipe_id,
+                       COUNT(*) FILTER (WHERE new_value = 1) - COUNT(*) FILTER (WHERE previous_value = 1) AS c1,
+                       COUNT(*) FILTER (WHERE new_value = 2) - COUNT(*) FILTER (WHERE previous_value = 2) AS c2,
+                       COUNT(*) FILTER (WHERE new_value = 3) - COUNT(*) FILTER (WHERE previous_value = 3) AS c3,
+                       COUNT(*) FILTER (WHERE new_value = 4) - COUNT(*) FILTER (WHERE previous_value = 4) AS c4,
+                       COUNT(*) FILTER (WHERE new_value = 5) - COUNT(*) FILTER (WHERE previous_value = 5) AS c5
+                FROM rating_aggregate_outbox
+                WHERE recipe_id = ANY (?)
+                GROUP BY recipe_id
+            ), counted AS (
+                SELECT recipe_id,
+                       COUNT(*) FILTER (WHERE value = 1) AS c1, COUNT(*) FILTER (WHERE value = 2) AS c2,
+                       COUNT(*) FILTER (WHERE value = 3) AS c3, COUNT(*) FILTER (WHERE value = 4) AS c4,
+                       COUNT(*) FILTER (WHERE value = 5) AS c5
+                FROM rating
+                WHERE recipe_id = ANY (?)
+                GROUP BY recipe_id
+            ), histogram AS (
+                SELECT r.id,
+                       COALESCE(c.c1, 0) - COALESCE(p.c1, 0) AS c1, COALESCE(c.c2, 0) - COALESCE(p.c2, 0) AS c2,
+                       COALESCE(c.c3, 0) - COALESCE(p.c3, 0) AS c3, COALESCE(c.c4, 0) - COALESCE(p.c4, 0) AS c4,
+                       COALESCE(c.c5, 0) - COALESCE(p.c5, 0) AS c5
+                FROM recipe r
+                LEFT JOIN counted c ON c.recipe_id = r.id
+                LEFT JOIN pending p ON p.recipe_id = r.id
+                WHERE r.id = ANY (?)
+            ), actual AS (
+                SELECT h.*, c1 + c2 + c3 + c4 + c5 AS cnt, c1 + 2 * c2 + 3 * c3 + 4 * c4 + 5 * c5 AS total
+                FROM histogram h
+            )
+            UPDATE recipe r SET rating_sum = a.total, rating_count = a.cnt,
+                rating = CASE WHEN a.cnt > 0 THEN a.total::real / a.cnt END,
+                rating1_count = a.c1, rating2_count = a.c2, rating3_count = a.c3, rating4_count = a.c4, rating5_count = a.c5
+            FROM actual a
+            WHERE r.id = a.id
+              AND (r.rating_sum, r.rating_count, r.rating1_count, r.rating2_count, r.rating3_count, r.rating4_count,
+                   r.rating5_count) IS DISTINCT FROM (a.total, a.cnt, a.c1, a.c2, a.c3, a.c4, a.c5)
+            RETURNING r.id, r.rating, r.favorites_count
+            """;
+
+    // Oczekiwana liczba polubień to liczba obserwacji bez zmian czekających w outboxie FavoritesCounterService
+    private static final String RECONCILE_FAVORITES = """
+            WITH pending AS (
+                SELECT recipe_id, SUM(delta) AS delta
+                FROM favorites_outbox
+                WHERE recipe_id = ANY (?)
+                GROUP BY recipe_id
+            ), actual AS (
+                SELECT r.id,
+                       (SELECT COUNT(*) FROM followed_recipe f WHERE f.recipe_id = r.id) - COALESCE(p.delta, 0) AS cnt
+                FROM recipe r
+                LEFT JOIN pending p ON p.recipe_id = r.id
+                WHERE r.id = ANY (?)
+            )
+            UPDATE recipe r SET favorites_count = a.cnt
+            FROM actual a
+            WHERE r.id = a.id AND r.favorites_count IS DISTINCT FROM a.cnt
+            RETURNING r.id, r.rating, r.favorites_count
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipeDetailCache recipeDetailCache;
+    private final int batchSize;
+    private final Counter reconciledRatings;
+    private final Counter reconciledFavorites;
+
+    public RecipeStatsReconciler(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 RecipeSearchIndex recipeSearchIndex,
+                                 RecipeDetailCache recipeDetailCache,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.recipes.reconcile.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.recipeSearchIndex = recipeSearchIndex;
+        this.recipeDetailCache = recipeDetailCache;
+        this.batchSize = batchSize;
+        this.reconciledRatings = Counter.builder("recipe.stats.reconciled")
+                .tag("counter", "ratings")
+                .description("Przepisy, których liczniki ocen różniły się od tabeli ocen")
+                .register(meterRegistry);
+        this.reconciledFavorites = Counter.builder("recipe.stats.reconciled")
+                .tag("counter", "favorites")
+                .description("Przepisy, których liczba polubień różniła się od tabeli obserwowanych przepisów")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.recipes.reconcile.interval-ms:3600000}",
+               initialDelayString = "${app.recipes.reconcile.interval-ms:3600000}")
+    public void reconcile() {
+        try {
+            long fixed = run();
+            if (fixed > 0) {
+                log.warn("Poprawiono liczniki {} przepisów", fixed);
+            }
+        } catch (Exception e) {
+            // Pozostałe przepisy zostaną sprawdzone przy następnym przebiegu
+            log.error("Nie udało się uzgodnić liczników przepisów: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Jeden przebieg po wszystkich przepisach
+     *
+     * @return liczba poprawek (przepis z poprawionymi licznikami ocen i polubień liczony jest dwa razy)
+     */
+    long run() {
+        record Fixed(long id, Float rating, Integer favoritesCount) {}
+        record Batch(long lastId, List<Fixed> ratings, List<Fixed> favorites) {}
+        RowMapper<Fixed> fixedMapper = (rs, rowNum) -> new Fixed(rs.getLong("id"), rs.getObject("rating", Float.class),
+                rs.getObject("favorites_count", Integer.class));
+        long total = 0;
+        long lastId = 0;
+        while (true) {
+            long after = lastId;
+            Batch batch = transactionTemplate.execute(status -> {
+                // Czeka na zakończenie przebiegów, które właśnie nanoszą zmiany z outboxów
+                long[] locks = {RatingAggregationService.AGGREGATES_LOCK, FavoritesCounterService.FAVORITES_LOCK};
+                for (long lock : locks) {
+                    jdbcTemplate.query("SELECT pg_advisory_xact_lock(?)", rs -> {}, lock);
+                }
+                List<Long> ids = jdbcTemplate.queryForList(LOCK_BATCH, Long.class, after, batchSize);
+                if (ids.isEmpty()) {
+                    return null;
+                }
+                List<Fixed> ratings = jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(RECONCILE_RATINGS);
+                    Array recipeIds = con.createArrayOf("bigint", ids.toArray());
+                    ps.setArray(1, recipeIds);
+                    ps.setArray(2, recipeIds);
+                    ps.setArray(3, recipeIds);
+                    return ps;
+                }, fixedMapper);
+                List<Fixed> favorites = jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(RECONCILE_FAVORITES);
+                    Array recipeIds = con.createArrayOf("bigint", ids.toArray());
+                    ps.setArray(1, recipeIds);
+                    ps.setArray(2, recipeIds);
+                    return ps;
+                }, fixedMapper);
+                return new Batch(ids.get(ids.size() - 1), ratings, favorites);
+            });
+            if (batch == null) {
+                return total;
+            }
+            // Lista polubień jest późniejsza - zawiera oba poprawione liczniki
+            Set<Long> fixedIds = new HashSet<>();
+            for (List<Fixed> fixedList : List.of(batch.ratings(), batch.favorites())) {
+                for (Fixed fixed : fixedList) {
+                    recipeSearchIndex.updateStats(fixed.id(), fixed.rating(), fixed.favoritesCount());
+                    fixedIds.add(fixed.id());
+                }
+            }
+            recipeDetailCache.evict(fixedIds);
+            reconciledRatings.increment(batch.ratings().size());
+            reconciledFavorites.increment(batch.favorites().size());
+            total += batch.ratings().size() + batch.favorites().size();
+            lastId = batch.lastId();
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package org.example.recipeapplication.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.example.recipeapplication.util.TransactionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ranking popularnych przepisów: każde polubienie, ocena i komentarz zwiększa wynik przepisu,
+ * a wynik wygasa wykładniczo z czasem (okres półtrwania app.trending.half-life-hours).
+ *
+ * Wyniki przechowywane są względem stałego punktu odniesienia (forward decay): zdarzenie z chwili t ma wagę
+ * w * e^(λ(t - landmark)). Upływ czasu zmniejsza wszystkie wyniki w tym samym stopniu, więc kolejność w rankingu
+ * zmienia się tylko przy nowych zdarzeniach i nie wymaga przeliczania. Ranking jest okresowo zapisywany
+ * do tabeli recipe_trending_score, z której odtwarzany jest po restarcie.
+ * Ranking obejmuje tylko zaakceptowane przepisy - aktywność przy pozostałych nie jest liczona, a przepis,
+ * któremu cofnięto akceptację, usuwany jest z rankingu. Strony rankingu są więc pełne, a jego rozmiar zgodny
+ * z liczbą przepisów, które można wyświetlić.
+ */
+@Slf4j
+@Service
+public class TrendingService {
+
+    static final double FOLLOW_WEIGHT = 3.0;
+    static final double COMMENT_WEIGHT = 1.0;
+    // Mnożona przez wartość oceny (1-5)
+    static final double RATING_WEIGHT = 0.5;
+
+    // Przepisy, których aktualny wynik spadł poniżej progu, usuwane są z rankingu przy zapisie
+    private static final double MIN_SCORE = 0.01;
+    // Po przekroczeniu tego wykładnika wyniki są przeliczane względem nowego punktu odniesienia (ochrona przed przepełnieniem)
+    private static final double MAX_LANDMARK_EXPONENT = 50.0;
+    // Przy pierwszym uruchomieniu ranking budowany jest ze zdarzeń z tylu okresów półtrwania wstecz
+    private static final int BOOTSTRAP_HALF_LIVES = 10;
+    private static final int CHECKPOINT_BATCH_SIZE = 500;
+
+    private static final Comparator<Entry> RANKING_ORDER = Comparator.comparingDouble(Entry::score).reversed()
+            .thenComparing(Comparator.comparingLong(Entry::recipeId).reversed());
+
+    private final JdbcTemplate jdbcTemplate;
+    // Współczynnik wygasania na milisekundę
+    private final double decayRate;
+
+    private final Map<Long, Double> scores = new HashMap<>();
+    private final TreeSet<Entry> ranking = new TreeSet<>(RANKING_ORDER);
+    // Przepisy zmienione od ostatniego zapisu do tabeli
+    private final Set<Long> dirty = new HashSet<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long landmark = System.currentTimeMillis();
+
+    public TrendingService(JdbcTemplate jdbcTemplate,
+                           @Value("${app.trending.half-life-hours:48}") double halfLifeHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.decayRate = Math.log(2) / (halfLifeHours * 3_600_000);
+    }
+
+    record Entry(long recipeId, double score) {
+    }
+
+    public void recordFollow(Recipe recipe) {
+        recordAfterCommit(recipe, FOLLOW_WEIGHT);
+    }
+
+    public void recordRating(Recipe recipe, int value) {
+        recordAfterCommit(recipe, RATING_WEIGHT * value);
+    }
+
+    public void recordComment(Recipe recipe) {
+        recordAfterCommit(recipe, COMMENT_WEIGHT);
+    }
+
+    /**
+     * Usuwa przepis z rankingu (np. po usunięciu lub wycofaniu akceptacji)
+     */
+    public void remove(Long recipeId) {
+        TransactionUtils.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Double score = scores.remove(recipeId);
+                if (score != null) {
+                    ranking.remove(new Entry(recipeId, score));
+                    dirty.add(recipeId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Zwraca ID przepisów z podanego zakresu rankingu, od najpopularniejszego
+     */
+    public List<Long> topRecipeIds(long offset, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Long> ids = new ArrayList<>(Math.min(limit, ranking.size()));
+            Iterator<Entry> iterator = ranking.iterator();
+            for (long skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+            while (ids.size() < limit && iterator.hasNext()) {
+                ids.add(iterator.next().recipeId());
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ranking.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Aktualny (wygaszony do chwili now) wynik przepisu, 0 gdy przepisu nie ma w rankingu
+     */
+    double currentScore(long recipeId, long now) {
+        lock.readLock().lock();
+        try {
+            Double score = scores.get(recipeId);
+            return score != null ? score * Math.exp(-decayRate * (now - landmark)) : 0.0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void recordAfterCommit(Recipe recipe, double weight) {
+        if (recipe.getStatus() != RecipeStatus.ACCEPTED) {
+            return;
+        }
+        Long recipeId = recipe.getId();
+        TransactionUtils.afterCommit(() -> record(recipeId, weight, System.currentTimeMillis()));
+    }
+
+    void record(long recipeId, double weight, long timestamp) {
+        lock.writeLock().lock();
+        try {
+            add(recipeId, weight * Math.exp(decayRate * (timestamp - landmark)));
+            dirty.add(recipeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Wymaga blokady do zapisu
+    private void add(long recipeId, double landmarkScore) {
+        Double previous = scores.get(recipeId);
+        if (previous != null) {
+            ranking.remove(new Entry(recipeId, previous));
+        }
+        double score = (previous != null ? previous : 0.0) + landmarkScore;
+        scores.put(recipeId, score);
+        ranking.add(new Entry(recipeId, score));
+    }
+
+    /**
+     * Odtwarza ranking z ostatniego zapisu, a gdy go nie ma - z historii polubień, ocen i komentarzy
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long now = System.currentTimeMillis();
+        List<Entry> entries;
+        boolean bootstrapped = false;
+        try {
+            // Zapis sprzed zmiany statusu może jeszcze zawierać przepisy, których nie można wyświetlić
+            entries = jdbcTemplate.query("""
+                    SELECT t.recipe_id, t.score, t.scored_at FROM recipe_trending_score t
+                    JOIN recipe r ON r.id = t.recipe_id AND r.status = 'ACCEPTED'
+                    """,
+                    (rs, rowNum) -> new Entry(rs.getLong("recipe_id"),
+                            rs.getDouble("score") * Math.exp(-decayRate * (now - rs.getTimestamp("scored_at").getTime()))));
+            if (entries.isEmpty()) {
+                entries = bootstrapFromHistory(now);
+                bootstrapped = true;
+            }
+        } catch (Exception e) {
+            log.error("Nie udało się odtworzyć rankingu popularnych przepisów: {}", e.getMessage());
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Wyniki wczytane są aktualne na chwilę now - przeliczenie względem punktu odniesienia
+            double scale = Math.exp(decayRate * (now - landmark));
+            for (Entry entry : entries) {
+                add(entry.recipeId(), entry.score() * scale);
+                if (bootstrapped) {
+                    dirty.add(entry.recipeId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Odtworzono ranking popularnych przepisów: {} przepisów", entries.size());
+    }
+
+    private List<Entry> bootstrapFromHistory(long now) {
+        Timestamp since = new Timestamp(now - (long) (BOOTSTRAP_HALF_LIVES * Math.log(2) / decayRate));
+        Timestamp at = new Timestamp(now);
+        // Wynik wygaszony do chwili now; decayRate przeliczony na sekundy, bo EXTRACT(EPOCH ...) zwraca sekundy
+        return jdbcTemplate.query("""
+                SELECT e.recipe_id, SUM(e.weight * EXP(-? * EXTRACT(EPOCH FROM (? - e.occurred_at)))) AS score
+                FROM (
+                    SELECT recipe_id, followed_at AS occurred_at, ? AS weight FROM followed_recipe
+                    UNION ALL
+                    SELECT recipe_id, created_at, ? * value FROM rating
+                    UNION ALL
+                    SELECT recipe_id, date_of_creation, ? FROM comment
+                ) e
+                JOIN recipe r ON r.id = e.recipe_id AND r.status = 'ACCEPTED'
+                WHERE e.occurred_at >= ?
+                GROUP BY e.recipe_id
+                """,
+                (rs, rowNum) -> new Entry(rs.getLong("recipe_id"), rs.getDouble("score")),
+                decayRate * 1000, at, FOLLOW_WEIGHT, RATING_WEIGHT, COMMENT_WEIGHT, since);
+    }
+
+    /**
+     * Zapisuje zmienione wyniki do tabeli recipe_trending_score i usuwa z rankingu wygasłe przepisy
+     */
+    @Scheduled(fixedDelayString = "${app.trending.checkpoint-interval-ms:300000}",
+               initialDelayString = "${app.trending.checkpoint-interval-ms:300000}")
+    public void checkpoint() {
+        long now = System.currentTimeMillis();
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        Set<Long> changed;
+
+        lock.writeLock().lock();
+        try {
+            rebaseIfNeeded(now);
+            pruneExpired(now);
+            double decay = Math.exp(-decayRate * (now - landmark));
+            Timestamp scoredAt = new Timestamp(now);
+            for (Long recipeId : dirty) {
+                Double score = scores.get(recipeId);
+                if (score != null) {
+                    upserts.add(new Object[]{recipeId, score * decay, scoredAt, recipeId});
+                } else {
+                    deletes.add(new Object[]{recipeId});
+                }
+            }
+            changed = new HashSet<>(dirty);
+            dirty.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            // Przepis mógł zostać w międzyczasie usunięty - taki wiersz jest pomijany zamiast przerywać cały zapis
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO recipe_trending_score (recipe_id, score, scored_at)
+                    SELECT ?, ?, ? WHERE EXISTS (SELECT 1 FROM recipe WHERE id = ?)
+                    ON CONFLICT (recipe_id) DO UPDATE SET score = EXCLUDED.score, scored_at = EXCLUDED.scored_at
+                    """, upserts, CHECKPOINT_BATCH_SIZE, (ps, args) -> {
+                for (int i = 0; i < args.length; i++) {
+                    ps.setObject(i + 1, args[i]);
+                }
+            });
+            jdbcTemplate.batchUpdate("DELETE FROM recipe_trending_score WHERE recipe_id = ?", deletes);
+            log.debug("Zapisano ranking popularnych przepisów: {} zmian, {} usunięć", upserts.size(), deletes.size());
+        } catch (Exception e) {
+            // Zmiany zostaną zapisane przy następnej próbie
+            lock.writeLock().lock();
+            try {
+                dirty.addAll(changed);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.error("Nie udało się zapisać rankingu popularnych przepisów: {}", e.getMessage());
+        }
+    }
+
+    // Wymaga blokady do zapisu
+    private void rebaseIfNeeded(long now) {
+        double exponent = decayRate * (now - landmark);
+        if (exponent < MAX_LANDMARK_EXPONENT) {
+            return;
+        }
+        double decay = Math.exp(-exponent);
+        List<Entry> rebased = ranking.stream()
+                .map(entry -> new Entry(entry.recipeId(), entry.score() * decay))
+                .toList();
+        ranking.clear();
+        scores.clear();
+        landmark = now;
+        rebased.forEach(entry -> add(entry.recipeId(), entry.score()));
+    }
+
+    // Wymaga blokady do zapisu; przepisy z najniższym wynikiem są na końcu rankingu
+    private void pruneExpired(long now) {
+        double threshold = MIN_SCORE * Math.exp(decayRate * (now - landmark));
+        while (!ranking.isEmpty() && ranking.last().score() < threshold) {
+            Entry expired = ranking.pollLast();
+            scores.remove(expired.recipeId());
+            dirty.add(expired.recipeId());
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 public class UserAdminService {
 
     private final AppUserRepository userRepository;
+    private final RecipeDetailCache recipeDetailCache;
 
     /**
      * Blokuje użytkownika, uniemożliwiając mu dodawanie przepisów i komentarzy
@@ -31,6 +32,8 @@ public class UserAdminService {
         user.setBanReason(reason);
 
         AppUser savedUser = userRepository.save(user);
+        // Status blokady autora widoczny jest w szczegółach przepisów i komentarzy
+        recipeDetailCache.evictAll();
         return mapToDTO(savedUser);
     }
 
@@ -50,6 +53,7 @@ public class UserAdminService {
         user.setBanReason(null);
 
         AppUser savedUser = userRepository.save(user);
+        recipeDetailCache.evictAll();
         return mapToDTO(savedUser);
     }
 
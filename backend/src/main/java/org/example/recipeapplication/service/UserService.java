@@ -12,6 +12,7 @@ import org.example.recipeapplication.repos.RecipeRepository;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -24,7 +25,10 @@ public class UserService {
     private final FollowedRecipeRepository followedRecipeRepository;
     private final PasswordEncoder passwordEncoder;
     private final RecipeRepository recipeRepository;
+    private final RecipeDetailCache recipeDetailCache;
+    private final RecipeSearchCache recipeSearchCache;
 
+    @Transactional
     public UserResponseDTO updateUserProfile(Long id, UserRequestDTO dto) {
         AppUser user = userRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
@@ -33,6 +37,9 @@ public class UserService {
         user.setEmail(dto.email());
         user.setProfilePicture(dto.profilePicture());
         userRepository.save(user);
+        // Dane autora są częścią kart i szczegółów przepisów
+        recipeDetailCache.evictAll();
+        recipeSearchCache.evictAll();
         return mapToDTO(user);
     }
 
@@ -106,8 +113,8 @@ public class UserService {
                 recipe.getTags() != null ? recipe.getTags() : List.of(),
                 recipe.getIngredients() != null ? recipe.getIngredients().stream()
                         .map(ing -> new IngredientResponseDTO(
-                                ing.getId(),
-                                ing.getName(),
+                                ing.getIngredient().getId(),
+                                ing.getIngredient().getName(),
                                 ing.getAmount(),
                                 ing.getUnit()))
                         .collect(Collectors.toList()) : List.of(),
@@ -133,19 +140,21 @@ public class UserService {
         );
     }
 
+    @Transactional(readOnly = true)
     public UserResponseDTO getUserProfile(Long userId) {
         AppUser user = userRepository.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
-        // Pobierz przepisy użytkownika z repozytorium, aby wymusić inicjalizację kolekcji
+        // Pobierz przepisy użytkownika z repozytorium (tagi, składniki i komentarze dociągane paczkami w transakcji)
         List<Recipe> recipes = recipeRepository.findByAuthor(user, Pageable.unpaged()).getContent();
         user.setRecipes(recipes);
         return mapToDTO(user);
     }
 
+    @Transactional(readOnly = true)
     public UserResponseDTO getUserByEmail(String email) {
         AppUser user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new EntityNotFoundException("User not found with email: " + email));
-        // Pobierz przepisy użytkownika z repozytorium, aby wymusić inicjalizację kolekcji
+        // Pobierz przepisy użytkownika z repozytorium (tagi, składniki i komentarze dociągane paczkami w transakcji)
         List<Recipe> recipes = recipeRepository.findByAuthor(user, Pageable.unpaged()).getContent();
         user.setRecipes(recipes);
         return mapToDTO(user);
@@ -0,0 +1,42 @@
+package org.example.recipeapplication.util;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.function.Supplier;
+
+public final class ConditionalRequests {
+
+    // Klient może trzymać odpowiedź, ale przed użyciem musi ją potwierdzić (If-None-Match)
+    private static final CacheControl REVALIDATE = CacheControl.noCache();
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Odpowiada 304 Not Modified, gdy ETag klienta (If-None-Match) jest aktualny - bez budowania odpowiedzi.
+     * W przeciwnym razie buduje odpowiedź i dołącza do niej ETag. ETag należy wyznaczyć przed odczytem danych,
+     * żeby zmiana zatwierdzona w trakcie budowania odpowiedzi unieważniła go przy następnym żądaniu.
+     * Bez ETagu (null, np. zasób nie istnieje) odpowiedź zwracana jest bez zmian.
+     */
+    public static <T> ResponseEntity<T> withETag(WebRequest request, String etag, Supplier<ResponseEntity<T>> response) {
+        if (etag == null) {
+            return response.get();
+        }
+        if (request.checkNotModified(etag)) {
+            // Nagłówek ETag ustawia już checkNotModified
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
+        }
+        ResponseEntity<T> entity = response.get();
+        if (!entity.getStatusCode().is2xxSuccessful()) {
+            return entity;
+        }
+        return ResponseEntity.status(entity.getStatusCode())
+                .headers(entity.getHeaders())
+                .eTag(etag)
+                .cacheControl(REVALIDATE)
+                .body(entity.getBody());
+    }
+}
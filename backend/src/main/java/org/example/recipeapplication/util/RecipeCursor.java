@@ -0,0 +1,90 @@
+package org.example.recipeapplication.util;
+
+import org.example.recipeapplication.dto.RecipeSummaryDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Kursor stronicowania listy przepisów (keyset pagination): wartość klucza sortowania i ID ostatniego
+ * przepisu z poprzedniej strony. Dla klienta jest nieprzezroczystym tokenem (Base64 URL-safe).
+ */
+public record RecipeCursor(SortKey sortKey, Timestamp dateOfCreation, Float rating, Double score, Long id) {
+
+    // Wartości większe od każdego istniejącego klucza - kursor pierwszej strony
+    private static final Timestamp MAX_DATE = Timestamp.valueOf("9999-12-31 23:59:59");
+    // Brak daty utworzenia - odpowiednik COALESCE(date_of_creation, 'epoch') w zapytaniach kursora
+    private static final Timestamp NO_DATE = Timestamp.valueOf("1970-01-01 00:00:00");
+    private static final String SEPARATOR = "|";
+
+    public enum SortKey {
+        DATE_OF_CREATION("d"),
+        RATING("r"),
+        // Średnia bayesowska (Recipe.ratingScore) - "najlepiej oceniane"
+        SCORE("s");
+
+        private final String code;
+
+        SortKey(String code) {
+            this.code = code;
+        }
+
+        public static SortKey fromSortBy(String sortBy) {
+            if ("rating".equalsIgnoreCase(sortBy)) {
+                return RATING;
+            }
+            return "ratingScore".equalsIgnoreCase(sortBy) || "score".equalsIgnoreCase(sortBy) ? SCORE : DATE_OF_CREATION;
+        }
+    }
+
+    public static RecipeCursor first(SortKey sortKey) {
+        return new RecipeCursor(sortKey, MAX_DATE, Float.MAX_VALUE, Double.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public static RecipeCursor after(RecipeSummaryDTO recipe, SortKey sortKey) {
+        return new RecipeCursor(
+                sortKey,
+                recipe.dateOfCreation() != null ? Timestamp.valueOf(recipe.dateOfCreation()) : NO_DATE,
+                recipe.rate() != null ? recipe.rate() : 0f,
+                recipe.ratingScore() != null ? recipe.ratingScore() : 0d,
+                recipe.id());
+    }
+
+    /**
+     * Odczytuje kursor z tokenu; brak tokenu oznacza pierwszą stronę
+     *
+     * @throws IllegalArgumentException gdy token jest uszkodzony lub dotyczy innego sortowania
+     */
+    public static RecipeCursor decode(String token, SortKey sortKey) {
+        if (token == null || token.isBlank()) {
+            return first(sortKey);
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3 || !parts[0].equals(sortKey.code)) {
+                throw new IllegalArgumentException("Invalid cursor for sort: " + sortKey);
+            }
+            long id = Long.parseLong(parts[2]);
+            return switch (sortKey) {
+                case RATING -> new RecipeCursor(sortKey, MAX_DATE, Float.parseFloat(parts[1]), Double.MAX_VALUE, id);
+                case SCORE -> new RecipeCursor(sortKey, MAX_DATE, Float.MAX_VALUE, Double.parseDouble(parts[1]), id);
+                case DATE_OF_CREATION -> new RecipeCursor(sortKey, new Timestamp(Long.parseLong(parts[1])),
+                        Float.MAX_VALUE, Double.MAX_VALUE, id);
+            };
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException i błędy Base64 również są IllegalArgumentException
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    public String encode() {
+        String value = switch (sortKey) {
+            case RATING -> Float.toString(rating);
+            case SCORE -> Double.toString(score);
+            case DATE_OF_CREATION -> Long.toString(dateOfCreation.getTime());
+        };
+        String raw = sortKey.code + SEPARATOR + value + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.recipeapplication.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizacja tekstu na potrzeby wyszukiwania: małe litery, usunięte polskie znaki diakrytyczne
+ * ("Żółć" -> "zolc") i podział na słowa.
+ */
+public final class TextNormalizer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Krótsze słowa (spójniki, przyimki) nie są indeksowane
+    public static final int MIN_TOKEN_LENGTH = 2;
+
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        // "ł" nie rozkłada się w NFD na literę bazową i znak diakrytyczny
+        return DIACRITICS.matcher(decomposed).replaceAll("").replace('ł', 'l');
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(normalize(text))) {
+            if (token.length() >= MIN_TOKEN_LENGTH) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
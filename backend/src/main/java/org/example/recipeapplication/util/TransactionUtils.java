@@ -0,0 +1,27 @@
+package org.example.recipeapplication.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public final class TransactionUtils {
+
+    private TransactionUtils() {
+    }
+
+    /**
+     * Wykonuje akcję po zatwierdzeniu bieżącej transakcji, a gdy transakcja nie jest aktywna - od razu.
+     * Służy do aktualizacji struktur w pamięci (indeksy, cache) dopiero wtedy, gdy zmiana jest trwała.
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.example.recipeapplication.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FavoritesCounterServiceTests {
+
+    // favorites_count przepisów i niezastosowane wiersze favorites_outbox {recipe_id, delta}
+    private Map<Long, Integer> favorites;
+    private List<long[]> outbox;
+    private List<Long> updateOrder;
+    private boolean lockedElsewhere;
+    private FavoritesCounterService service;
+
+    @BeforeEach
+    void setUp() {
+        favorites = new HashMap<>();
+        outbox = new ArrayList<>();
+        updateOrder = new ArrayList<>();
+        lockedElsewhere = false;
+        TransactionTemplate transactionTemplate = new TransactionTemplate() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                return action.doInTransaction(new SimpleTransactionStatus());
+            }
+        };
+        service = new FavoritesCounterService(new InMemoryRecipes(), transactionTemplate,
+                new RecipeSearchIndex(null, null), new RecipeDetailCache(new SimpleMeterRegistry(), null, 600, 100),
+                new SimpleMeterRegistry(), 3, 10);
+    }
+
+    @Test
+    void recordsEveryChangeInOutbox() {
+        service.add(1L, 1);
+        service.add(1L, 1);
+        service.add(1L, -1);
+
+        assertThat(outbox).containsExactly(new long[]{1, 1}, new long[]{1, 1}, new long[]{1, -1});
+    }
+
+    @Test
+    void flushSumsChangesPerRecipeInIdOrder() {
+        favorites.put(1L, 10);
+        favorites.put(2L, 0);
+        favorites.put(3L, 4);
+        service.add(3L, 1);
+        service.add(2L, 1);
+        service.add(3L, 1);
+        service.add(2L, -1);
+        service.add(1L, -1);
+
+        service.flush();
+
+        // Dwie paczki (po 3 wiersze outboxa), w każdej przepisy aktualizowane w kolejności id
+        assertThat(updateOrder).containsExactly(2L, 3L, 1L, 2L);
+        assertThat(favorites).containsEntry(1L, 9).containsEntry(2L, 0).containsEntry(3L, 6);
+        assertThat(outbox).isEmpty();
+    }
+
+    @Test
+    void cancelledChangesDoNotTouchRecipe() {
+        favorites.put(1L, 5);
+        service.add(1L, 1);
+        service.add(1L, -1);
+
+        assertThat(service.flushBatch()).isEqualTo(2);
+
+        assertThat(updateOrder).isEmpty();
+        assertThat(favorites).containsEntry(1L, 5);
+    }
+
+    @Test
+    void leavesOutboxToInstanceHoldingLock() {
+        favorites.put(1L, 5);
+        service.add(1L, 1);
+        lockedElsewhere = true;
+
+        assertThat(service.flushBatch()).isZero();
+
+        assertThat(outbox).hasSize(1);
+        assertThat(favorites).containsEntry(1L, 5);
+    }
+
+    /**
+     * Blokada doradcza, RECORD, DRAIN_BATCH, APPLY_DELTA i odczyt nowych liczników wykonywane na danych w pamięci
+     */
+    private class InMemoryRecipes extends JdbcTemplate {
+
+        private final List<Long> changed = new ArrayList<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            return (T) Boolean.valueOf(!lockedElsewhere);
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            outbox.add(new long[]{(Long) args[0], (Integer) args[1]});
+            return 1;
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            List<long[]> batch = new ArrayList<>(outbox.subList(0, Math.min((Integer) args[0], outbox.size())));
+            try {
+                for (long[] row : batch) {
+                    rch.processRow(resultSet(Map.of("recipe_id", row[0], "delta", row[1])));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            outbox.subList(0, batch.size()).clear();
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            changed.clear();
+            for (Object[] args : batchArgs) {
+                Long id = (Long) args[1];
+                favorites.merge(id, Math.toIntExact((Long) args[0]), Integer::sum);
+                updateOrder.add(id);
+                changed.add(id);
+            }
+            return new int[batchArgs.size()];
+        }
+
+        @Override
+        public <T> List<T> query(PreparedStatementCreator psc, RowMapper<T> rowMapper) {
+            List<T> rows = new ArrayList<>();
+            try {
+                for (Long id : changed) {
+                    rows.add(rowMapper.mapRow(resultSet(Map.of("id", id, "favorites_count", favorites.get(id))),
+                            rows.size()));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return rows;
+        }
+    }
+
+    private static ResultSet resultSet(Map<String, ? extends Number> columns) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Number value = columns.get((String) args[0]);
+                    return switch (method.getName()) {
+                        case "getLong" -> value.longValue();
+                        case "getInt" -> value.intValue();
+                        case "getObject" -> value;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
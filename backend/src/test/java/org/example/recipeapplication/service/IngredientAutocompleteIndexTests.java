@@ -0,0 +1,80 @@
+package org.example.recipeapplication.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class IngredientAutocompleteIndexTests {
+
+    private IngredientAutocompleteIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new IngredientAutocompleteIndex(null, 50);
+        add(1L, "Sól", 120);
+        add(2L, "Sól morska", 15);
+        add(3L, "Soczewica", 40);
+        add(4L, "Żółć", 1);
+        add(5L, "Wołowina mielona", 30);
+        add(6L, "Mleko", 200);
+    }
+
+    @Test
+    void ranksPrefixMatchesByUsage() {
+        assertThat(index.suggest("so", 10))
+                .extracting(IngredientAutocompleteIndex.Suggestion::name)
+                .containsExactly("Sól", "Soczewica", "Sól morska");
+        assertThat(index.suggest("so", 2))
+                .extracting(IngredientAutocompleteIndex.Suggestion::name)
+                .containsExactly("Sól", "Soczewica");
+    }
+
+    @Test
+    void ignoresCaseAndPolishDiacritics() {
+        assertThat(index.suggest("zolc", 10))
+                .extracting(IngredientAutocompleteIndex.Suggestion::name)
+                .containsExactly("Żółć");
+        assertThat(index.suggest("SÓL M", 10))
+                .extracting(IngredientAutocompleteIndex.Suggestion::name)
+                .containsExactly("Sól morska");
+    }
+
+    @Test
+    void matchesLaterWordsOfName() {
+        assertThat(index.suggest("miel", 10))
+                .extracting(IngredientAutocompleteIndex.Suggestion::name)
+                .containsExactly("Wołowina mielona");
+        assertThat(index.suggest("m", 10))
+                .extracting(IngredientAutocompleteIndex.Suggestion::name)
+                .containsExactly("Mleko", "Wołowina mielona", "Sól morska");
+    }
+
+    @Test
+    void usageChangesReorderSuggestions() {
+        index.addUsage(2L, "Sól morska", "sol morska", 200);
+        index.addUsage(1L, "Sól", "sol", -100);
+
+        assertThat(index.suggest("sol", 10))
+                .extracting(IngredientAutocompleteIndex.Suggestion::id, IngredientAutocompleteIndex.Suggestion::usage)
+                .containsExactly(
+                        tuple(2L, 215L),
+                        tuple(1L, 20L));
+    }
+
+    @Test
+    void removedIngredientIsNoLongerSuggested() {
+        index.remove(3L);
+
+        assertThat(index.suggest("so", 10))
+                .extracting(IngredientAutocompleteIndex.Suggestion::name)
+                .containsExactly("Sól", "Sól morska");
+        assertThat(index.suggest("socz", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(5);
+    }
+
+    private void add(Long id, String name, long usage) {
+        index.addUsage(id, name, RecipeIngredientService.normalizedName(name), usage);
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.recipeapplication.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngredientGarbageCollectorTests {
+
+    private static final long HOUR = 3_600_000;
+
+    // Nieużywane pozycje słownika: id -> orphaned_at (null, jeśli jeszcze nieoznaczona)
+    private TreeMap<Long, Timestamp> unused;
+    private List<String> statements;
+    private SimpleMeterRegistry meterRegistry;
+    private IngredientAutocompleteIndex autocomplete;
+
+    @BeforeEach
+    void setUp() {
+        unused = new TreeMap<>();
+        statements = new ArrayList<>();
+        meterRegistry = new SimpleMeterRegistry();
+        autocomplete = new IngredientAutocompleteIndex(null, 50);
+    }
+
+    @Test
+    void marksUnusedIngredientsBeforeDeletingThem() {
+        for (long id = 1; id <= 5; id++) {
+            unused.put(id, null);
+            autocomplete.addUsage(id, "Składnik " + id, "skladnik " + id, 1);
+        }
+        IngredientGarbageCollector collector = collector(2, 100);
+
+        collector.run();
+
+        assertThat(unused).hasSize(5).doesNotContainValue(null);
+        assertThat(meterRegistry.counter("ingredient.gc.marked").count()).isEqualTo(5);
+        assertThat(meterRegistry.counter("ingredient.gc.deleted").count()).isZero();
+
+        // Po okresie karencji oznaczone pozycje są usuwane również z podpowiedzi
+        unused.replaceAll((id, orphanedAt) -> new Timestamp(orphanedAt.getTime() - 25 * HOUR));
+        collector.run();
+
+        assertThat(unused).isEmpty();
+        assertThat(autocomplete.size()).isZero();
+        assertThat(meterRegistry.counter("ingredient.gc.deleted").count()).isEqualTo(5);
+    }
+
+    @Test
+    void keepsIngredientsMarkedWithinGracePeriod() {
+        unused.put(1L, new Timestamp(System.currentTimeMillis() - 23 * HOUR));
+        unused.put(2L, new Timestamp(System.currentTimeMillis() - 25 * HOUR));
+
+        collector(10, 100).run();
+
+        assertThat(unused).containsOnlyKeys(1L);
+    }
+
+    @Test
+    void stopsAfterMaxBatchesPerRun() {
+        for (long id = 1; id <= 10; id++) {
+            unused.put(id, null);
+        }
+
+        collector(2, 3).run();
+
+        // Paczki oznaczania przeglądają tabelę kolejnymi zakresami id
+        assertThat(unused.headMap(7L).values()).doesNotContainNull();
+        assertThat(unused.tailMap(7L).values()).containsOnlyNulls();
+        assertThat(statements).filteredOn("mark"::equals).hasSize(3);
+    }
+
+    private IngredientGarbageCollector collector(int batchSize, int maxBatches) {
+        return new IngredientGarbageCollector(new InMemoryCatalog(), autocomplete, meterRegistry, 24, batchSize,
+                maxBatches);
+    }
+
+    /**
+     * Zapytania MARK_BATCH i DELETE_BATCH wykonywane na tabeli w pamięci
+     */
+    private class InMemoryCatalog extends JdbcTemplate {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            return (List<T>) (sql.contains("DELETE") ? delete(args) : mark(args));
+        }
+
+        private List<Long> mark(Object[] args) {
+            statements.add("mark");
+            long afterId = (Long) args[0];
+            int limit = (Integer) args[1];
+            Map<Long, Timestamp> batch = new HashMap<>();
+            unused.tailMap(afterId, false).forEach((id, orphanedAt) -> {
+                if (orphanedAt == null && batch.size() < limit) {
+                    batch.put(id, (Timestamp) args[2]);
+                }
+            });
+            unused.putAll(batch);
+            return new ArrayList<>(batch.keySet());
+        }
+
+        private List<Long> delete(Object[] args) {
+            statements.add("delete");
+            Timestamp orphanedBefore = (Timestamp) args[0];
+            int limit = (Integer) args[1];
+            List<Long> batch = unused.entrySet().stream()
+                    .filter(entry -> entry.getValue() != null && entry.getValue().before(orphanedBefore))
+                    .map(Map.Entry::getKey)
+                    .limit(limit)
+                    .toList();
+            batch.forEach(unused::remove);
+            return batch;
+        }
+    }
+}
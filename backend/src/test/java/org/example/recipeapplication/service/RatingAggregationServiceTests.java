@@ -0,0 +1,192 @@
+package org.example.recipeapplication.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RatingAggregationServiceTests {
+
+    // Liczniki przepisów: id -> {rating_sum, rating_count, rating1_count, ..., rating5_count}
+    private Map<Long, long[]> recipes;
+    private List<Integer[]> outbox;
+    private List<Long> updateOrder;
+    private boolean lockedElsewhere;
+    private RatingAggregationService service;
+
+    @BeforeEach
+    void setUp() {
+        recipes = new TreeMap<>();
+        outbox = new ArrayList<>();
+        updateOrder = new ArrayList<>();
+        lockedElsewhere = false;
+        TransactionTemplate transactionTemplate = new TransactionTemplate() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                return action.doInTransaction(new SimpleTransactionStatus());
+            }
+        };
+        service = new RatingAggregationService(new InMemoryRecipes(), transactionTemplate,
+                new RecipeSearchIndex(null, null), new RecipeDetailCache(new SimpleMeterRegistry(), null, 600, 100),
+                new SimpleMeterRegistry(), 100, 10);
+    }
+
+    @Test
+    void accumulatesSumCountAndHistogram() {
+        RatingAggregationService.Delta delta = new RatingAggregationService.Delta();
+
+        delta.add(null, 5);
+        delta.add(null, 4);
+        delta.add(4, 2);
+
+        assertThat(delta.sum).isEqualTo(7);
+        assertThat(delta.count).isEqualTo(2);
+        assertThat(delta.stars).containsExactly(0, 1, 0, 0, 1);
+        assertThat(delta.isEmpty()).isFalse();
+    }
+
+    @Test
+    void changesThatCancelOutLeaveNothingToApply() {
+        RatingAggregationService.Delta delta = new RatingAggregationService.Delta();
+
+        delta.add(null, 3);
+        delta.add(3, 5);
+        delta.add(5, null);
+
+        assertThat(delta.sum).isZero();
+        assertThat(delta.count).isZero();
+        assertThat(delta.isEmpty()).isTrue();
+    }
+
+    @Test
+    void flushAppliesOneSummedUpdatePerRecipe() {
+        recipes.put(1L, new long[]{8, 2, 0, 0, 0, 2, 0});
+        recipes.put(2L, new long[7]);
+        change(2L, null, 5);
+        change(1L, null, 3);
+        change(2L, null, 3);
+        change(1L, 4, 2);
+
+        assertThat(service.flushBatch()).isEqualTo(4);
+
+        // Przepisy aktualizowane w kolejności id, niezależnie od kolejności zmian w outboxie
+        assertThat(updateOrder).containsExactly(1L, 2L);
+        assertThat(recipes.get(1L)).containsExactly(9, 3, 0, 1, 1, 1, 0);
+        assertThat(recipes.get(2L)).containsExactly(8, 2, 0, 0, 1, 0, 1);
+        assertThat(outbox).isEmpty();
+    }
+
+    @Test
+    void cancelledChangesDoNotTouchRecipe() {
+        recipes.put(3L, new long[]{4, 1, 0, 0, 0, 1, 0});
+        change(3L, null, 5);
+        change(3L, 5, null);
+
+        assertThat(service.flushBatch()).isEqualTo(2);
+
+        assertThat(updateOrder).isEmpty();
+        assertThat(recipes.get(3L)).containsExactly(4, 1, 0, 0, 0, 1, 0);
+        assertThat(outbox).isEmpty();
+    }
+
+    @Test
+    void skipsBatchWhileAnotherInstanceFlushes() {
+        recipes.put(1L, new long[7]);
+        change(1L, null, 5);
+        lockedElsewhere = true;
+
+        assertThat(service.flushBatch()).isZero();
+
+        assertThat(outbox).hasSize(1);
+        assertThat(recipes.get(1L)).containsOnly(0);
+    }
+
+    private void change(Long recipeId, Integer previousValue, Integer newValue) {
+        outbox.add(new Integer[]{Math.toIntExact(recipeId), previousValue, newValue});
+    }
+
+    /**
+     * Blokada doradcza, DRAIN_BATCH, APPLY_DELTA i odczyt nowych średnich wykonywane na danych w pamięci
+     */
+    private class InMemoryRecipes extends JdbcTemplate {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            return (T) Boolean.valueOf(!lockedElsewhere);
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            try {
+                for (Integer[] change : outbox) {
+                    rch.processRow(resultSet(Map.of("recipe_id", (long) change[0]), change[1], change[2]));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            outbox.clear();
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            for (Object[] args : batchArgs) {
+                Long id = (Long) args[10];
+                long[] counters = recipes.get(id);
+                counters[0] += (Long) args[0];
+                counters[1] += (Integer) args[1];
+                for (int star = 0; star < 5; star++) {
+                    counters[2 + star] += (Integer) args[5 + star];
+                }
+                updateOrder.add(id);
+            }
+            return new int[batchArgs.size()];
+        }
+
+        @Override
+        public <T> List<T> query(PreparedStatementCreator psc, RowMapper<T> rowMapper) {
+            List<T> rows = new ArrayList<>();
+            try {
+                for (Long id : updateOrder) {
+                    long[] counters = recipes.get(id);
+                    Float rating = counters[1] > 0 ? (float) counters[0] / counters[1] : null;
+                    rows.add(rowMapper.mapRow(resultSet(Map.of("id", id), rating, 0), rows.size()));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Wiersz z kolumną id (getLong) i dwiema kolejnymi kolumnami odczytywanymi przez getObject
+     */
+    private static ResultSet resultSet(Map<String, Long> ids, Object first, Object second) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getLong" -> ids.get((String) args[0]);
+                    case "getObject" -> switch ((String) args[0]) {
+                        case "previous_value", "rating" -> first;
+                        default -> second;
+                    };
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.recipeapplication.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RatingServiceTests {
+
+    // Oceny w bazie: e-mail użytkownika -> (ID przepisu -> ocena)
+    private final Map<String, Map<Long, Integer>> ratings = new HashMap<>();
+    private final List<String> queries = new ArrayList<>();
+    private final RatingService service = new RatingService(null, null, null, null, null, new InMemoryRatings());
+
+    @Test
+    void returnsOnlyRatedRecipesOfCaller() {
+        ratings.put("ala@example.com", Map.of(1L, 5, 3L, 2, 9L, 4));
+        ratings.put("ola@example.com", Map.of(2L, 1));
+
+        Map<Long, Integer> result = service.getUserRatingsForRecipes(new LinkedHashSet<>(List.of(3L, 2L, 1L)),
+                "ala@example.com");
+
+        assertThat(result).containsExactly(Map.entry(3L, 2), Map.entry(1L, 5));
+        // Jedno zapytanie niezależnie od liczby przepisów
+        assertThat(queries).hasSize(1);
+    }
+
+    @Test
+    void emptyRequestDoesNotQueryDatabase() {
+        assertThat(service.getUserRatingsForRecipes(List.of(), "ala@example.com")).isEmpty();
+        assertThat(queries).isEmpty();
+    }
+
+    /**
+     * Zapytanie o oceny użytkownika wykonywane na ocenach w pamięci; parametry odczytywane z przygotowanego
+     * zapytania
+     */
+    private class InMemoryRatings extends JdbcTemplate {
+
+        @Override
+        public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+            Map<Integer, Object> parameters = new HashMap<>();
+            try {
+                psc.createPreparedStatement(connection(parameters));
+                queries.add((String) parameters.get(0));
+                Map<Long, Integer> userRatings = ratings.getOrDefault((String) parameters.get(1), Map.of());
+                for (Object id : (Object[]) ((Array) parameters.get(2)).getArray()) {
+                    Integer value = userRatings.get((Long) id);
+                    if (value != null) {
+                        rch.processRow(row((Long) id, value));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static Connection connection(Map<Integer, Object> parameters) {
+        PreparedStatement statement = proxy(PreparedStatement.class, (name, args) -> {
+            if (name.equals("setString") || name.equals("setArray")) {
+                parameters.put((Integer) args[0], args[1]);
+            }
+            return null;
+        });
+        return proxy(Connection.class, (name, args) -> switch (name) {
+            case "prepareStatement" -> {
+                parameters.put(0, args[0]);
+                yield statement;
+            }
+            case "createArrayOf" -> proxy(Array.class, (arrayMethod, arrayArgs) -> args[1]);
+            default -> throw new UnsupportedOperationException(name);
+        });
+    }
+
+    private static ResultSet row(Long recipeId, Integer value) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        columns.put("recipe_id", recipeId);
+        columns.put("value", value);
+        return proxy(ResultSet.class, (name, args) -> columns.get((String) args[0]));
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.invoke(method.getName(), args));
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.recipeapplication.service;
+
+import org.example.recipeapplication.dto.RecipeSummaryDTO;
+import org.example.recipeapplication.util.RecipeCursor;
+import org.example.recipeapplication.util.RecipeCursor.SortKey;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecipeCursorTests {
+
+    @Test
+    void roundTripsEverySortKey() {
+        RecipeSummaryDTO recipe = recipe(42L, LocalDateTime.of(2024, 3, 1, 12, 30), 4.5f, 3.75);
+
+        for (SortKey sortKey : SortKey.values()) {
+            RecipeCursor cursor = RecipeCursor.after(recipe, sortKey);
+            RecipeCursor decoded = RecipeCursor.decode(cursor.encode(), sortKey);
+
+            assertThat(decoded.id()).isEqualTo(42L);
+            switch (sortKey) {
+                case DATE_OF_CREATION -> assertThat(decoded.dateOfCreation())
+                        .isEqualTo(Timestamp.valueOf(LocalDateTime.of(2024, 3, 1, 12, 30)));
+                case RATING -> assertThat(decoded.rating()).isEqualTo(4.5f);
+                case SCORE -> assertThat(decoded.score()).isEqualTo(3.75);
+            }
+        }
+    }
+
+    @Test
+    void recipeWithoutDateOrRatingContinuesAfterRatedOnes() {
+        RecipeSummaryDTO recipe = recipe(7L, null, null, null);
+
+        RecipeCursor byDate = RecipeCursor.decode(RecipeCursor.after(recipe, SortKey.DATE_OF_CREATION).encode(),
+                SortKey.DATE_OF_CREATION);
+        RecipeCursor byRating = RecipeCursor.decode(RecipeCursor.after(recipe, SortKey.RATING).encode(),
+                SortKey.RATING);
+
+        // Odpowiedniki COALESCE(date_of_creation, 'epoch') i COALESCE(rating, 0) w zapytaniach kursora
+        assertThat(byDate.dateOfCreation()).isEqualTo(Timestamp.valueOf("1970-01-01 00:00:00"));
+        assertThat(byRating.rating()).isZero();
+    }
+
+    @Test
+    void missingTokenStartsFromFirstPage() {
+        assertThat(RecipeCursor.decode(null, SortKey.RATING)).isEqualTo(RecipeCursor.first(SortKey.RATING));
+        assertThat(RecipeCursor.decode(" ", SortKey.SCORE)).isEqualTo(RecipeCursor.first(SortKey.SCORE));
+    }
+
+    @Test
+    void rejectsCursorOfAnotherSort() {
+        String token = RecipeCursor.after(recipe(1L, LocalDateTime.now(), 4f, 4d), SortKey.RATING).encode();
+
+        assertThatThrownBy(() -> RecipeCursor.decode(token, SortKey.DATE_OF_CREATION))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        for (String raw : List.of("d|abc|1", "r|4.5", "r|4.5|x", "s|1|2|3")) {
+            String token = Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+            SortKey sortKey = raw.startsWith("d") ? SortKey.DATE_OF_CREATION
+                    : raw.startsWith("r") ? SortKey.RATING : SortKey.SCORE;
+
+            assertThatThrownBy(() -> RecipeCursor.decode(token, sortKey))
+                    .as(raw)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThatThrownBy(() -> RecipeCursor.decode("not base64!", SortKey.RATING))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static RecipeSummaryDTO recipe(Long id, LocalDateTime dateOfCreation, Float rate, Double score) {
+        return new RecipeSummaryDTO(id, "Przepis " + id, rate, 0, score, 0, 0L, null, null, null, dateOfCreation,
+                null, null, List.of());
+    }
+}
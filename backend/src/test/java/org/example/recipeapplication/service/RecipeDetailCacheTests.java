@@ -0,0 +1,146 @@
+package org.example.recipeapplication.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.recipeapplication.dto.RecipeResponseDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeDetailCacheTests {
+
+    private static final String ETAG = "r-1";
+
+    private List<Long> changedRecipes;
+    private RecipeDetailCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        changedRecipes = new CopyOnWriteArrayList<>();
+        // Zmiany zgłaszane do bazy zapisywane w pamięci
+        CatalogVersionService versions = new CatalogVersionService(null, null) {
+            @Override
+            public void recipesChanged(Collection<Long> recipeIds) {
+                changedRecipes.addAll(recipeIds);
+            }
+
+            @Override
+            public void allRecipesChanged() {
+            }
+        };
+        cache = new RecipeDetailCache(new SimpleMeterRegistry(), versions, 600, 100);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Optional<RecipeResponseDTO>>> results = IntStream.range(0, 8)
+                    .mapToObj(i -> executor.submit(() -> {
+                        start.await();
+                        return cache.get(1L, ETAG, id -> {
+                            loads.incrementAndGet();
+                            sleep();
+                            return Optional.of(recipe(id, "Bigos"));
+                        });
+                    }))
+                    .toList();
+            start.countDown();
+            for (Future<Optional<RecipeResponseDTO>> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).map(RecipeResponseDTO::title).contains("Bigos");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void changedETagReloadsEntry() {
+        cache.get(1L, ETAG, this::load);
+        assertThat(cache.get(1L, ETAG, this::load)).map(RecipeResponseDTO::title).contains("Bigos");
+        assertThat(loads).hasValue(1);
+
+        // Zmiana zatwierdzona np. przez inną instancję - lokalny wpis nie został usunięty
+        assertThat(cache.get(1L, "r-2", id -> Optional.of(recipe(id, "Bigos myśliwski"))))
+                .map(RecipeResponseDTO::title).contains("Bigos myśliwski");
+        assertThat(cache.get(1L, "r-2", this::load)).map(RecipeResponseDTO::title).contains("Bigos myśliwski");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void writeThroughServesSavedRecipe() {
+        cache.get(1L, ETAG, this::load);
+
+        cache.put("r-2", recipe(1L, "Bigos myśliwski"));
+
+        assertThat(cache.get(1L, "r-2", this::load)).map(RecipeResponseDTO::title).contains("Bigos myśliwski");
+        assertThat(loads).hasValue(1);
+        // Późniejsza zmiana, której wpis nie zna
+        assertThat(cache.get(1L, "r-3", this::load)).map(RecipeResponseDTO::title).contains("Bigos");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void evictReloadsWithoutBumpingListVersions() {
+        cache.get(1L, ETAG, this::load);
+
+        cache.evict(1L);
+
+        // Zmiana liczników nie zmienia składu list
+        assertThat(changedRecipes).isEmpty();
+        assertThat(cache.get(1L, ETAG, this::load)).isPresent();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void deletedRecipeIsNotLoaded() {
+        cache.get(1L, ETAG, this::load);
+
+        assertThat(cache.get(1L, null, this::load)).isEmpty();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void missingRecipeIsNotCached() {
+        assertThat(cache.get(2L, ETAG, id -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        })).isEmpty();
+        assertThat(cache.get(2L, ETAG, this::load)).isPresent();
+        assertThat(loads).hasValue(2);
+    }
+
+    private Optional<RecipeResponseDTO> load(Long id) {
+        loads.incrementAndGet();
+        return Optional.of(recipe(id, "Bigos"));
+    }
+
+    private static RecipeResponseDTO recipe(Long id, String title) {
+        return new RecipeResponseDTO(id, title, null, 0f, 0, 0, null, null, null, null, null,
+                List.of(), List.of(), List.of());
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
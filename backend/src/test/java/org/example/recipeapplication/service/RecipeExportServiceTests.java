@@ -0,0 +1,148 @@
+package org.example.recipeapplication.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.example.recipeapplication.dto.IngredientResponseDTO;
+import org.example.recipeapplication.dto.RecipeExportDTO;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecipeExportServiceTests {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Test
+    void writesOneRecipePerLine() throws IOException {
+        LocalDateTime created = LocalDateTime.of(2024, 3, 1, 12, 30);
+        Map<String, Object> bigos = row(1L, "Bigos");
+        bigos.put("status", "ACCEPTED");
+        bigos.put("rating", 4.5f);
+        bigos.put("category_id", 3L);
+        bigos.put("category_name", "Obiady");
+        bigos.put("date_of_creation", Timestamp.valueOf(created));
+        bigos.put("tags", array(new String[]{"obiad", "polskie"}));
+        bigos.put("ingredient_ids", array(new Long[]{10L, 11L}));
+        bigos.put("ingredient_names", array(new String[]{"kapusta kiszona", "kiełbasa"}));
+        bigos.put("ingredient_amounts", array(new String[]{"1", "30"}));
+        bigos.put("ingredient_units", array(new String[]{"kg", null}));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = service(List.of(bigos, row(2L, "Żurek"))).exportRecipes(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(exported).isEqualTo(2);
+        assertThat(lines).hasSize(2);
+        RecipeExportDTO first = objectMapper.readValue(lines[0], RecipeExportDTO.class);
+        assertThat(first.title()).isEqualTo("Bigos");
+        assertThat(first.status()).isEqualTo(RecipeStatus.ACCEPTED);
+        assertThat(first.rate()).isEqualTo(4.5f);
+        assertThat(first.categoryName()).isEqualTo("Obiady");
+        assertThat(first.dateOfCreation()).isEqualTo(created);
+        assertThat(first.tags()).containsExactly("obiad", "polskie");
+        assertThat(first.ingredients()).containsExactly(
+                new IngredientResponseDTO(10L, "kapusta kiszona", "1", "kg"),
+                new IngredientResponseDTO(11L, "kiełbasa", "30", null));
+        // Przepis bez składników, tagów i kategorii
+        RecipeExportDTO second = objectMapper.readValue(lines[1], RecipeExportDTO.class);
+        assertThat(second.title()).isEqualTo("Żurek");
+        assertThat(second.status()).isNull();
+        assertThat(second.tags()).isEmpty();
+        assertThat(second.ingredients()).isEmpty();
+    }
+
+    @Test
+    void abortedDownloadStopsReadingRows() {
+        // Wiersze większe od bufora wyjściowego trafiają do klienta od razu
+        String description = "a".repeat(100 * 1024);
+        List<Map<String, Object>> rows = List.of(row(1L, "Bigos"), row(2L, "Żurek"), row(3L, "Pierogi"));
+        rows.forEach(row -> row.put("description", description));
+        int[] read = {0};
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> service(rows, read).exportRecipes(disconnected))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+        assertThat(read[0]).isEqualTo(1);
+    }
+
+    private RecipeExportService service(List<Map<String, Object>> rows) {
+        return service(rows, new int[1]);
+    }
+
+    private RecipeExportService service(List<Map<String, Object>> rows, int[] read) {
+        // Zapytanie eksportu zastąpione przekazaniem podanych wierszy do obsługi wiersza
+        JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+            @Override
+            public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+                try {
+                    for (Map<String, Object> row : rows) {
+                        read[0]++;
+                        rch.processRow(resultSet(row));
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        return new RecipeExportService(jdbcTemplate, objectMapper, 500);
+    }
+
+    private static Map<String, Object> row(Long id, String title) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("title", title);
+        return row;
+    }
+
+    private static ResultSet resultSet(Map<String, Object> row) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object value = row.get((String) args[0]);
+                    return switch (method.getName()) {
+                        case "getLong" -> value != null ? (Long) value : 0L;
+                        case "getString", "getTimestamp", "getArray" -> value;
+                        case "getObject" -> ((Class<?>) args[1]).cast(value);
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+
+    private static Array array(Object[] values) {
+        return (Array) Proxy.newProxyInstance(Array.class.getClassLoader(), new Class<?>[]{Array.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getArray") || args != null) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return values;
+                });
+    }
+}
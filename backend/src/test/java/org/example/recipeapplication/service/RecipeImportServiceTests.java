@@ -0,0 +1,70 @@
+package org.example.recipeapplication.service;
+
+import org.example.recipeapplication.dto.IngredientRequestDTO;
+import org.example.recipeapplication.dto.RecipeRequestDTO;
+import org.example.recipeapplication.util.CsvReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecipeImportServiceTests {
+
+    @Test
+    void readsQuotedFieldsWithSeparatorsAndNewlines() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(
+                "a,\"b, c\",\"d \"\"e\"\"\"\r\n\"f\ng\",,h\nlast"));
+
+        assertThat(csv.readRecord()).containsExactly("a", "b, c", "d \"e\"");
+        assertThat(csv.readRecord()).containsExactly("f\ng", "", "h");
+        assertThat(csv.readRecord()).containsExactly("last");
+        assertThat(csv.readRecord()).isNull();
+    }
+
+    @Test
+    void mapsCsvRecordToRecipeRequest() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("""
+                categoryId,title,description,ingredients,tags,estimatedTimeToPrepare,mainImageUrl
+                3,Bigos,"Duszona kapusta, z mięsem",kapusta kiszona;1;kg|kiełbasa;30;dag|ziele angielskie;3;,obiad | polskie,3 h,
+                """));
+        Map<String, Integer> columns = columns(csv.readRecord());
+
+        RecipeRequestDTO recipe = RecipeImportService.parseCsvRecord(csv.readRecord(), columns);
+
+        assertThat(recipe.title()).isEqualTo("Bigos");
+        assertThat(recipe.description()).isEqualTo("Duszona kapusta, z mięsem");
+        assertThat(recipe.categoryId()).isEqualTo(3L);
+        assertThat(recipe.estimatedTimeToPrepare()).isEqualTo("3 h");
+        assertThat(recipe.mainImageUrl()).isNull();
+        assertThat(recipe.tags()).containsExactly("obiad", "polskie");
+        assertThat(recipe.ingredients()).containsExactly(
+                new IngredientRequestDTO("kapusta kiszona", "1", "kg"),
+                new IngredientRequestDTO("kiełbasa", "30", "dag"),
+                new IngredientRequestDTO("ziele angielskie", "3", null));
+    }
+
+    @Test
+    void rejectsInvalidCategoryId() {
+        Map<String, Integer> columns = columns(RecipeImportService.CSV_COLUMNS);
+        List<String> record = List.of("Bigos", "Opis", "", "", "trzy", "", "kapusta;1;kg");
+
+        assertThatThrownBy(() -> RecipeImportService.parseCsvRecord(record, columns))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("categoryId");
+    }
+
+    private static Map<String, Integer> columns(List<String> header) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).toLowerCase(Locale.ROOT), i);
+        }
+        return columns;
+    }
+}
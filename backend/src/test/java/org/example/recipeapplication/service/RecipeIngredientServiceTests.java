@@ -0,0 +1,31 @@
+package org.example.recipeapplication.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeIngredientServiceTests {
+
+    @Test
+    void spellingVariantsShareOneCatalogKey() {
+        assertThat(RecipeIngredientService.normalizedName("Sól morska!")).isEqualTo("sol morska");
+        assertThat(RecipeIngredientService.normalizedName("  sol   MORSKA ")).isEqualTo("sol morska");
+        assertThat(RecipeIngredientService.normalizedName("sól-morska")).isEqualTo("sol morska");
+        assertThat(RecipeIngredientService.normalizedName("Żółty ser")).isEqualTo("zolty ser");
+        assertThat(RecipeIngredientService.normalizedName("Masło 82%")).isEqualTo("maslo 82");
+    }
+
+    @Test
+    void differentIngredientsKeepDistinctKeys() {
+        assertThat(RecipeIngredientService.normalizedName("ser żółty"))
+                .isNotEqualTo(RecipeIngredientService.normalizedName("żółty ser"));
+        assertThat(RecipeIngredientService.normalizedName("mąka 450"))
+                .isNotEqualTo(RecipeIngredientService.normalizedName("mąka 650"));
+    }
+
+    @Test
+    void nameWithoutLettersOrDigitsIsKeptAsIs() {
+        assertThat(RecipeIngredientService.normalizedName(" *** ")).isEqualTo("***");
+        assertThat(RecipeIngredientService.normalizedName(null)).isEmpty();
+    }
+}
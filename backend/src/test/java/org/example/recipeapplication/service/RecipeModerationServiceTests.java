@@ -0,0 +1,43 @@
+package org.example.recipeapplication.service;
+
+import org.example.recipeapplication.dto.RecipeStatusBatchResultDTO;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeModerationServiceTests {
+
+    @Test
+    void splitsRequestIntoUpdatedClaimedAndMissing() {
+        RecipeStatusBatchResultDTO result = RecipeModerationService.batchResult(RecipeStatus.ACCEPTED,
+                List.of(5L, 1L, 4L, 2L, 3L), Set.of(1L, 5L), Set.of(2L, 4L));
+
+        assertThat(result.status()).isEqualTo(RecipeStatus.ACCEPTED);
+        // Kolejność z żądania, niezależnie od kolejności zwróconej przez bazę
+        assertThat(result.updated()).containsExactly(5L, 1L);
+        assertThat(result.claimedByOthers()).containsExactly(4L, 2L);
+        assertThat(result.notFound()).containsExactly(3L);
+    }
+
+    @Test
+    void everyRequestedRecipeLandsInExactlyOneBucket() {
+        LinkedHashSet<Long> requested = new LinkedHashSet<>(List.of(1L, 2L, 3L));
+
+        RecipeStatusBatchResultDTO allUpdated = RecipeModerationService.batchResult(RecipeStatus.REJECTED,
+                requested, Set.of(1L, 2L, 3L), Set.of());
+        RecipeStatusBatchResultDTO noneFound = RecipeModerationService.batchResult(RecipeStatus.REJECTED,
+                requested, Set.of(), Set.of());
+
+        assertThat(allUpdated.updated()).containsExactly(1L, 2L, 3L);
+        assertThat(allUpdated.claimedByOthers()).isEmpty();
+        assertThat(allUpdated.notFound()).isEmpty();
+        assertThat(noneFound.updated()).isEmpty();
+        assertThat(noneFound.claimedByOthers()).isEmpty();
+        assertThat(noneFound.notFound()).containsExactly(1L, 2L, 3L);
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.recipeapplication.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RecipeRecommendationServiceTests {
+
+    // Numery przepisów 0-3 odpowiadają identyfikatorom 10, 20, 30, 40
+    private static final long[] RECIPE_IDS = {10L, 20L, 30L, 40L};
+
+    @Test
+    void computesCosineSimilarityOfCoLikedRecipes() {
+        List<int[]> userItems = List.of(
+                new int[]{0, 1},
+                new int[]{0, 1, 2},
+                new int[]{0, 2},
+                new int[]{3, 2});
+
+        Map<Long, RecipeRecommendationService.Neighbors> neighbors =
+                RecipeRecommendationService.computeNeighbors(userItems, RECIPE_IDS, 10, 2);
+
+        RecipeRecommendationService.Neighbors first = neighbors.get(10L);
+        // 10 i 20: 2 wspólnych z 3 i 2 użytkowników; 10 i 30: 2 wspólnych z 3 i 3
+        assertThat(first.recipeIds()).containsExactly(20L, 30L);
+        assertThat(first.similarities()[0]).isCloseTo((float) (2 / Math.sqrt(6)), within(1e-6f));
+        assertThat(first.similarities()[1]).isCloseTo(2f / 3, within(1e-6f));
+        assertThat(neighbors.get(40L).recipeIds()).containsExactly(30L);
+    }
+
+    @Test
+    void keepsOnlyTopNeighbors() {
+        List<int[]> userItems = List.of(new int[]{0, 1, 2, 3}, new int[]{0, 1});
+
+        Map<Long, RecipeRecommendationService.Neighbors> neighbors =
+                RecipeRecommendationService.computeNeighbors(userItems, RECIPE_IDS, 1, 1);
+
+        assertThat(neighbors.get(10L).recipeIds()).containsExactly(20L);
+    }
+
+    @Test
+    void mergesNeighborListsAndSkipsSeenRecipes() {
+        Map<Long, RecipeRecommendationService.Neighbors> neighbors = Map.of(
+                1L, new RecipeRecommendationService.Neighbors(new long[]{2L, 3L, 4L}, new float[]{0.9f, 0.5f, 0.4f}),
+                5L, new RecipeRecommendationService.Neighbors(new long[]{4L, 1L}, new float[]{0.3f, 0.2f}));
+
+        List<Long> ranked = RecipeRecommendationService.recommend(neighbors, List.of(1L, 5L), Set.of(1L, 2L, 5L));
+
+        // 4: 0.4 + 0.3 wyprzedza 3: 0.5; 2 już oceniony
+        assertThat(ranked).containsExactly(4L, 3L);
+    }
+
+    @Test
+    void countsRecipeLikedTwiceOnce() {
+        Map<Long, RecipeRecommendationService.Neighbors> neighbors = Map.of(
+                1L, new RecipeRecommendationService.Neighbors(new long[]{2L}, new float[]{0.6f}),
+                5L, new RecipeRecommendationService.Neighbors(new long[]{3L}, new float[]{0.7f}));
+
+        // 1 obserwowany i wysoko oceniony - jego sąsiad nie może wyprzedzić 3
+        List<Long> ranked = RecipeRecommendationService.recommend(neighbors, List.of(1L, 1L, 5L), Set.of(1L, 5L));
+
+        assertThat(ranked).containsExactly(3L, 2L);
+    }
+
+    @Test
+    void returnsNothingWithoutHistory() {
+        assertThat(RecipeRecommendationService.recommend(Map.of(), List.of(), Set.of())).isEmpty();
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.recipeapplication.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.recipeapplication.dto.RecipeSummaryDTO;
+import org.example.recipeapplication.model.SearchMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeSearchCacheTests {
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 5);
+
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicLong version;
+    private List<String> changedScopes;
+    private RecipeSearchCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        version = new AtomicLong();
+        changedScopes = new CopyOnWriteArrayList<>();
+        // Zmiany zgłaszane do bazy zapisywane w pamięci
+        CatalogVersionService versions = new CatalogVersionService(null, null) {
+            @Override
+            public void scopesChanged(Collection<String> scopes) {
+                changedScopes.addAll(scopes);
+            }
+
+            @Override
+            public void allRecipesChanged() {
+            }
+        };
+        cache = new RecipeSearchCache(meterRegistry, versions, 300, 1000);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void reusesResultsForEquivalentQueries() {
+        search("Żółty ser", null, 1L);
+        search("zolty  SER", null, 1L);
+
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "recipe-search").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void evictsOnlyEntriesTheRecipeCouldAppearIn() {
+        search("makaron", null, 1L);
+        search("zupa", null, 2L);
+        search("ciasto", 3L, 3L);
+
+        // Nowy przepis "Zupa z makaronem" w kategorii 2 może pojawić się w wynikach "makaron" i "zupa", ale nie "ciasto"
+        cache.evict(new RecipeSearchCache.RecipeSnapshot(9L, 2L, 7L, "zupa z makaronem"));
+
+        search("makaron", null, 1L);
+        search("zupa", null, 2L);
+        search("ciasto", 3L, 3L);
+        assertThat(loads).hasValue(5);
+        assertThat(changedScopes).containsExactlyInAnyOrder("category:2", "author:7");
+    }
+
+    @Test
+    void evictsEntriesListingTheRecipe() {
+        search("ciasto", 3L, 3L);
+
+        // Przepis przeniesiony do innej kategorii i bez słowa "ciasto" nadal widnieje na zapamiętanej stronie
+        cache.evict(new RecipeSearchCache.RecipeSnapshot(3L, 1L, 7L, "sernik"));
+
+        search("ciasto", 3L, 3L);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void changedVersionReloadsEntries() {
+        search("makaron", null, 1L);
+
+        // Zmiana zatwierdzona np. przez inną instancję - lokalne wpisy nie zostały usunięte
+        version.incrementAndGet();
+
+        search("makaron", null, 1L);
+        search("makaron", null, 1L);
+        assertThat(loads).hasValue(2);
+    }
+
+    private void search(String term, Long categoryId, Long resultId) {
+        RecipeSearchCache.Key key = RecipeSearchCache.Key.of(term, FIRST_PAGE, categoryId, SearchMode.INDEX);
+        cache.get(key, "v-" + version.get(), () -> {
+            loads.incrementAndGet();
+            return page(resultId);
+        });
+    }
+
+    private static Page<RecipeSummaryDTO> page(Long recipeId) {
+        RecipeSummaryDTO recipe = new RecipeSummaryDTO(recipeId, "Przepis " + recipeId, 0f, 0, null, 0, 0L, null, null,
+                null, null, null, null, List.of());
+        return new PageImpl<>(List.of(recipe), FIRST_PAGE, 1);
+    }
+}
@@ -0,0 +1,164 @@
+package org.example.recipeapplication.service;
+
+import org.example.recipeapplication.model.Category;
+import org.example.recipeapplication.model.Ingredient;
+import org.example.recipeapplication.model.PrepTimeBucket;
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.RecipeIngredient;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeSearchIndexTests {
+
+    private RecipeSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new RecipeSearchIndex(null, null);
+        index.index(recipe(1L, "Makaron z serem", "Szybki obiad", 1L, List.of("obiad"), "ser żółty", RecipeStatus.ACCEPTED));
+        index.index(recipe(2L, "Zupa pomidorowa", "Z makaronem", 2L, List.of("zupa"), "pomidory", RecipeStatus.ACCEPTED));
+        index.index(recipe(3L, "Ciasto drożdżowe", "Na niedzielę", 3L, List.of("ciasto"), "drożdże", RecipeStatus.ACCEPTED));
+        index.index(recipe(4L, "Makaron carbonara", "Oczekuje na akceptację", 1L, List.of(), "boczek", RecipeStatus.PENDING));
+    }
+
+    @Test
+    void matchesWordPrefixesAcrossFields() {
+        assertThat(search("makaron", null).recipeIds()).containsExactly(2L, 1L);
+        assertThat(search("ZUPA", null).recipeIds()).containsExactly(2L);
+    }
+
+    @Test
+    void ignoresPolishDiacritics() {
+        assertThat(search("zolty", null).recipeIds()).containsExactly(1L);
+        assertThat(search("drożdż", null).recipeIds()).containsExactly(3L);
+    }
+
+    @Test
+    void requiresAllWordsAndAppliesCategoryFilter() {
+        assertThat(search("makaron obiad", null).recipeIds()).containsExactly(1L);
+        assertThat(search("makaron", 2L).recipeIds()).containsExactly(2L);
+    }
+
+    @Test
+    void indexesOnlyAcceptedRecipes() {
+        assertThat(search("carbonara", null).total()).isZero();
+
+        index.index(recipe(2L, "Zupa pomidorowa", "Z makaronem", 2L, List.of("zupa"), "pomidory", RecipeStatus.REJECTED));
+        assertThat(search("", null).recipeIds()).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void pagesThroughSortedResults() {
+        RecipeSearchIndex.SearchHits firstPage = index.search("", null, Sort.by(Sort.Direction.ASC, "title"), 0, 2);
+        RecipeSearchIndex.SearchHits secondPage = index.search("", null, Sort.by(Sort.Direction.ASC, "title"), 2, 2);
+
+        assertThat(firstPage.recipeIds()).containsExactly(3L, 1L);
+        assertThat(secondPage.recipeIds()).containsExactly(2L);
+        assertThat(secondPage.total()).isEqualTo(3);
+    }
+
+    @Test
+    void ranksTitleMatchesAboveDescriptionMatches() {
+        RecipeSearchIndex.SearchHits hits = index.searchByRelevance("makaron", null, 0, 10);
+
+        assertThat(hits.recipeIds()).containsExactly(1L, 2L);
+        assertThat(index.searchByRelevance("makaron", null, 1, 1).recipeIds()).containsExactly(2L);
+    }
+
+    @Test
+    void prefersWholeWordOverPrefixMatch() {
+        index.index(recipe(5L, "Pomidorowa klasyczna", "Zupa", 2L, List.of(), "pomidor", RecipeStatus.ACCEPTED));
+
+        assertThat(index.searchByRelevance("pomidor", null, 0, 1).recipeIds()).containsExactly(5L);
+    }
+
+    @Test
+    void ranksRecipesByMissingIngredients() {
+        index.index(withIngredients(recipe(5L, "Jajecznica", "Śniadanie", 1L, List.of(), "jajka", RecipeStatus.ACCEPTED),
+                "Jajka", "Masło", "Szczypiorek"));
+        index.index(withIngredients(recipe(6L, "Omlet", "Śniadanie", 1L, List.of(), "jajka", RecipeStatus.ACCEPTED),
+                "jajka", "mleko", "mąka", "masło"));
+        index.index(withIngredients(recipe(7L, "Jajka sadzone", "Śniadanie", 1L, List.of(), "jajka", RecipeStatus.ACCEPTED),
+                "jajko", "masło"));
+
+        RecipeSearchIndex.IngredientMatches result = index.searchByIngredients(List.of("jajka", "MASLO"), 2, 0, 10);
+
+        assertThat(result.matches()).extracting(RecipeSearchIndex.IngredientMatch::recipeId).containsExactly(7L, 5L, 6L);
+        assertThat(result.matches().get(1).missingIngredients()).containsExactly("Szczypiorek");
+        assertThat(result.matches().get(2).missingIngredients()).containsExactly("mleko", "mąka");
+        assertThat(index.searchByIngredients(List.of("jajka", "masło"), 1, 0, 10).total()).isEqualTo(2);
+    }
+
+    @Test
+    void matchesIngredientNamesAcrossInflection() {
+        assertThat(index.searchByIngredients(List.of("pomidor"), 0, 0, 10).matches())
+                .extracting(RecipeSearchIndex.IngredientMatch::recipeId).containsExactly(2L);
+        assertThat(index.searchByIngredients(List.of("ser"), 0, 0, 10).matches())
+                .extracting(RecipeSearchIndex.IngredientMatch::recipeId).containsExactly(1L);
+        // Zbyt odległe przedłużenie słowa nie jest odmianą
+        assertThat(index.searchByIngredients(List.of("drożdżówka"), 2, 0, 10).total()).isZero();
+        // Przepisy niezaakceptowane nie są dopasowywane
+        assertThat(index.searchByIngredients(List.of("boczek"), 0, 0, 10).total()).isZero();
+    }
+
+    @Test
+    void countsFacetsOverMatchSet() {
+        Recipe pasta = recipe(5L, "Makaron z pesto", "Szybki obiad", 1L, List.of("Obiad", "wege"), "bazylia", RecipeStatus.ACCEPTED);
+        pasta.setEstimatedTimeToPrepare("1 h 30 min");
+        index.index(pasta);
+        Recipe soup = recipe(6L, "Makaronowa zupa", "Rosół", 2L, List.of("obiad"), "makaron", RecipeStatus.ACCEPTED);
+        soup.setEstimatedTimeToPrepare("25");
+        index.index(soup);
+
+        RecipeSearchIndex.Facets facets = index.facets("makaron", 1L, 1);
+
+        // Kategorie liczone bez filtra kategorii, tagi i czas przygotowania - z filtrem
+        assertThat(facets.categories()).containsEntry(1L, 2L).containsEntry(2L, 2L).hasSize(2);
+        assertThat(facets.tags()).containsExactly(Map.entry("obiad", 2L));
+        assertThat(facets.prepTime())
+                .containsEntry(PrepTimeBucket.OVER_60_MIN, 1L)
+                .containsEntry(PrepTimeBucket.UNKNOWN, 1L)
+                .doesNotContainKey(PrepTimeBucket.UP_TO_30_MIN);
+    }
+
+    private static Recipe withIngredients(Recipe recipe, String... names) {
+        List<RecipeIngredient> ingredients = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            ingredients.add(ingredient(recipe, recipe.getId() * 10 + i, names[i], i));
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+
+    private RecipeSearchIndex.SearchHits search(String query, Long categoryId) {
+        return index.search(query, categoryId, Sort.by(Sort.Direction.DESC, "dateOfCreation"), 0, 10);
+    }
+
+    private static Recipe recipe(Long id, String title, String description, Long categoryId,
+                                 List<String> tags, String ingredientName, RecipeStatus status) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setTitle(title);
+        recipe.setDescription(description);
+        recipe.setCategory(new Category(categoryId, "Kategoria " + categoryId));
+        recipe.setTags(tags);
+        recipe.setIngredients(List.of(ingredient(recipe, id * 10, ingredientName, 0)));
+        recipe.setDateOfCreation(new Timestamp(id * 1000));
+        recipe.setStatus(status);
+        return recipe;
+    }
+
+    private static RecipeIngredient ingredient(Recipe recipe, Long id, String name, int position) {
+        Ingredient ingredient = new Ingredient(id, name, RecipeIngredientService.normalizedName(name));
+        return new RecipeIngredient(id, recipe, ingredient, "1", "szt", position);
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.recipeapplication.service;
+
+import org.example.recipeapplication.model.Ingredient;
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.RecipeIngredient;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RecipeSimilarityIndexTests {
+
+    private RecipeSimilarityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new RecipeSimilarityIndex(null, null);
+        // Bez aktywnej transakcji zmiany trafiają do indeksu od razu
+        index.index(recipe(1L, RecipeStatus.ACCEPTED, List.of("obiad", "włoska"),
+                "Makaron", "Pomidory", "Czosnek", "Bazylia", "Oliwa"));
+        index.index(recipe(2L, RecipeStatus.ACCEPTED, List.of("obiad", "wloska"),
+                "makaron", "pomidory", "czosnek", "bazylia", "parmezan"));
+        index.index(recipe(3L, RecipeStatus.ACCEPTED, List.of("deser"),
+                "Mąka", "Cukier", "Jajka", "Masło"));
+        index.index(recipe(4L, RecipeStatus.PENDING, List.of("obiad", "włoska"),
+                "Makaron", "Pomidory", "Czosnek", "Bazylia", "Oliwa"));
+    }
+
+    @Test
+    void findsRecipesWithOverlappingTagsAndIngredients() {
+        List<RecipeSimilarityIndex.SimilarRecipe> similar = index.similar(1L, 5).orElseThrow();
+
+        assertThat(similar).extracting(RecipeSimilarityIndex.SimilarRecipe::recipeId).containsExactly(2L);
+        // Wspólne: 2 tagi i 4 składniki z 8 różnych cech
+        assertThat(similar.get(0).similarity()).isCloseTo(6.0 / 8, within(1e-9));
+    }
+
+    @Test
+    void pendingRecipesAreNotIndexed() {
+        assertThat(index.similar(4L, 5)).isEmpty();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void updatedAndRemovedRecipesChangeResults() {
+        index.index(recipe(3L, RecipeStatus.ACCEPTED, List.of("obiad", "włoska"),
+                "Makaron", "Pomidory", "Czosnek", "Bazylia", "Oliwa"));
+        assertThat(index.similar(1L, 5).orElseThrow())
+                .extracting(RecipeSimilarityIndex.SimilarRecipe::recipeId)
+                .containsExactly(3L, 2L);
+
+        index.remove(2L);
+        index.index(recipe(3L, RecipeStatus.REJECTED, List.of(), "Makaron"));
+        assertThat(index.similar(1L, 5).orElseThrow()).isEmpty();
+    }
+
+    @Test
+    void jaccardOfSortedSets() {
+        assertThat(RecipeSimilarityIndex.jaccard(new long[]{1, 2, 3}, new long[]{2, 3, 4})).isEqualTo(0.5);
+        assertThat(RecipeSimilarityIndex.jaccard(new long[]{1}, new long[]{2})).isZero();
+    }
+
+    private static Recipe recipe(Long id, RecipeStatus status, List<String> tags, String... ingredientNames) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setStatus(status);
+        recipe.setTags(tags);
+        List<RecipeIngredient> ingredients = new ArrayList<>();
+        for (int i = 0; i < ingredientNames.length; i++) {
+            String name = ingredientNames[i];
+            Ingredient ingredient = new Ingredient((long) i, name, RecipeIngredientService.normalizedName(name));
+            ingredients.add(new RecipeIngredient(id * 10 + i, recipe, ingredient, "1", "szt", i));
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+}
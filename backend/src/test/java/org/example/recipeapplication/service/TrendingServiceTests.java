@@ -0,0 +1,73 @@
+package org.example.recipeapplication.service;
+
+import org.example.recipeapplication.model.Recipe;
+import org.example.recipeapplication.model.RecipeStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TrendingServiceTests {
+
+    private static final long HOUR = 3_600_000L;
+
+    private TrendingService trending;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        trending = new TrendingService(null, 24);
+        now = System.currentTimeMillis();
+    }
+
+    @Test
+    void ranksByAccumulatedScore() {
+        trending.record(1L, TrendingService.COMMENT_WEIGHT, now);
+        trending.record(2L, TrendingService.FOLLOW_WEIGHT, now);
+        trending.record(3L, TrendingService.COMMENT_WEIGHT, now);
+        trending.record(3L, TrendingService.FOLLOW_WEIGHT, now);
+
+        assertThat(trending.topRecipeIds(0, 10)).containsExactly(3L, 2L, 1L);
+        assertThat(trending.topRecipeIds(1, 1)).containsExactly(2L);
+        assertThat(trending.size()).isEqualTo(3);
+    }
+
+    @Test
+    void olderActivityDecaysWithHalfLife() {
+        trending.record(1L, TrendingService.FOLLOW_WEIGHT, now - 24 * HOUR);
+        trending.record(2L, TrendingService.FOLLOW_WEIGHT, now);
+
+        assertThat(trending.topRecipeIds(0, 10)).containsExactly(2L, 1L);
+        assertThat(trending.currentScore(1L, now)).isCloseTo(TrendingService.FOLLOW_WEIGHT / 2, within(1e-6));
+        assertThat(trending.currentScore(2L, now + 48 * HOUR)).isCloseTo(TrendingService.FOLLOW_WEIGHT / 4, within(1e-6));
+    }
+
+    @Test
+    void removedRecipeLeavesRanking() {
+        trending.record(1L, TrendingService.FOLLOW_WEIGHT, now);
+        trending.record(2L, TrendingService.COMMENT_WEIGHT, now);
+
+        trending.remove(1L);
+
+        assertThat(trending.topRecipeIds(0, 10)).containsExactly(2L);
+        assertThat(trending.currentScore(1L, now)).isZero();
+    }
+
+    @Test
+    void activityOnRecipesNotAcceptedIsIgnored() {
+        trending.recordComment(recipe(1L, RecipeStatus.PENDING));
+        trending.recordRating(recipe(2L, RecipeStatus.REJECTED), 5);
+        trending.recordFollow(recipe(3L, RecipeStatus.ACCEPTED));
+
+        assertThat(trending.topRecipeIds(0, 10)).containsExactly(3L);
+        assertThat(trending.size()).isEqualTo(1);
+    }
+
+    private static Recipe recipe(Long id, RecipeStatus status) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setStatus(status);
+        return recipe;
+    }
+}